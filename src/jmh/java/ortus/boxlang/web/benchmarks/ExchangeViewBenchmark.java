@@ -0,0 +1,233 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.Cookie;
+import ortus.boxlang.web.exchange.BoxHTTPUndertowExchange;
+import ortus.boxlang.web.exchange.IBoxHTTPExchange.BoxCookie;
+
+/**
+ * Bytes allocated per request by the request header, query parameter and cookie accessors of the exchange adapter,
+ * comparing the old copy-on-every-call implementation with the read-only views.
+ *
+ * An Undertow server on a loopback port runs the same access pattern a BoxLang request goes through (the CGI and URL
+ * scopes iterate the maps, templates look up single headers and cookies) and measures the bytes allocated by the
+ * accessors alone with the thread allocation counter. The result is reported as the {@code adapterBytesPerRequest}
+ * counter, the GC profiler numbers include the HTTP client and server as well.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class ExchangeViewBenchmark {
+
+	private static final com.sun.management.ThreadMXBean THREADS = ( com.sun.management.ThreadMXBean ) ManagementFactory.getThreadMXBean();
+
+	@Param( { "copy", "view" } )
+	public String								mode;
+
+	@Param( { "4", "16" } )
+	public int									cookies;
+
+	private Undertow							server;
+	private HttpClient							client;
+	private HttpRequest							request;
+
+	/**
+	 * Bytes allocated by the accessors for the last request, written by the server before the response is sent
+	 */
+	private volatile long						lastAdapterBytes;
+
+	/**
+	 * Average bytes allocated by the accessors per request, reset every iteration. JMH adds event counters up over the
+	 * measurement iterations, so every iteration reports its share of the average.
+	 */
+	@State( Scope.Thread )
+	@AuxCounters( AuxCounters.Type.EVENTS )
+	public static class Allocations {
+
+		public double	adapterBytesPerRequest;
+		private long	totalBytes;
+		private long	requests;
+		private int		iterations;
+
+		@Setup( Level.Iteration )
+		public void reset( BenchmarkParams params ) {
+			adapterBytesPerRequest	= 0;
+			totalBytes				= 0;
+			requests				= 0;
+			iterations				= params.getMeasurement().getCount();
+		}
+
+		void record( long bytes ) {
+			totalBytes				+= bytes;
+			requests++;
+			adapterBytesPerRequest	= ( double ) totalBytes / requests / iterations;
+		}
+	}
+
+	@Setup( Level.Trial )
+	public void setup() {
+		server = Undertow.builder()
+		    .addHttpListener( 0, "127.0.0.1" )
+		    .setHandler( exchange -> {
+			    long before = THREADS.getCurrentThreadAllocatedBytes();
+			    if ( mode.equals( "view" ) ) {
+				    useViews( new BoxHTTPUndertowExchange( exchange ) );
+			    } else {
+				    useCopies( exchange );
+			    }
+			    lastAdapterBytes = THREADS.getCurrentThreadAllocatedBytes() - before;
+			    exchange.endExchange();
+		    } )
+		    .build();
+		server.start();
+
+		StringBuilder cookieHeader = new StringBuilder();
+		for ( int i = 0; i < cookies; i++ ) {
+			cookieHeader.append( i == 0 ? "" : "; " ).append( "cookie" ).append( i ).append( "=value" ).append( i );
+		}
+
+		int port = ( ( InetSocketAddress ) server.getListenerInfo().get( 0 ).getAddress() ).getPort();
+		client	= HttpClient.newBuilder().version( HttpClient.Version.HTTP_1_1 ).build();
+		request	= HttpRequest.newBuilder( URI.create( "http://127.0.0.1:" + port + "/index.bxm?page=2&sort=name&filter=a&filter=b" ) )
+		    .header( "Accept", "text/html" )
+		    .header( "Accept-Language", "en-US,en;q=0.9" )
+		    .header( "X-Requested-With", "XMLHttpRequest" )
+		    .header( "Cookie", cookieHeader.toString() )
+		    .GET()
+		    .build();
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Benchmark
+	public int requestAccessors( Allocations allocations ) throws Exception {
+		int status = client.send( request, HttpResponse.BodyHandlers.discarding() ).statusCode();
+		allocations.record( lastAdapterBytes );
+		return status;
+	}
+
+	/**
+	 * The access pattern of a request through the views
+	 */
+	private static int useViews( BoxHTTPUndertowExchange exchange ) {
+		int count = 0;
+		for ( Map.Entry<String, String[]> header : exchange.getRequestHeaderMap().entrySet() ) {
+			count += header.getValue().length;
+		}
+		for ( Map.Entry<String, String[]> parameter : exchange.getRequestURLMap().entrySet() ) {
+			count += parameter.getValue().length;
+		}
+		count	+= exchange.getRequestHeaderMap().get( "Accept" ).length;
+		count	+= exchange.getRequestURLMap().get( "page" ).length;
+		count	+= exchange.getRequestCookies().length;
+		for ( int i = 0; i < 3; i++ ) {
+			count += exchange.getRequestCookie( "cookie" + i ) != null ? 1 : 0;
+		}
+		count += exchange.getResponseHeaderMap().size();
+		return count;
+	}
+
+	/**
+	 * The same access pattern through copies, like the exchange adapter did before the views
+	 */
+	private static int useCopies( HttpServerExchange exchange ) {
+		int count = 0;
+		for ( Map.Entry<String, String[]> header : copyHeaders( exchange ).entrySet() ) {
+			count += header.getValue().length;
+		}
+		for ( Map.Entry<String, String[]> parameter : copyQuery( exchange ).entrySet() ) {
+			count += parameter.getValue().length;
+		}
+		count	+= copyHeaders( exchange ).get( "Accept" ).length;
+		count	+= copyQuery( exchange ).get( "page" ).length;
+		count	+= copyCookies( exchange ).length;
+		for ( int i = 0; i < 3; i++ ) {
+			String name = "cookie" + i;
+			for ( BoxCookie cookie : copyCookies( exchange ) ) {
+				if ( cookie.getName().equalsIgnoreCase( name ) ) {
+					count++;
+					break;
+				}
+			}
+		}
+		Map<String, String[]> responseHeaders = new HashMap<>();
+		exchange.getResponseHeaders().forEach( values -> responseHeaders.put( values.getHeaderName().toString(), values.toArray( new String[ 0 ] ) ) );
+		count += responseHeaders.size();
+		return count;
+	}
+
+	private static Map<String, String[]> copyHeaders( HttpServerExchange exchange ) {
+		Map<String, String[]> headers = new HashMap<>();
+		exchange.getRequestHeaders().forEach( values -> headers.put( values.getHeaderName().toString(), values.toArray( new String[ 0 ] ) ) );
+		return headers;
+	}
+
+	private static Map<String, String[]> copyQuery( HttpServerExchange exchange ) {
+		Map<String, String[]> parameters = new HashMap<>();
+		for ( Map.Entry<String, Deque<String>> entry : exchange.getQueryParameters().entrySet() ) {
+			parameters.put( entry.getKey(), entry.getValue().toArray( new String[ 0 ] ) );
+		}
+		return parameters;
+	}
+
+	private static BoxCookie[] copyCookies( HttpServerExchange exchange ) {
+		List<Cookie> cookies = new ArrayList<>();
+		exchange.requestCookies().forEach( cookies::add );
+		BoxCookie[] boxCookies = new BoxCookie[ cookies.size() ];
+		for ( int i = 0; i < cookies.size(); i++ ) {
+			Cookie cookie = cookies.get( i );
+			boxCookies[ i ] = new BoxCookie( cookie.getName(), cookie.getValue() );
+			boxCookies[ i ].setSecure( cookie.isSecure() );
+			boxCookies[ i ].setHttpOnly( cookie.isHttpOnly() );
+		}
+		return boxCookies;
+	}
+
+}
@@ -0,0 +1,137 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.undertow.Undertow;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.web.handlers.BLHandler;
+
+/**
+ * Compares the two BoxLang request executor modes of the MiniServer when every request blocks for a long time,
+ * like templates waiting on JDBC or outbound HTTP calls.
+ *
+ * A BoxLang runtime and an Undertow server with only the {@link BLHandler} are started on a loopback port, and the
+ * handler dispatches requests the way the MiniServer does: the {@code platform} mode passes no executor, so requests
+ * run on Undertow's XNIO worker pool, the {@code virtual} mode passes a virtual thread per request executor. The
+ * template sleeps for {@code blockMillis} and writes a short body.
+ *
+ * Each invocation sends a burst of {@code concurrency} requests and waits for all the responses. The reported time is
+ * the time to drain the whole burst, so the request throughput is {@code concurrency / time}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class ExecutorModeBenchmark {
+
+	@Param( { "platform", "virtual" } )
+	public String			executor;
+
+	@Param( { "64", "256", "1024" } )
+	public int				concurrency;
+
+	@Param( { "50" } )
+	public long				blockMillis;
+
+	private Path			webRoot;
+	private BoxRuntime		runtime;
+	private ExecutorService	requestExecutor;
+	private Undertow		server;
+	private HttpClient		client;
+	private HttpRequest		request;
+
+	@Setup( Level.Trial )
+	public void setup() throws IOException {
+		webRoot = Files.createTempDirectory( "bx-executor-benchmark" );
+		// Simulates a template waiting on a database or remote service
+		Files.writeString( webRoot.resolve( "index.bxm" ), "<bx:script>sleep( " + blockMillis + " );</bx:script>hello" );
+
+		runtime = BoxRuntime.getInstance( false, null, null );
+		if ( executor.equals( "virtual" ) ) {
+			requestExecutor = Executors.newThreadPerTaskExecutor( Thread.ofVirtual().name( "bx-request-", 0 ).factory() );
+		}
+
+		server = Undertow.builder()
+		    .addHttpListener( 0, "127.0.0.1" )
+		    .setHandler( new BLHandler( webRoot.toString(), requestExecutor ) )
+		    .build();
+		server.start();
+
+		int port = ( ( InetSocketAddress ) server.getListenerInfo().get( 0 ).getAddress() ).getPort();
+		client	= HttpClient.newBuilder().version( HttpClient.Version.HTTP_1_1 ).build();
+		request	= HttpRequest.newBuilder( URI.create( "http://127.0.0.1:" + port + "/index.bxm" ) ).GET().build();
+
+		// Compile the template before the first measurement
+		blockingRequests();
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() throws IOException {
+		server.stop();
+		if ( requestExecutor != null ) {
+			requestExecutor.shutdownNow();
+		}
+		runtime.shutdown();
+		try ( Stream<Path> files = Files.walk( webRoot ) ) {
+			files.sorted( Comparator.reverseOrder() ).forEach( path -> path.toFile().delete() );
+		}
+	}
+
+	@Benchmark
+	public int blockingRequests() {
+		List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>( concurrency );
+		for ( int i = 0; i < concurrency; i++ ) {
+			responses.add( client.sendAsync( request, HttpResponse.BodyHandlers.discarding() ) );
+		}
+		for ( CompletableFuture<HttpResponse<Void>> response : responses ) {
+			int status = response.join().statusCode();
+			if ( status != 200 ) {
+				throw new IllegalStateException( "The template request failed with status " + status );
+			}
+		}
+		return responses.size();
+	}
+
+}
@@ -0,0 +1,135 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.resource.PathResourceManager;
+import ortus.boxlang.web.handlers.BLHandler;
+import ortus.boxlang.web.handlers.WelcomeFileHandler;
+import ortus.boxlang.web.routing.Route;
+import ortus.boxlang.web.routing.RouteResolver;
+
+/**
+ * Time and allocations per request of the routing steps in front of the BoxLang handler, measured in process on a
+ * detached exchange so nothing but the step itself is timed.
+ *
+ * <ul>
+ * <li>{@code matchRoute} is the BoxLang extension check on its own, without the route cache</li>
+ * <li>{@code resolveRoute} is the cached lookup the {@code RoutingHandler} does for every request</li>
+ * <li>{@code processPathInfo} is the path info handling of {@link BLHandler}, resolving the route through its cache</li>
+ * <li>{@code welcomeFileHit} and {@code welcomeFileMiss} are the {@link WelcomeFileHandler} with a warm and a cleared
+ * cache, the miss goes to the file system</li>
+ * </ul>
+ *
+ * The allocation rate is reported by the GC profiler.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+public class HandlerChainBenchmark {
+
+	@Param( { "/", "/index.bxm", "/api/index.cfm/users/1", "/assets/css/site.css" } )
+	public String				path;
+
+	private Path				webRoot;
+	private RouteResolver		resolver;
+	private WelcomeFileHandler	welcomeFileHandler;
+	private HttpServerExchange	exchange;
+
+	@Setup( Level.Trial )
+	public void setup() throws Exception {
+		webRoot = Files.createTempDirectory( "bx-handler-benchmark" );
+		Files.createDirectories( webRoot.resolve( "api" ) );
+		Files.createDirectories( webRoot.resolve( "assets/css" ) );
+		Files.writeString( webRoot.resolve( "index.bxm" ), "<bx:output>hello</bx:output>" );
+		Files.writeString( webRoot.resolve( "api/index.cfm" ), "<cfoutput>hello</cfoutput>" );
+		Files.writeString( webRoot.resolve( "assets/css/site.css" ), "body { margin: 0; }" );
+
+		resolver			= new RouteResolver();
+		welcomeFileHandler	= new WelcomeFileHandler(
+		    exchange -> {
+		    },
+		    new PathResourceManager( webRoot ),
+		    List.of( "index.bxm", "index.bxs", "index.cfm", "index.cfs", "index.htm", "index.html" ),
+		    5000
+		);
+		// No connection, the steps only use the paths and the attachments
+		exchange			= new HttpServerExchange( null );
+		exchange.setRequestPath( path );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() throws IOException {
+		try ( Stream<Path> files = Files.walk( webRoot ) ) {
+			files.sorted( Comparator.reverseOrder() ).forEach( file -> file.toFile().delete() );
+		}
+	}
+
+	@Benchmark
+	public Route matchRoute() {
+		return resolver.match( path );
+	}
+
+	@Benchmark
+	public Route resolveRoute() {
+		return resolver.resolve( path );
+	}
+
+	@Benchmark
+	public String processPathInfo() {
+		exchange.setRelativePath( path );
+		exchange.removeAttachment( Route.ATTACHMENT_KEY );
+		BLHandler.processPathInfo( exchange );
+		return exchange.getRelativePath();
+	}
+
+	@Benchmark
+	public String welcomeFileHit() throws Exception {
+		exchange.setRelativePath( path );
+		welcomeFileHandler.handleRequest( exchange );
+		return exchange.getRelativePath();
+	}
+
+	@Benchmark
+	public String welcomeFileMiss() throws Exception {
+		welcomeFileHandler.clearCache();
+		exchange.setRelativePath( path );
+		welcomeFileHandler.handleRequest( exchange );
+		return exchange.getRelativePath();
+	}
+
+}
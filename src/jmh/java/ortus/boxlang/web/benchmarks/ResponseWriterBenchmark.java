@@ -0,0 +1,111 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.benchmarks;
+
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import ortus.boxlang.web.exchange.BoxHTTPUndertowExchange;
+import ortus.boxlang.web.handlers.BLHandler;
+
+/**
+ * Requests per second and allocation rate of writing template output through the response writer and finishing the
+ * response the way the {@link BLHandler} does, for held and streamed bodies of different sizes.
+ *
+ * The server handler stands in for a template: it writes the body in chunks of 256 characters, the way BoxLang writes
+ * output between tags, then hands the exchange to {@link BLHandler#finalizeResponse}. In {@code held} mode the body
+ * fits the response buffer and is sent with a {@code Content-Length}, in {@code streamed} mode there is no response
+ * buffer and the body goes out with chunked encoding as the pooled buffers fill up. The allocation rate is reported by the GC profiler.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Threads( 8 )
+public class ResponseWriterBenchmark {
+
+	private static final int	CHUNK_SIZE	= 256;
+
+	@Param( { "held", "streamed" } )
+	public String				mode;
+
+	@Param( { "1024", "65536", "1048576" } )
+	public int					bodySize;
+
+	private Undertow			server;
+	private HttpClient			client;
+	private HttpRequest			request;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		char[] chunk = new char[ CHUNK_SIZE ];
+		Arrays.fill( chunk, 'x' );
+		int			bufferSize	= mode.equals( "held" ) ? bodySize : 0;
+		BLHandler	handler		= new BLHandler( "/" );
+
+		HttpHandler template = exchange -> {
+			exchange.startBlocking();
+			BoxHTTPUndertowExchange	httpExchange	= new BoxHTTPUndertowExchange( exchange ).setResponseBufferSize( bufferSize );
+			PrintWriter				writer			= httpExchange.getResponseWriter();
+			for ( int written = 0; written < bodySize; written += CHUNK_SIZE ) {
+				writer.write( chunk, 0, Math.min( CHUNK_SIZE, bodySize - written ) );
+			}
+			handler.finalizeResponse( httpExchange );
+		};
+
+		server = Undertow.builder()
+		    .addHttpListener( 0, "127.0.0.1" )
+		    .setHandler( exchange -> exchange.dispatch( template ) )
+		    .build();
+		server.start();
+
+		int port = ( ( InetSocketAddress ) server.getListenerInfo().get( 0 ).getAddress() ).getPort();
+		client	= HttpClient.newBuilder().version( HttpClient.Version.HTTP_1_1 ).build();
+		request	= HttpRequest.newBuilder( URI.create( "http://127.0.0.1:" + port + "/index.bxm" ) ).GET().build();
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Benchmark
+	public int writeResponse() throws Exception {
+		return client.send( request, HttpResponse.BodyHandlers.discarding() ).statusCode();
+	}
+
+}
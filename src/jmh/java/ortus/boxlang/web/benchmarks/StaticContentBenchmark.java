@@ -0,0 +1,124 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.benchmarks;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.xnio.BufferAllocator;
+
+import io.undertow.Undertow;
+import io.undertow.server.handlers.cache.DirectBufferCache;
+import io.undertow.server.handlers.resource.CachingResourceManager;
+import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.handlers.resource.ResourceHandler;
+import io.undertow.server.handlers.resource.ResourceManager;
+
+/**
+ * Requests per second and allocation rate of static files served straight from disk versus from the off-heap static
+ * content cache, configured the same way the MiniServer configures it.
+ *
+ * An Undertow server with only the static {@link ResourceHandler} is started on a loopback port and driven over
+ * keep-alive connections, so the numbers isolate the static path. The allocation rate is reported by the GC profiler.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Threads( 8 )
+public class StaticContentBenchmark {
+
+	@Param( { "uncached", "cached" } )
+	public String		mode;
+
+	@Param( { "site.css", "app.js" } )
+	public String		file;
+
+	private Path		webRoot;
+	private Undertow	server;
+	private HttpClient	client;
+	private HttpRequest	request;
+
+	@Setup( Level.Trial )
+	public void setup() throws IOException {
+		// A small stylesheet and a larger script bundle
+		webRoot = Files.createTempDirectory( "bx-static-benchmark" );
+		Random	random	= new Random( 42 );
+		byte[]	css		= new byte[ 4 * 1024 ];
+		byte[]	js		= new byte[ 256 * 1024 ];
+		random.nextBytes( css );
+		random.nextBytes( js );
+		Files.write( webRoot.resolve( "site.css" ), css );
+		Files.write( webRoot.resolve( "app.js" ), js );
+
+		ResourceManager resourceManager = new PathResourceManager( webRoot );
+		if ( mode.equals( "cached" ) ) {
+			resourceManager = new CachingResourceManager(
+			    10000,
+			    1024 * 1024,
+			    new DirectBufferCache( 1024, 1024, 32 * 1024 * 1024, BufferAllocator.DIRECT_BYTE_BUFFER_ALLOCATOR, 5000 ),
+			    resourceManager,
+			    5000
+			);
+		}
+
+		server = Undertow.builder()
+		    .addHttpListener( 0, "127.0.0.1" )
+		    .setHandler( new ResourceHandler( resourceManager ) )
+		    .build();
+		server.start();
+
+		int port = ( ( InetSocketAddress ) server.getListenerInfo().get( 0 ).getAddress() ).getPort();
+		client	= HttpClient.newBuilder().version( HttpClient.Version.HTTP_1_1 ).build();
+		request	= HttpRequest.newBuilder( URI.create( "http://127.0.0.1:" + port + "/" + file ) ).GET().build();
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() throws IOException {
+		server.stop();
+		try ( Stream<Path> files = Files.walk( webRoot ) ) {
+			files.sorted( Comparator.reverseOrder() ).forEach( path -> path.toFile().delete() );
+		}
+	}
+
+	@Benchmark
+	public int serveStaticFile() throws IOException, InterruptedException {
+		return client.send( request, HttpResponse.BodyHandlers.discarding() ).statusCode();
+	}
+
+}
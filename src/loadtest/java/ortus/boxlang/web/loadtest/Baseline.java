@@ -0,0 +1,122 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.loadtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The committed load test results later runs are compared against. It is a properties file with the throughput and
+ * latency percentiles of every scenario, like {@code static.p99=1.25}.
+ */
+public class Baseline {
+
+	private final Properties values;
+
+	private Baseline( Properties values ) {
+		this.values = values;
+	}
+
+	/**
+	 * Load a baseline
+	 *
+	 * @param file The baseline file
+	 *
+	 * @return The baseline, or null if the file does not exist
+	 */
+	public static Baseline load( Path file ) throws IOException {
+		if ( !Files.exists( file ) ) {
+			return null;
+		}
+		Properties values = new Properties();
+		try ( Reader reader = Files.newBufferedReader( file ) ) {
+			values.load( reader );
+		}
+		return new Baseline( values );
+	}
+
+	/**
+	 * Write results as the new baseline
+	 *
+	 * @param file    The baseline file
+	 * @param rate    The request rate the results were taken at
+	 * @param results The results
+	 */
+	public static void save( Path file, int rate, List<LoadResult> results ) throws IOException {
+		Properties values = new Properties();
+		values.setProperty( "rate", String.valueOf( rate ) );
+		for ( LoadResult result : results ) {
+			values.setProperty( result.getScenario() + ".throughput", format( result.getThroughput() ) );
+			values.setProperty( result.getScenario() + ".p50", format( result.getLatency( 50 ) ) );
+			values.setProperty( result.getScenario() + ".p99", format( result.getLatency( 99 ) ) );
+			values.setProperty( result.getScenario() + ".p999", format( result.getLatency( 99.9 ) ) );
+		}
+		Files.createDirectories( file.toAbsolutePath().getParent() );
+		try ( Writer writer = Files.newBufferedWriter( file ) ) {
+			values.store( writer, "BoxLang MiniServer load test baseline, latencies in milliseconds" );
+		}
+	}
+
+	/**
+	 * Compare results with the baseline. A scenario regresses when it had errors, when its p99 latency is more than the
+	 * threshold over the baseline, or when its throughput is more than the threshold under it. Scenarios missing from
+	 * the baseline are not compared.
+	 *
+	 * @param rate      The request rate the results were taken at
+	 * @param results   The results
+	 * @param threshold The allowed regression in percent
+	 *
+	 * @return A description of every regression, empty if there is none
+	 */
+	public List<String> compare( int rate, List<LoadResult> results, double threshold ) {
+		List<String>	regressions	= new ArrayList<>();
+		String			baseRate	= values.getProperty( "rate" );
+		if ( baseRate != null && Integer.parseInt( baseRate ) != rate ) {
+			regressions.add( "the baseline was taken at " + baseRate + " requests per second, not " + rate );
+			return regressions;
+		}
+		double factor = threshold / 100;
+		for ( LoadResult result : results ) {
+			String name = result.getScenario();
+			if ( result.getErrors() > 0 ) {
+				regressions.add( name + ": " + result.getErrors() + " failed requests" );
+			}
+			String p99 = values.getProperty( name + ".p99" );
+			if ( p99 != null && result.getLatency( 99 ) > Double.parseDouble( p99 ) * ( 1 + factor ) ) {
+				regressions.add( name + ": p99 " + format( result.getLatency( 99 ) ) + "ms, baseline " + p99 + "ms" );
+			}
+			String throughput = values.getProperty( name + ".throughput" );
+			if ( throughput != null && result.getThroughput() < Double.parseDouble( throughput ) * ( 1 - factor ) ) {
+				regressions.add( name + ": " + format( result.getThroughput() ) + " requests per second, baseline " + throughput );
+			}
+		}
+		return regressions;
+	}
+
+	private static String format( double value ) {
+		return String.format( Locale.ROOT, "%.3f", value );
+	}
+
+}
@@ -0,0 +1,89 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An open loop load generator. Requests are scheduled at a constant rate and sent asynchronously whether or not the
+ * earlier ones have completed, so a slow server gets more concurrent requests instead of fewer. Each latency is taken
+ * from the time the request was scheduled, so time spent queued behind a stall is counted and the percentiles don't
+ * suffer from coordinated omission.
+ */
+public class LoadGenerator {
+
+	private final HttpClient client;
+
+	/**
+	 * @param client The client to send requests with
+	 */
+	public LoadGenerator( HttpClient client ) {
+		this.client = client;
+	}
+
+	/**
+	 * Run a scenario at a constant rate
+	 *
+	 * @param scenario The scenario
+	 * @param rate     Requests per second
+	 * @param seconds  How long to send requests for
+	 *
+	 * @return The result, once every request has completed or timed out
+	 */
+	public LoadResult run( Scenario scenario, int rate, int seconds ) {
+		int								total		= rate * seconds;
+		long							interval	= TimeUnit.SECONDS.toNanos( 1 ) / rate;
+		long[]							latencies	= new long[ total ];
+		AtomicInteger					successes	= new AtomicInteger();
+		AtomicInteger					errors		= new AtomicInteger();
+		List<CompletableFuture<?>>		pending		= new ArrayList<>( total );
+
+		long							start		= System.nanoTime();
+		for ( int i = 0; i < total; i++ ) {
+			long	scheduled	= start + i * interval;
+			long	wait		= scheduled - System.nanoTime();
+			if ( wait > 0 ) {
+				LockSupport.parkNanos( wait );
+			}
+			pending.add( client.sendAsync( scenario.request(), HttpResponse.BodyHandlers.discarding() )
+			    .whenComplete( ( response, error ) -> {
+				    long latency = System.nanoTime() - scheduled;
+				    if ( error == null && response.statusCode() < 400 ) {
+					    latencies[ successes.getAndIncrement() ] = latency;
+				    } else {
+					    errors.incrementAndGet();
+				    }
+			    } ) );
+		}
+		// Failures are already counted, only wait for everything to settle
+		CompletableFuture.allOf( pending.toArray( CompletableFuture[]::new ) ).exceptionally( error -> null ).join();
+		long elapsed = System.nanoTime() - start;
+
+		long[] completed = new long[ successes.get() ];
+		System.arraycopy( latencies, 0, completed, 0, completed.length );
+		return new LoadResult( scenario.name(), completed, errors.get(), elapsed );
+	}
+
+}
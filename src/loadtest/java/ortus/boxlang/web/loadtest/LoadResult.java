@@ -0,0 +1,82 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of one scenario: how many requests completed, how many failed and the latency of each one. Latencies are
+ * measured from the time a request was scheduled, not from the time it was sent.
+ */
+public class LoadResult {
+
+	private final String	scenario;
+	private final long[]	latencies;
+	private final int		errors;
+	private final long		elapsedNanos;
+
+	/**
+	 * @param scenario     The scenario name
+	 * @param latencies    The latency of every successful request in nanoseconds, in any order
+	 * @param errors       The number of failed requests, including non 2xx responses and timeouts
+	 * @param elapsedNanos From the first scheduled request to the last completion
+	 */
+	LoadResult( String scenario, long[] latencies, int errors, long elapsedNanos ) {
+		this.scenario		= scenario;
+		this.latencies		= latencies.clone();
+		this.errors			= errors;
+		this.elapsedNanos	= elapsedNanos;
+		Arrays.sort( this.latencies );
+	}
+
+	public String getScenario() {
+		return scenario;
+	}
+
+	public int getRequests() {
+		return latencies.length + errors;
+	}
+
+	public int getErrors() {
+		return errors;
+	}
+
+	/**
+	 * @return Successful requests per second
+	 */
+	public double getThroughput() {
+		return elapsedNanos > 0 ? latencies.length / ( elapsedNanos / ( double ) TimeUnit.SECONDS.toNanos( 1 ) ) : 0;
+	}
+
+	/**
+	 * The latency at a percentile, using the nearest rank
+	 *
+	 * @param percentile The percentile, like 99.9
+	 *
+	 * @return The latency in milliseconds, 0 if nothing succeeded
+	 */
+	public double getLatency( double percentile ) {
+		if ( latencies.length == 0 ) {
+			return 0;
+		}
+		int rank = ( int ) Math.ceil( percentile / 100 * latencies.length );
+		return latencies[ Math.min( Math.max( rank, 1 ), latencies.length ) - 1 ] / 1_000_000.0;
+	}
+
+}
@@ -0,0 +1,185 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+
+import ortus.boxlang.web.MiniServer;
+
+/**
+ * End to end load test of the MiniServer.
+ *
+ * The MiniServer is started in process against the fixture web root, then every scenario is warmed up and driven at a
+ * constant rate by the open loop {@link LoadGenerator}. The throughput and latency percentiles of each scenario are
+ * printed and compared with the committed baseline, and the run fails if any scenario regressed beyond the threshold, or
+ * if there is no baseline to compare with.
+ *
+ * The following arguments are supported:
+ *
+ * --webroot <path> - The fixture web root. Default is {@code src/loadtest/www}.
+ * --rate <n> - Requests per second for every scenario. Default is 200.
+ * --duration <seconds> - How long each scenario is measured. Default is 30.
+ * --warmup <seconds> - How long each scenario runs before it is measured. Default is 10.
+ * --baseline <path> - The baseline file. Default is {@code src/loadtest/baseline.properties}.
+ * --threshold <percent> - How much worse than the baseline a scenario may get. Default is 20.
+ * --updateBaseline - Write the results as the new baseline instead of comparing them.
+ * --allowMissingBaseline - Pass the run when there is no baseline file, instead of failing it.
+ * --scenarios <names> - A comma separated list of scenarios to run. Default is all of them.
+ *
+ * Any other argument is passed on to the MiniServer, like {@code --executor virtual}.
+ */
+public class LoadTest {
+
+	public static void main( String[] args ) throws Exception {
+		String			webRoot			= "src/loadtest/www";
+		int				rate			= 200;
+		int				duration		= 30;
+		int				warmup			= 10;
+		Path			baselineFile	= Paths.get( "src/loadtest/baseline.properties" );
+		double			threshold		= 20;
+		boolean			updateBaseline	= false;
+		boolean			allowMissing	= false;
+		List<String>	only			= null;
+		List<String>	serverArgs		= new ArrayList<>();
+
+		for ( int i = 0; i < args.length; i++ ) {
+			switch ( args[ i ] ) {
+				case "--webroot" -> webRoot = args[ ++i ];
+				case "--rate" -> rate = Integer.parseInt( args[ ++i ] );
+				case "--duration" -> duration = Integer.parseInt( args[ ++i ] );
+				case "--warmup" -> warmup = Integer.parseInt( args[ ++i ] );
+				case "--baseline" -> baselineFile = Paths.get( args[ ++i ] );
+				case "--threshold" -> threshold = Double.parseDouble( args[ ++i ] );
+				case "--updateBaseline" -> updateBaseline = true;
+				case "--allowMissingBaseline" -> allowMissing = true;
+				case "--scenarios" -> only = List.of( args[ ++i ].split( "\\s*,\\s*" ) );
+				default -> serverArgs.add( args[ i ] );
+			}
+		}
+
+		int port = freePort();
+		serverArgs.addAll( List.of( "--host", "127.0.0.1", "--port", String.valueOf( port ), "--webroot", webRoot ) );
+		MiniServer.main( serverArgs.toArray( String[]::new ) );
+
+		String		baseURI	= "http://127.0.0.1:" + port;
+		HttpClient	client	= HttpClient.newBuilder()
+		    .version( HttpClient.Version.HTTP_1_1 )
+		    .executor( Executors.newVirtualThreadPerTaskExecutor() )
+		    .connectTimeout( Duration.ofSeconds( 5 ) )
+		    .build();
+		waitForServer( client, baseURI );
+
+		LoadGenerator		generator	= new LoadGenerator( client );
+		List<LoadResult>	results		= new ArrayList<>();
+		for ( Scenario scenario : Scenario.fixtures( baseURI ) ) {
+			if ( only != null && !only.contains( scenario.name() ) ) {
+				continue;
+			}
+			System.out.println( "+ " + scenario.name() + ": warming up for " + warmup + "s" );
+			if ( warmup > 0 ) {
+				generator.run( scenario, rate, warmup );
+			}
+			System.out.println( "+ " + scenario.name() + ": " + rate + " requests per second for " + duration + "s" );
+			results.add( generator.run( scenario, rate, duration ) );
+		}
+
+		report( results );
+
+		int exitCode = 0;
+		if ( updateBaseline ) {
+			Baseline.save( baselineFile, rate, results );
+			System.out.println( "+ Baseline written to " + baselineFile );
+		} else {
+			Baseline baseline = Baseline.load( baselineFile );
+			if ( baseline == null ) {
+				System.out.println( ( allowMissing ? "+" : "-" ) + " No baseline at " + baselineFile + ", run with --updateBaseline to create one" );
+				if ( !allowMissing ) {
+					exitCode = 1;
+				}
+			} else {
+				List<String> regressions = baseline.compare( rate, results, threshold );
+				if ( regressions.isEmpty() ) {
+					System.out.println( "+ No regressions against " + baselineFile + " (threshold " + threshold + "%)" );
+				} else {
+					System.out.println( "- Regressions against " + baselineFile + " (threshold " + threshold + "%):" );
+					regressions.forEach( regression -> System.out.println( "  " + regression ) );
+					exitCode = 1;
+				}
+			}
+		}
+		// Stops the server through its shutdown hook
+		System.exit( exitCode );
+	}
+
+	/**
+	 * Print the results as a table
+	 */
+	private static void report( List<LoadResult> results ) {
+		String format = "%-12s %10s %8s %12s %10s %10s %10s%n";
+		System.out.printf( Locale.ROOT, format, "scenario", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms" );
+		for ( LoadResult result : results ) {
+			System.out.printf(
+			    Locale.ROOT,
+			    format,
+			    result.getScenario(),
+			    result.getRequests(),
+			    result.getErrors(),
+			    String.format( Locale.ROOT, "%.1f", result.getThroughput() ),
+			    String.format( Locale.ROOT, "%.3f", result.getLatency( 50 ) ),
+			    String.format( Locale.ROOT, "%.3f", result.getLatency( 99 ) ),
+			    String.format( Locale.ROOT, "%.3f", result.getLatency( 99.9 ) )
+			);
+		}
+	}
+
+	/**
+	 * Wait until the server answers, the runtime can take a while to start
+	 */
+	private static void waitForServer( HttpClient client, String baseURI ) throws InterruptedException {
+		HttpRequest	request		= HttpRequest.newBuilder( URI.create( baseURI + "/assets/site.css" ) ).timeout( Duration.ofSeconds( 5 ) ).build();
+		long		deadline	= System.currentTimeMillis() + 60_000;
+		while ( System.currentTimeMillis() < deadline ) {
+			try {
+				client.send( request, HttpResponse.BodyHandlers.discarding() );
+				return;
+			} catch ( IOException e ) {
+				Thread.sleep( 250 );
+			}
+		}
+		throw new IllegalStateException( "The MiniServer did not start within 60 seconds" );
+	}
+
+	private static int freePort() throws IOException {
+		try ( ServerSocket socket = new ServerSocket( 0 ) ) {
+			return socket.getLocalPort();
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A request the load test sends over and over
+ *
+ * @param name    The scenario name, used in the report and the baseline
+ * @param request The request
+ */
+public record Scenario( String name, HttpRequest request ) {
+
+	/**
+	 * How long a single request may take before it counts as an error
+	 */
+	static final Duration REQUEST_TIMEOUT = Duration.ofSeconds( 10 );
+
+	/**
+	 * The scenarios for the fixture web root
+	 *
+	 * @param baseURI The server address, like {@code http://127.0.0.1:8080}
+	 *
+	 * @return The scenarios, in the order they run
+	 */
+	public static List<Scenario> fixtures( String baseURI ) {
+		return List.of(
+		    new Scenario( "static", get( baseURI + "/assets/site.css" ) ),
+		    new Scenario( "small-page", get( baseURI + "/small.bxm" ) ),
+		    new Scenario( "large-page", get( baseURI + "/large.bxm" ) ),
+		    new Scenario( "json-api", get( baseURI + "/api/users.bxm" ) ),
+		    new Scenario( "upload", upload( baseURI + "/upload.bxm", 64 * 1024 ) )
+		);
+	}
+
+	private static HttpRequest get( String uri ) {
+		return HttpRequest.newBuilder( URI.create( uri ) ).timeout( REQUEST_TIMEOUT ).GET().build();
+	}
+
+	/**
+	 * A multipart form with a text field and a file of random bytes
+	 */
+	private static HttpRequest upload( String uri, int fileSize ) {
+		String	boundary	= "----bx-load-test-boundary";
+		byte[]	file		= new byte[ fileSize ];
+		new Random( 42 ).nextBytes( file );
+		byte[]	head		= ( "--" + boundary + "\r\n"
+		    + "Content-Disposition: form-data; name=\"title\"\r\n\r\n"
+		    + "Load test upload\r\n"
+		    + "--" + boundary + "\r\n"
+		    + "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n"
+		    + "Content-Type: application/octet-stream\r\n\r\n" ).getBytes( StandardCharsets.US_ASCII );
+		byte[]	tail		= ( "\r\n--" + boundary + "--\r\n" ).getBytes( StandardCharsets.US_ASCII );
+		byte[]	body		= new byte[ head.length + file.length + tail.length ];
+		System.arraycopy( head, 0, body, 0, head.length );
+		System.arraycopy( file, 0, body, head.length, file.length );
+		System.arraycopy( tail, 0, body, head.length + file.length, tail.length );
+		return HttpRequest.newBuilder( URI.create( uri ) )
+		    .timeout( REQUEST_TIMEOUT )
+		    .header( "Content-Type", "multipart/form-data; boundary=" + boundary )
+		    .POST( HttpRequest.BodyPublishers.ofByteArray( body ) )
+		    .build();
+	}
+
+}
@@ -0,0 +1,285 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup time of the MiniServer, with and without an AppCDS archive.
+ *
+ * Every run starts the MiniServer jar in a new JVM and measures the time until the first BoxLang page answers, which
+ * is what an autoscaler waits for. With {@code --train} it instead makes a training run that serves every fixture
+ * scenario and stops the server, so the JVM writes the classes it loaded to the archive with
+ * {@code -XX:ArchiveClassesAtExit}.
+ *
+ * The following arguments are supported:
+ *
+ * --jar <path> - The MiniServer jar. Required.
+ * --archive <path> - The AppCDS archive. Default is {@code build/cds/boxlang-miniserver.jsa}.
+ * --webroot <path> - The fixture web root. Default is {@code src/loadtest/www}.
+ * --train - Write the archive from a training run instead of benchmarking.
+ * --runs <n> - How many times the server is started with and without the archive. Default is 5.
+ *
+ * Any other argument is passed on to the MiniServer.
+ */
+public class StartupBenchmark {
+
+	/**
+	 * The page whose first response ends a run, it goes through the BoxLang runtime
+	 */
+	private static final String		FIRST_PAGE		= "/small.bxm";
+
+	/**
+	 * How long a single start may take
+	 */
+	private static final Duration	START_TIMEOUT	= Duration.ofSeconds( 60 );
+
+	public static void main( String[] args ) throws Exception {
+		Path			jar			= null;
+		Path			archive		= Paths.get( "build/cds/boxlang-miniserver.jsa" );
+		String			webRoot		= "src/loadtest/www";
+		boolean			train		= false;
+		int				runs		= 5;
+		List<String>	serverArgs	= new ArrayList<>();
+
+		for ( int i = 0; i < args.length; i++ ) {
+			switch ( args[ i ] ) {
+				case "--jar" -> jar = Paths.get( args[ ++i ] );
+				case "--archive" -> archive = Paths.get( args[ ++i ] );
+				case "--webroot" -> webRoot = args[ ++i ];
+				case "--train" -> train = true;
+				case "--runs" -> runs = Integer.parseInt( args[ ++i ] );
+				default -> serverArgs.add( args[ i ] );
+			}
+		}
+		if ( jar == null || !Files.isRegularFile( jar ) ) {
+			System.out.println( "The MiniServer jar [" + jar + "] does not exist, build it first with: gradle shadowJar" );
+			System.exit( 1 );
+		}
+		serverArgs.addAll( List.of( "--host", "127.0.0.1", "--webroot", webRoot ) );
+
+		HttpClient client = HttpClient.newBuilder()
+		    .version( HttpClient.Version.HTTP_1_1 )
+		    .connectTimeout( Duration.ofSeconds( 5 ) )
+		    .build();
+
+		if ( train ) {
+			train( client, jar, archive, serverArgs );
+			return;
+		}
+
+		if ( !Files.isRegularFile( archive ) ) {
+			System.out.println( "The AppCDS archive [" + archive + "] does not exist, create it first with: gradle appCDS" );
+			System.exit( 1 );
+		}
+		// Alternate the two modes so both see the same machine load and file system cache
+		long[]		without			= new long[ runs ];
+		long[]		with			= new long[ runs ];
+		String[]	withoutPhases	= new String[ runs ];
+		String[]	withPhases		= new String[ runs ];
+		for ( int run = 0; run < runs; run++ ) {
+			StartResult result = start( client, jar, List.of(), serverArgs );
+			without[ run ]			= result.millis();
+			withoutPhases[ run ]	= result.phases();
+			result					= start( client, jar, List.of( "-XX:SharedArchiveFile=" + archive, "-Xshare:auto" ), serverArgs );
+			with[ run ]				= result.millis();
+			withPhases[ run ]		= result.phases();
+			System.out.printf( Locale.ROOT, "+ run %d: %dms without the archive, %dms with it%n", run + 1, without[ run ], with[ run ] );
+		}
+
+		report( "without archive", without, withoutPhases );
+		report( "with archive", with, withPhases );
+		System.out.printf( Locale.ROOT, "+ Time to first response is %.1f%% faster with the archive%n",
+		    ( 1 - ( double ) median( with ) / median( without ) ) * 100 );
+	}
+
+	/**
+	 * Start the server with {@code -XX:ArchiveClassesAtExit}, serve every scenario a few times so the request classes are
+	 * loaded too, then stop it so the archive is written
+	 */
+	private static void train( HttpClient client, Path jar, Path archive, List<String> serverArgs ) throws Exception {
+		Files.createDirectories( archive.toAbsolutePath().getParent() );
+		Files.deleteIfExists( archive );
+
+		int		port	= freePort();
+		Process	server	= launch( jar, List.of( "-XX:ArchiveClassesAtExit=" + archive, "-Xlog:cds=off" ), serverArgs, port, true );
+		try {
+			String baseURI = "http://127.0.0.1:" + port;
+			waitForFirstResponse( client, server, baseURI );
+			for ( Scenario scenario : Scenario.fixtures( baseURI ) ) {
+				for ( int i = 0; i < 10; i++ ) {
+					client.send( scenario.request(), HttpResponse.BodyHandlers.discarding() );
+				}
+			}
+		} finally {
+			// A normal shutdown, the archive is only written when the JVM exits through its shutdown sequence
+			server.destroy();
+			if ( !server.waitFor( START_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS ) ) {
+				server.destroyForcibly();
+			}
+		}
+
+		if ( !Files.isRegularFile( archive ) ) {
+			System.out.println( "The training run did not write the AppCDS archive [" + archive + "], it requires JDK 19 or later" );
+			System.exit( 1 );
+		}
+		System.out.println( "+ AppCDS archive written to " + archive + " (" + Files.size( archive ) / 1024 + "KB)" );
+	}
+
+	/**
+	 * Start the server and time it until the first page answers, then stop it
+	 */
+	private static StartResult start( HttpClient client, Path jar, List<String> jvmArgs, List<String> serverArgs ) throws Exception {
+		int		port	= freePort();
+		long	started	= System.nanoTime();
+		Process	server	= launch( jar, jvmArgs, serverArgs, port, false );
+		try {
+			PhaseReader phases = new PhaseReader( server );
+			phases.start();
+			waitForFirstResponse( client, server, "http://127.0.0.1:" + port );
+			long millis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - started );
+			// The phases line is printed right after the listener opens, so it is there by now or very soon
+			phases.join( 1000 );
+			return new StartResult( millis, phases.line );
+		} finally {
+			server.destroyForcibly();
+			server.waitFor();
+		}
+	}
+
+	/**
+	 * Start the MiniServer jar in a new JVM, its output is either shown or left for the caller to read
+	 */
+	private static Process launch( Path jar, List<String> jvmArgs, List<String> serverArgs, int port, boolean inheritIO ) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add( Paths.get( System.getProperty( "java.home" ), "bin", "java" ).toString() );
+		command.addAll( jvmArgs );
+		command.addAll( List.of( "-jar", jar.toString() ) );
+		command.addAll( serverArgs );
+		command.addAll( List.of( "--port", String.valueOf( port ) ) );
+		ProcessBuilder builder = new ProcessBuilder( command ).redirectErrorStream( true );
+		if ( inheritIO ) {
+			builder.inheritIO();
+		}
+		return builder.start();
+	}
+
+	/**
+	 * Poll the first page until it answers with a 200
+	 */
+	private static void waitForFirstResponse( HttpClient client, Process server, String baseURI ) throws InterruptedException {
+		HttpRequest	request		= HttpRequest.newBuilder( URI.create( baseURI + FIRST_PAGE ) ).timeout( Duration.ofSeconds( 5 ) ).build();
+		long		deadline	= System.nanoTime() + START_TIMEOUT.toNanos();
+		while ( System.nanoTime() < deadline ) {
+			if ( !server.isAlive() ) {
+				throw new IllegalStateException( "The MiniServer exited with code " + server.exitValue() + " before answering" );
+			}
+			try {
+				if ( client.send( request, HttpResponse.BodyHandlers.discarding() ).statusCode() == 200 ) {
+					return;
+				}
+			} catch ( IOException e ) {
+				// Not listening yet
+			}
+			Thread.sleep( 5 );
+		}
+		throw new IllegalStateException( "The MiniServer did not answer within " + START_TIMEOUT.toSeconds() + " seconds" );
+	}
+
+	/**
+	 * Print the median, best and worst run of a mode, and the startup phases of the median run
+	 */
+	private static void report( String mode, long[] millis, String[] phases ) {
+		long[] sorted = millis.clone();
+		Arrays.sort( sorted );
+		System.out.printf( Locale.ROOT, "%-16s median %6dms   min %6dms   max %6dms%n", mode, median( millis ), sorted[ 0 ], sorted[ sorted.length - 1 ] );
+		for ( int i = 0; i < millis.length; i++ ) {
+			if ( millis[ i ] == median( millis ) && phases[ i ] != null ) {
+				System.out.println( "                 " + phases[ i ] );
+				break;
+			}
+		}
+	}
+
+	private static long median( long[] millis ) {
+		long[] sorted = millis.clone();
+		Arrays.sort( sorted );
+		return sorted[ sorted.length / 2 ];
+	}
+
+	private static int freePort() throws IOException {
+		try ( ServerSocket socket = new ServerSocket( 0 ) ) {
+			return socket.getLocalPort();
+		}
+	}
+
+	/**
+	 * The time to first response of a run, and the startup phases the server printed
+	 */
+	private record StartResult( long millis, String phases ) {
+	}
+
+	/**
+	 * Reads the server output until it prints its startup phases, so the pipe never fills up
+	 */
+	private static class PhaseReader extends Thread {
+
+		private final Process	server;
+
+		private volatile String	line;
+
+		PhaseReader( Process server ) {
+			super( "startup-output" );
+			this.server = server;
+			setDaemon( true );
+		}
+
+		@Override
+		public void run() {
+			try ( BufferedReader reader = new BufferedReader( new InputStreamReader( this.server.getInputStream(), StandardCharsets.UTF_8 ) ) ) {
+				String output;
+				while ( ( output = reader.readLine() ) != null ) {
+					if ( output.startsWith( "+ Startup phases: " ) ) {
+						this.line = output.substring( 2 );
+						return;
+					}
+				}
+			} catch ( IOException e ) {
+				// The server was stopped
+			}
+		}
+	}
+
+}
@@ -17,23 +17,72 @@
  */
 package ortus.boxlang.web;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+
+import org.xnio.BufferAllocator;
+import org.xnio.Options;
 
-import io.undertow.Handlers;
 import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.predicate.Predicate;
 import io.undertow.predicate.Predicates;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.ProxyPeerAddressHandler;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import io.undertow.server.handlers.cache.DirectBufferCache;
 import io.undertow.server.handlers.encoding.ContentEncodingRepository;
 import io.undertow.server.handlers.encoding.EncodingHandler;
 import io.undertow.server.handlers.encoding.GzipEncodingProvider;
+import io.undertow.server.handlers.proxy.ProxyHandler;
+import io.undertow.server.handlers.resource.CachingResourceManager;
 import io.undertow.server.handlers.resource.PathResourceManager;
 import io.undertow.server.handlers.resource.ResourceHandler;
 import io.undertow.server.handlers.resource.ResourceManager;
+import io.undertow.util.StatusCodes;
 import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.web.accesslog.AccessLog;
+import ortus.boxlang.web.accesslog.AccessLogFormat;
+import ortus.boxlang.web.accesslog.AccessLogHandler;
+import ortus.boxlang.web.accesslog.AccessLogRotation;
+import ortus.boxlang.web.cluster.Cluster;
+import ortus.boxlang.web.cluster.HealthCheckHandler;
+import ortus.boxlang.web.exchange.BoxHTTPUndertowExchange;
+import ortus.boxlang.web.exchange.FileSender;
+import ortus.boxlang.web.handlers.AdmissionControlHandler;
 import ortus.boxlang.web.handlers.BLHandler;
+import ortus.boxlang.web.handlers.RequestCoalescingHandler;
+import ortus.boxlang.web.handlers.RequestSizeLimitHandler;
+import ortus.boxlang.web.handlers.ResponseCacheHandler;
+import ortus.boxlang.web.handlers.RoutingHandler;
 import ortus.boxlang.web.handlers.WelcomeFileHandler;
+import ortus.boxlang.web.lanes.LaneHandler;
+import ortus.boxlang.web.lanes.RequestLane;
+import ortus.boxlang.web.metrics.MeteredGzipEncodingProvider;
+import ortus.boxlang.web.metrics.MetricsHandler;
+import ortus.boxlang.web.metrics.ServerMetrics;
+import ortus.boxlang.web.resources.CompressedResourceSupplier;
+import ortus.boxlang.web.resources.Precompressor;
+import ortus.boxlang.web.routing.RouteResolver;
+import ortus.boxlang.web.ssl.SSLContextLoader;
+import ortus.boxlang.web.timeout.RequestTimeouts;
+import ortus.boxlang.web.warmup.StartupTimer;
+import ortus.boxlang.web.warmup.TemplatePrecompiler;
+import ortus.boxlang.web.warmup.Warmup;
 
 /**
  * The BoxLang MiniServer is a simple web server that serves BoxLang files and static files.
@@ -42,8 +91,100 @@ import ortus.boxlang.web.handlers.WelcomeFileHandler;
  *
  * --port <port> - The port to listen on. Default is 8080.
  * --webroot <path> - The path to the webroot. Default is {@code BOXLANG_HOME/www}
- * --debug - Enable debug mode or not. Default is false.
+ * --debug - Enable debug mode or not. Also sends a {@code Server-Timing} header with the time BoxLang requests spent
+ * waiting for a thread, routing, parsing the form and running the template. Default is false.
  * --host <host> - The host to listen on. Default is {@code localhost}.
+ * --executor <virtual|platform> - How BoxLang requests are executed. {@code platform} uses the XNIO worker pool,
+ * {@code virtual} runs every request on its own virtual thread. Default is {@code platform}.
+ * --maxConcurrency <n> - The maximum number of BoxLang requests executing at the same time. Default is 0 (unlimited).
+ * --queueSize <n> - How many requests can wait for a free slot when {@code --maxConcurrency} is reached. Default is 100.
+ * --queueTimeout <ms> - How long a request can wait for a free slot before it is shed with a 503. Default is 5000.
+ * --adaptiveConcurrency - Lower the concurrency limit automatically when the p99 latency goes over {@code --targetLatency}.
+ * --targetLatency <ms> - The p99 latency the adaptive concurrency limit aims for. Default is 1000.
+ * --staticThreads <n> - Serve static files and directory listings from their own pool of this many threads, so slow
+ * BoxLang requests can't hold them up. Default is 0 (the XNIO worker pool).
+ * --staticQueue <n> - How many static requests can wait for a thread before they get a 503. Default is 1000.
+ * --dynamicThreads <n> - Run BoxLang requests on their own pool of this many threads, virtual threads with
+ * {@code --executor virtual}. Default is 0 (the {@code --executor}).
+ * --dynamicQueue <n> - How many BoxLang requests can wait for a thread before they get a 503. Default is 1000.
+ * --lanes <lanes> - A comma separated list of path prefixes with their own pool, as {@code name:/prefix/:threads:queue},
+ * like {@code api:/api/:16:200}. A lane takes every request under its prefix, static or BoxLang.
+ * --requestTimeout <ms> - How long a BoxLang request may run. A request over it is interrupted and gets a 504 if nothing
+ * was sent yet. Default is 0 (no limit).
+ * --requestTimeouts <overrides> - A comma separated list of path prefixes with their own timeout, as {@code /prefix/=ms},
+ * like {@code /reports/=120000}. The longest prefix wins, 0 removes the limit.
+ * --welcomeFileCacheTTL <ms> - How long welcome file lookups are cached when the web root cannot be watched for changes.
+ * Default is 5000.
+ * --staticCacheSize <MB> - The off-heap memory used to cache static files, up to 2047. Default is 32, 0 disables the
+ * cache.
+ * --staticCacheMaxFileSize <KB> - Static files larger than this are always served from disk and never compressed on the
+ * fly. Default is 1024.
+ * --compressedCacheSize <MB> - The memory used to cache compressed variants of static files. Default is 16, 0 only
+ * serves precompressed {@code .br} and {@code .gz} files.
+ * --precompress - Write a {@code .gz} file next to every compressible static file in the web root on startup.
+ * --sslPort <port> - Also listen for HTTPS on this port. Requires {@code --sslKeystore} or {@code --sslCert} and
+ * {@code --sslKey}. Default is 0 (disabled).
+ * --sslKeystore <path> - A PKCS12 or JKS keystore with the server certificate and key.
+ * --sslKeystorePassword <password> - The keystore password.
+ * --sslKeystoreType <type> - The keystore type, {@code PKCS12} or {@code JKS}. Default is guessed from the file extension.
+ * --sslCert <path> - A PEM certificate chain, used instead of a keystore.
+ * --sslKey <path> - The unencrypted PKCS#8 PEM private key for {@code --sslCert}.
+ * --disableHttp2 - Only speak HTTP/1.1. By default HTTPS negotiates HTTP/2 through ALPN and the HTTP listener accepts
+ * cleartext HTTP/2 (h2c) upgrades.
+ * --http2MaxConcurrentStreams <n> - The maximum number of concurrent streams per HTTP/2 connection. Default is 100.
+ * --http2HeaderTableSize <bytes> - The HPACK header table size of HTTP/2 connections. Default is 4096.
+ * --responseCache - Cache the output of BoxLang pages and replay it without running the template again. Templates can
+ * opt out or set the time to live with the {@code Cache-Control} header. Requests with cookies not listed in
+ * {@code --responseCacheCookies} and pages that use the session are never cached. Default is false.
+ * --responseCacheTTL <seconds> - How long a page is cached when the template does not send a max age. Default is 60.
+ * --responseCacheSize <MB> - The memory used to cache pages. Default is 64.
+ * --responseCacheVary <headers> - A comma separated list of request headers that select a different cached page. Also
+ * used to tell coalesced requests apart.
+ * --responseCacheCookies <names> - A comma separated list of request cookies that select a different cached page. Also
+ * used to tell coalesced requests apart.
+ * --coalesceRequests - Run identical concurrent GET requests once and send every client a copy of the response.
+ * Requests with cookies not listed in {@code --responseCacheCookies} always run on their own. Default is false.
+ * --coalesceTimeout <ms> - How long a coalesced request waits before it runs on its own. Default is 5000.
+ * --uploadDir <path> - The directory for temporary upload files. Default is the system temp directory.
+ * --maxUploadFileSize <MB> - The maximum size of a single uploaded file. Default is 0 (unlimited).
+ * --maxRequestSize <MB> - The maximum size of a BoxLang request body, larger requests get a 413. Default is 0
+ * (unlimited).
+ * --maxFormFields <n> - The maximum number of form fields and query string parameters. Default is 1000.
+ * --responseBufferSize <KB> - BoxLang responses up to this size are held and sent with a {@code Content-Length}, larger
+ * ones are streamed with chunked encoding. A flush from the template always sends the output so far. Default is 64, 0
+ * streams on every flush.
+ * --writeTimeout <ms> - Close connections whose client stops reading the response for this long. Also the longest the
+ * IO thread spends sending the rest of a BoxLang response. Default is 30000, 0 for no limit.
+ * --etags - Tag BoxLang responses with a weak {@code ETag} computed from their body, and answer requests that already
+ * have the same body with a 304. Responses the template flushed or that are over {@code --responseBufferSize} are
+ * never tagged. Default is false.
+ * --blockingResponseWrites - Write the end of BoxLang responses from the request thread instead of handing it off to the
+ * IO thread once the template is done.
+ * --metrics - Serve request counts, latency histograms, worker pool usage and traffic counters in the Prometheus text
+ * format at {@code --metricsPath}. Default is false.
+ * --metricsPath <path> - The path the metrics are served at. Default is {@code /__metrics}.
+ * --accessLog <path> - Log every request to this file. Lines are written by a background thread, never by the request.
+ * Default is no access log.
+ * --accessLogFormat <common|combined|json> - The access log line format. Default is {@code combined}.
+ * --accessLogRotate <none|hourly|daily> - Start a new access log file every hour or day. Default is {@code daily}.
+ * --accessLogMaxSize <MB> - Start a new access log file when it reaches this size. Default is 100, 0 for no limit.
+ * --accessLogBufferSize <n> - How many requests can wait to be written to the access log. Default is 8192.
+ * --accessLogBlock - Make requests wait when the access log buffer is full instead of leaving them out of the log.
+ * Requests completed on an IO thread never wait, their records are queued until the writer catches up.
+ * --precompile - Compile every BoxLang template, script and class in the web root in parallel before the server takes
+ * traffic. Default is false.
+ * --warmup <path> - A file with one request path per line, replayed through the server before it takes traffic so the
+ * JIT and the caches are warm.
+ * --warmupRequests <n> - How many times each warmup path is requested. Default is 20.
+ * --cluster <n> - Run this many worker processes on loopback ports, each with its own BoxLang runtime and heap, and
+ * balance requests across them by least active requests. This process only proxies, terminates HTTPS and writes the
+ * access log. Workers that crash or fail their health checks are restarted, and a rolling restart can be started through
+ * the {@code ortus.boxlang.web:type=Cluster} MBean. The front answers {@code /__health} itself. Can't be combined with
+ * {@code --metrics}. Default is 0 (no cluster).
+ * --clusterJvmArgs <options> - The space separated JVM options of the workers, like {@code "-Xmx2g -XX:+UseZGC"}.
+ * Default is the JVM options of this process.
+ * --clusterHealthInterval <ms> - How often the workers are health checked. Default is 5000.
+ * --clusterDrainTimeout <ms> - How long a replaced or stopped worker may take to finish its requests. Default is 30000.
  *
  * Examples:
  *
@@ -57,15 +198,77 @@ import ortus.boxlang.web.handlers.WelcomeFileHandler;
 public class MiniServer {
 
 	public static void main( String[] args ) {
-		Map<String, String>	envVars		= System.getenv();
+		// Time every startup phase, starting with the time the JVM took to get here
+		StartupTimer		startup			= new StartupTimer( System.currentTimeMillis() );
+		ProcessHandle.current().info().startInstant()
+		    .ifPresent( started -> startup.record( "jvm", System.currentTimeMillis() - started.toEpochMilli() ) );
+		Map<String, String>	envVars			= System.getenv();
 
 		// Setup default values
-		int					port		= Integer.parseInt( envVars.getOrDefault( "BOXLANG_PORT", "8080" ) );
-		String				webRoot		= envVars.getOrDefault( "BOXLANG_WEBROOT", "" );
-		boolean				debug		= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_DEBUG", "false" ) );
-		String				host		= envVars.getOrDefault( "BOXLANG_HOST", "localhost" );
-		String				configPath	= envVars.getOrDefault( "BOXLANG_CONFIG", null );
-		String				serverHome	= envVars.getOrDefault( "BOXLANG_HOME", null );
+		int					port			= Integer.parseInt( envVars.getOrDefault( "BOXLANG_PORT", "8080" ) );
+		String				webRoot			= envVars.getOrDefault( "BOXLANG_WEBROOT", "" );
+		boolean				debug			= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_DEBUG", "false" ) );
+		String				host			= envVars.getOrDefault( "BOXLANG_HOST", "localhost" );
+		String				configPath		= envVars.getOrDefault( "BOXLANG_CONFIG", null );
+		String				serverHome		= envVars.getOrDefault( "BOXLANG_HOME", null );
+		String				executorMode	= envVars.getOrDefault( "BOXLANG_EXECUTOR", "platform" );
+		int					maxConcurrency	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_MAX_CONCURRENCY", "0" ) );
+		int					queueSize		= Integer.parseInt( envVars.getOrDefault( "BOXLANG_QUEUE_SIZE", "100" ) );
+		long				queueTimeout	= Long.parseLong( envVars.getOrDefault( "BOXLANG_QUEUE_TIMEOUT", "5000" ) );
+		boolean				adaptive		= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_ADAPTIVE_CONCURRENCY", "false" ) );
+		long				targetLatency	= Long.parseLong( envVars.getOrDefault( "BOXLANG_TARGET_LATENCY", "1000" ) );
+		int					staticThreads	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_STATIC_THREADS", "0" ) );
+		int					staticQueue		= Integer.parseInt( envVars.getOrDefault( "BOXLANG_STATIC_QUEUE", "1000" ) );
+		int					dynamicThreads	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_DYNAMIC_THREADS", "0" ) );
+		int					dynamicQueue	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_DYNAMIC_QUEUE", "1000" ) );
+		String				laneList		= envVars.getOrDefault( "BOXLANG_LANES", "" );
+		long				requestTimeout	= Long.parseLong( envVars.getOrDefault( "BOXLANG_REQUEST_TIMEOUT", "0" ) );
+		String				timeoutList		= envVars.getOrDefault( "BOXLANG_REQUEST_TIMEOUTS", "" );
+		int					welcomeFileTTL	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_WELCOME_FILE_CACHE_TTL", "5000" ) );
+		int					staticCacheSize	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_STATIC_CACHE_SIZE", "32" ) );
+		long				staticMaxFile	= Long.parseLong( envVars.getOrDefault( "BOXLANG_STATIC_CACHE_MAX_FILE_SIZE", "1024" ) );
+		int					compressedCache	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_COMPRESSED_CACHE_SIZE", "16" ) );
+		boolean				precompress		= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_PRECOMPRESS", "false" ) );
+		int					sslPort			= Integer.parseInt( envVars.getOrDefault( "BOXLANG_SSL_PORT", "0" ) );
+		String				sslKeystore		= envVars.getOrDefault( "BOXLANG_SSL_KEYSTORE", null );
+		String				sslPassword		= envVars.getOrDefault( "BOXLANG_SSL_KEYSTORE_PASSWORD", null );
+		String				sslKeystoreType	= envVars.getOrDefault( "BOXLANG_SSL_KEYSTORE_TYPE", null );
+		String				sslCert			= envVars.getOrDefault( "BOXLANG_SSL_CERT", null );
+		String				sslKey			= envVars.getOrDefault( "BOXLANG_SSL_KEY", null );
+		boolean				http2			= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_HTTP2", "true" ) );
+		int					http2Streams	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_HTTP2_MAX_CONCURRENT_STREAMS", "100" ) );
+		int					http2TableSize	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_HTTP2_HEADER_TABLE_SIZE", "4096" ) );
+		boolean				responseCache	= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_RESPONSE_CACHE", "false" ) );
+		long				responseTTL		= Long.parseLong( envVars.getOrDefault( "BOXLANG_RESPONSE_CACHE_TTL", "60" ) );
+		int					responseSize	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_RESPONSE_CACHE_SIZE", "64" ) );
+		String				responseVary	= envVars.getOrDefault( "BOXLANG_RESPONSE_CACHE_VARY", "" );
+		String				responseCookies	= envVars.getOrDefault( "BOXLANG_RESPONSE_CACHE_COOKIES", "" );
+		boolean				coalesce		= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_COALESCE_REQUESTS", "false" ) );
+		long				coalesceTimeout	= Long.parseLong( envVars.getOrDefault( "BOXLANG_COALESCE_TIMEOUT", "5000" ) );
+		String				uploadDir		= envVars.getOrDefault( "BOXLANG_UPLOAD_DIR", null );
+		long				maxUploadFile	= Long.parseLong( envVars.getOrDefault( "BOXLANG_MAX_UPLOAD_FILE_SIZE", "0" ) );
+		long				maxRequestSize	= Long.parseLong( envVars.getOrDefault( "BOXLANG_MAX_REQUEST_SIZE", "0" ) );
+		int					maxFormFields	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_MAX_FORM_FIELDS", "1000" ) );
+		int					responseBuffer	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_RESPONSE_BUFFER_SIZE", "64" ) );
+		int					writeTimeout	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_WRITE_TIMEOUT", "30000" ) );
+		boolean				asyncWrites		= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_ASYNC_RESPONSE_WRITES", "true" ) );
+		boolean				etags			= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_ETAGS", "false" ) );
+		boolean				metrics			= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_METRICS", "false" ) );
+		String				metricsPath		= envVars.getOrDefault( "BOXLANG_METRICS_PATH", "/__metrics" );
+		String				accessLogPath	= envVars.getOrDefault( "BOXLANG_ACCESS_LOG", null );
+		String				accessLogFormat	= envVars.getOrDefault( "BOXLANG_ACCESS_LOG_FORMAT", "combined" );
+		String				accessLogRotate	= envVars.getOrDefault( "BOXLANG_ACCESS_LOG_ROTATE", "daily" );
+		long				accessLogSize	= Long.parseLong( envVars.getOrDefault( "BOXLANG_ACCESS_LOG_MAX_SIZE", "100" ) );
+		int					accessLogBuffer	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_ACCESS_LOG_BUFFER_SIZE", "8192" ) );
+		boolean				accessLogBlock	= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_ACCESS_LOG_BLOCK", "false" ) );
+		boolean				precompile		= Boolean.parseBoolean( envVars.getOrDefault( "BOXLANG_PRECOMPILE", "false" ) );
+		String				warmupFile		= envVars.getOrDefault( "BOXLANG_WARMUP", null );
+		int					warmupRequests	= Integer.parseInt( envVars.getOrDefault( "BOXLANG_WARMUP_REQUESTS", "20" ) );
+		int					clusterSize		= Integer.parseInt( envVars.getOrDefault( "BOXLANG_CLUSTER", "0" ) );
+		String				clusterJvmArgs	= envVars.getOrDefault( "BOXLANG_CLUSTER_JVM_ARGS", "" );
+		long				clusterHealth	= Long.parseLong( envVars.getOrDefault( "BOXLANG_CLUSTER_HEALTH_INTERVAL", "5000" ) );
+		long				clusterDrain	= Long.parseLong( envVars.getOrDefault( "BOXLANG_CLUSTER_DRAIN_TIMEOUT", "30000" ) );
+		boolean				clusterWorker	= envVars.containsKey( Cluster.WORKER_VARIABLE );
 
 		// Grab --port and --webroot from args, if they exist
 		// If --debug is set, enable debug mode
@@ -88,6 +291,177 @@ public class MiniServer {
 			if ( args[ i ].equalsIgnoreCase( "--serverHome" ) || args[ i ].equalsIgnoreCase( "-s" ) ) {
 				serverHome = args[ ++i ];
 			}
+			if ( args[ i ].equalsIgnoreCase( "--executor" ) || args[ i ].equalsIgnoreCase( "-e" ) ) {
+				executorMode = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--maxConcurrency" ) ) {
+				maxConcurrency = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--queueSize" ) ) {
+				queueSize = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--queueTimeout" ) ) {
+				queueTimeout = Long.parseLong( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--adaptiveConcurrency" ) ) {
+				adaptive = true;
+			}
+			if ( args[ i ].equalsIgnoreCase( "--targetLatency" ) ) {
+				targetLatency = Long.parseLong( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--staticThreads" ) ) {
+				staticThreads = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--staticQueue" ) ) {
+				staticQueue = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--dynamicThreads" ) ) {
+				dynamicThreads = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--dynamicQueue" ) ) {
+				dynamicQueue = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--lanes" ) ) {
+				laneList = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--requestTimeout" ) ) {
+				requestTimeout = Long.parseLong( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--requestTimeouts" ) ) {
+				timeoutList = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--welcomeFileCacheTTL" ) ) {
+				welcomeFileTTL = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--staticCacheSize" ) ) {
+				staticCacheSize = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--staticCacheMaxFileSize" ) ) {
+				staticMaxFile = Long.parseLong( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--compressedCacheSize" ) ) {
+				compressedCache = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--precompress" ) ) {
+				precompress = true;
+			}
+			if ( args[ i ].equalsIgnoreCase( "--sslPort" ) ) {
+				sslPort = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--sslKeystore" ) ) {
+				sslKeystore = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--sslKeystorePassword" ) ) {
+				sslPassword = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--sslKeystoreType" ) ) {
+				sslKeystoreType = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--sslCert" ) ) {
+				sslCert = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--sslKey" ) ) {
+				sslKey = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--disableHttp2" ) ) {
+				http2 = false;
+			}
+			if ( args[ i ].equalsIgnoreCase( "--http2MaxConcurrentStreams" ) ) {
+				http2Streams = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--http2HeaderTableSize" ) ) {
+				http2TableSize = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--responseCache" ) ) {
+				responseCache = true;
+			}
+			if ( args[ i ].equalsIgnoreCase( "--responseCacheTTL" ) ) {
+				responseTTL = Long.parseLong( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--responseCacheSize" ) ) {
+				responseSize = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--responseCacheVary" ) ) {
+				responseVary = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--responseCacheCookies" ) ) {
+				responseCookies = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--coalesceRequests" ) ) {
+				coalesce = true;
+			}
+			if ( args[ i ].equalsIgnoreCase( "--coalesceTimeout" ) ) {
+				coalesceTimeout = Long.parseLong( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--uploadDir" ) ) {
+				uploadDir = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--maxUploadFileSize" ) ) {
+				maxUploadFile = Long.parseLong( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--maxRequestSize" ) ) {
+				maxRequestSize = Long.parseLong( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--maxFormFields" ) ) {
+				maxFormFields = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--responseBufferSize" ) ) {
+				responseBuffer = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--writeTimeout" ) ) {
+				writeTimeout = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--blockingResponseWrites" ) ) {
+				asyncWrites = false;
+			}
+			if ( args[ i ].equalsIgnoreCase( "--etags" ) ) {
+				etags = true;
+			}
+			if ( args[ i ].equalsIgnoreCase( "--metrics" ) ) {
+				metrics = true;
+			}
+			if ( args[ i ].equalsIgnoreCase( "--metricsPath" ) ) {
+				metricsPath = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--accessLog" ) ) {
+				accessLogPath = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--accessLogFormat" ) ) {
+				accessLogFormat = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--accessLogRotate" ) ) {
+				accessLogRotate = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--accessLogMaxSize" ) ) {
+				accessLogSize = Long.parseLong( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--accessLogBufferSize" ) ) {
+				accessLogBuffer = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--accessLogBlock" ) ) {
+				accessLogBlock = true;
+			}
+			if ( args[ i ].equalsIgnoreCase( "--precompile" ) ) {
+				precompile = true;
+			}
+			if ( args[ i ].equalsIgnoreCase( "--warmup" ) ) {
+				warmupFile = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--warmupRequests" ) ) {
+				warmupRequests = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--cluster" ) ) {
+				clusterSize = Integer.parseInt( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--clusterJvmArgs" ) ) {
+				clusterJvmArgs = args[ ++i ];
+			}
+			if ( args[ i ].equalsIgnoreCase( "--clusterHealthInterval" ) ) {
+				clusterHealth = Long.parseLong( args[ ++i ] );
+			}
+			if ( args[ i ].equalsIgnoreCase( "--clusterDrainTimeout" ) ) {
+				clusterDrain = Long.parseLong( args[ ++i ] );
+			}
 		}
 
 		// Normalize the webroot path
@@ -101,54 +475,517 @@ public class MiniServer {
 			System.exit( 1 );
 		}
 
+		// The static cache size is handed to Undertow as an int number of bytes
+		int maxStaticCacheSize = Integer.MAX_VALUE / ( 1024 * 1024 );
+		if ( staticCacheSize < 0 || staticCacheSize > maxStaticCacheSize ) {
+			System.out.println( "Invalid static cache size [" + staticCacheSize + "MB], valid values are 0 to " + maxStaticCacheSize + "MB" );
+			System.exit( 1 );
+		}
+
+		// Load the certificate for the HTTPS listener, from a keystore or from PEM files
+		SSLContext sslContext = null;
+		if ( sslPort > 0 ) {
+			try {
+				if ( sslKeystore != null ) {
+					sslContext = SSLContextLoader.fromKeyStore( Paths.get( sslKeystore ), sslPassword, sslKeystoreType );
+				} else if ( sslCert != null && sslKey != null ) {
+					sslContext = SSLContextLoader.fromPem( Paths.get( sslCert ), Paths.get( sslKey ) );
+				} else {
+					System.out.println( "An HTTPS port requires --sslKeystore or --sslCert and --sslKey, cannot continue" );
+					System.exit( 1 );
+				}
+			} catch ( IOException | GeneralSecurityException e ) {
+				System.out.println( "Could not load the SSL certificate, cannot continue: " + e.getMessage() );
+				System.exit( 1 );
+			}
+		}
+
+		// Build the executor for BoxLang requests, a null executor means we dispatch to the XNIO worker pool
+		ExecutorService requestExecutor = null;
+		if ( executorMode.equalsIgnoreCase( "virtual" ) ) {
+			requestExecutor = Executors.newThreadPerTaskExecutor( Thread.ofVirtual().name( "bx-request-", 0 ).factory() );
+		} else if ( !executorMode.equalsIgnoreCase( "platform" ) ) {
+			System.out.println( "Invalid executor [" + executorMode + "], valid values are [virtual, platform]" );
+			System.exit( 1 );
+		}
+
+		// Bulkheads: static files, BoxLang requests and path prefixes each get their own threads and queue
+		boolean				virtualLanes	= executorMode.equalsIgnoreCase( "virtual" );
+		RequestLane			staticLane		= null;
+		RequestLane			dynamicLane		= null;
+		List<RequestLane>	prefixLanes		= List.of();
+		try {
+			if ( staticThreads > 0 ) {
+				staticLane = new RequestLane( "static", null, staticThreads, staticQueue, false );
+			}
+			if ( dynamicThreads > 0 ) {
+				dynamicLane = new RequestLane( "dynamic", null, dynamicThreads, dynamicQueue, virtualLanes );
+			}
+			prefixLanes = parseList( laneList ).stream().map( lane -> RequestLane.parse( lane, virtualLanes ) ).toList();
+		} catch ( IllegalArgumentException e ) {
+			System.out.println( e.getMessage() + ", cannot continue" );
+			System.exit( 1 );
+		}
+		List<RequestLane> lanes = new ArrayList<>( prefixLanes );
+		if ( staticLane != null ) {
+			lanes.add( staticLane );
+		}
+		if ( dynamicLane != null ) {
+			lanes.add( dynamicLane );
+		}
+
+		// How long BoxLang requests may run
+		RequestTimeouts requestTimeouts = null;
+		try {
+			requestTimeouts = new RequestTimeouts( requestTimeout, parseList( timeoutList ) );
+		} catch ( IllegalArgumentException e ) {
+			System.out.println( e.getMessage() + ", cannot continue" );
+			System.exit( 1 );
+		}
+
+		// Open the access log, its writer thread starts right away
+		AccessLog accessLog = null;
+		if ( accessLogPath != null && !accessLogPath.isBlank() ) {
+			try {
+				accessLog = AccessLog.open(
+				    Paths.get( accessLogPath ),
+				    AccessLogFormat.parse( accessLogFormat ),
+				    accessLogBuffer,
+				    accessLogBlock,
+				    accessLogSize * 1024 * 1024,
+				    AccessLogRotation.parse( accessLogRotate )
+				);
+			} catch ( IllegalArgumentException e ) {
+				System.out.println( "Invalid access log format [" + accessLogFormat + "] or rotation [" + accessLogRotate
+				    + "], valid values are [common, combined, json] and [none, hourly, daily]" );
+				System.exit( 1 );
+			} catch ( IOException e ) {
+				System.out.println( "Could not open the access log, cannot continue: " + e.getMessage() );
+				System.exit( 1 );
+			}
+		}
+
+		// In cluster mode this process only balances requests across the workers, each of them runs its own runtime
+		if ( clusterSize > 0 && !clusterWorker ) {
+			// The proxy would send every scrape to a different worker
+			if ( metrics ) {
+				System.out.println( "--metrics can't be used with --cluster, cannot continue" );
+				System.exit( 1 );
+			}
+			var		cTime	= System.currentTimeMillis();
+			Cluster	cluster	= new Cluster(
+			    clusterSize,
+			    Cluster.workerJvmArguments( clusterJvmArgs ),
+			    Cluster.workerArguments( args ),
+			    clusterHealth,
+			    clusterDrain
+			);
+			System.out.println( "+ Starting BoxLang Server Cluster..." );
+			System.out.println( "- Web Root: " + absWebRoot.toString() );
+			System.out.println( "- Host: " + host );
+			System.out.println( "- Port: " + port );
+			if ( sslContext != null ) {
+				System.out.println( "- SSL Port: " + sslPort );
+			}
+			System.out.println( "- HTTP/2: " + ( http2 ? "enabled, " + http2Streams + " max concurrent streams" : "disabled" ) );
+			System.out.println( "- Cluster: " + cluster );
+			if ( accessLog != null ) {
+				System.out.println( "- Access Log: " + accessLogPath );
+			}
+
+			// The workers would all write the same files
+			if ( precompress ) {
+				try {
+					System.out.println( "+ Precompressed " + Precompressor.precompress( absWebRoot ) + " static files" );
+				} catch ( IOException e ) {
+					System.out.println( "Could not precompress the web root: " + e.getMessage() );
+				}
+			}
+
+			try {
+				cluster.start().get();
+			} catch ( ExecutionException e ) {
+				System.out.println( "Could not start the cluster workers, cannot continue: " + e.getCause().getMessage() );
+				cluster.shutdown();
+				System.exit( 1 );
+			} catch ( InterruptedException e ) {
+				cluster.shutdown();
+				Thread.currentThread().interrupt();
+				return;
+			}
+			registerMBean( cluster, "Cluster" );
+
+			// Requests that can't reach a worker are retried once on another one when they are idempotent
+			HttpHandler rootHandler = ProxyHandler.builder()
+			    .setProxyClient( cluster.getProxyClient() )
+			    .setMaxConnectionRetries( 1 )
+			    .setNext( new ResponseCodeHandler( StatusCodes.SERVICE_UNAVAILABLE ) )
+			    .build();
+			// The worker health checks are not proxied, the front answers for itself
+			rootHandler = new HealthCheckHandler( Cluster.HEALTH_PATH, rootHandler );
+			Undertow.Builder builder = Undertow.builder();
+			if ( accessLog != null ) {
+				registerMBean( accessLog, "AccessLog" );
+				rootHandler = new AccessLogHandler( accessLog, rootHandler );
+				builder.setServerOption( UndertowOptions.RECORD_REQUEST_START_TIME, true );
+			}
+			builder.addHttpListener( port, host );
+			if ( sslContext != null ) {
+				builder.addHttpsListener( sslPort, host, sslContext );
+			}
+			builder.setServerOption( UndertowOptions.ENABLE_HTTP2, http2 );
+			if ( writeTimeout > 0 ) {
+				builder.setSocketOption( Options.WRITE_TIMEOUT, writeTimeout );
+			}
+			if ( http2 ) {
+				builder
+				    .setServerOption( UndertowOptions.HTTP2_SETTINGS_MAX_CONCURRENT_STREAMS, http2Streams )
+				    .setServerOption( UndertowOptions.HTTP2_SETTINGS_HEADER_TABLE_SIZE, http2TableSize );
+			}
+			Undertow frontServer = builder.setHandler( rootHandler ).build();
+
+			final AccessLog clusterAccessLog = accessLog;
+			Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+				System.out.println( "Shutting down BoxLang Server Cluster..." );
+				frontServer.stop();
+				if ( clusterAccessLog != null ) {
+					clusterAccessLog.close();
+				}
+				cluster.shutdown();
+				System.out.println( "BoxLang Server Cluster stopped." );
+			} ) );
+
+			frontServer.start();
+			System.out.println( "+ BoxLang MiniServer cluster started in " + ( System.currentTimeMillis() - cTime ) + "ms" );
+			System.out.println( "+ BoxLang MiniServer started at: http://" + host + ":" + port );
+			if ( sslContext != null ) {
+				System.out.println( "+ BoxLang MiniServer started at: https://" + host + ":" + sslPort );
+			}
+			System.out.println( "Press Ctrl+C to stop the server." );
+			return;
+		}
+
 		// Start the server
+		startup.phase( "options" );
 		var sTime = System.currentTimeMillis();
 		System.out.println( "+ Starting BoxLang Server..." );
 		System.out.println( "- Web Root: " + absWebRoot.toString() );
 		System.out.println( "- Host: " + host );
 		System.out.println( "- Port: " + port );
+		if ( sslContext != null ) {
+			System.out.println( "- SSL Port: " + sslPort );
+		}
+		System.out.println( "- HTTP/2: " + ( http2 ? "enabled, " + http2Streams + " max concurrent streams" : "disabled" ) );
 		System.out.println( "- Debug: " + debug );
+		System.out.println( "- Executor: " + executorMode.toLowerCase() );
+		if ( maxConcurrency > 0 ) {
+			System.out.println( "- Max Concurrency: " + maxConcurrency + ( adaptive ? " (adaptive, target p99 " + targetLatency + "ms)" : "" ) );
+			System.out.println( "- Queue: " + queueSize + " requests, " + queueTimeout + "ms timeout" );
+		}
+		if ( !lanes.isEmpty() ) {
+			System.out.println( "- Lanes: " + lanes.stream().map( RequestLane::toString ).collect( Collectors.joining( ", " ) ) );
+		}
+		if ( requestTimeouts.isEnabled() ) {
+			System.out.println( "- Request Timeout: " + requestTimeouts );
+		}
+		System.out.println( "- Static Cache: " + ( staticCacheSize > 0 ? staticCacheSize + "MB, files up to " + staticMaxFile + "KB" : "disabled" ) );
+		System.out.println( "- Compressed Cache: " + ( compressedCache > 0 ? compressedCache + "MB" : "disabled" ) );
+		if ( responseCache ) {
+			System.out.println( "- Response Cache: " + responseSize + "MB, " + responseTTL + "s default TTL" );
+		}
+		if ( coalesce ) {
+			System.out.println( "- Request Coalescing: " + coalesceTimeout + "ms timeout" );
+		}
+		System.out.println( "- Uploads: " + ( uploadDir != null ? uploadDir : System.getProperty( "java.io.tmpdir" ) )
+		    + ( maxUploadFile > 0 ? ", " + maxUploadFile + "MB per file" : "" )
+		    + ( maxRequestSize > 0 ? ", " + maxRequestSize + "MB per request" : "" ) );
+		System.out.println( "- Response Buffer: " + ( responseBuffer > 0 ? responseBuffer + "KB" : "disabled" ) );
+		System.out.println( "- Response Writes: " + ( asyncWrites ? "async" : "blocking" )
+		    + ( writeTimeout > 0 ? ", " + writeTimeout + "ms write timeout" : "" ) );
+		if ( etags ) {
+			System.out.println( "- ETags: enabled for responses up to " + responseBuffer + "KB" );
+		}
+		if ( precompile || warmupFile != null ) {
+			System.out.println( "- Warmup: " + ( precompile ? "precompile" : "" ) + ( precompile && warmupFile != null ? ", " : "" )
+			    + ( warmupFile != null ? warmupFile + " x" + warmupRequests : "" ) );
+		}
+		if ( metrics ) {
+			System.out.println( "- Metrics: " + metricsPath );
+		}
+		if ( accessLog != null ) {
+			System.out.println( "- Access Log: " + accessLogPath + " (" + accessLogFormat.toLowerCase() + ", " + accessLogRotate.toLowerCase()
+			    + ( accessLogSize > 0 ? ", " + accessLogSize + "MB max" : "" ) + ( accessLogBlock ? ", blocking" : "" ) + ")" );
+		}
 		System.out.println( "- Config Path: " + configPath );
 		System.out.println( "- Server Home: " + serverHome );
 		System.out.println( "+ Starting BoxLang Runtime..." );
 
 		// Startup the runtime
 		BoxRuntime			runtime			= BoxRuntime.getInstance( debug, configPath, serverHome );
+		startup.phase( "runtime" );
 		Undertow.Builder	builder			= Undertow.builder();
 		ResourceManager		resourceManager	= new PathResourceManager( absWebRoot );
 
+		// Cache static files off heap. Entries are dropped when the web root watcher reports a change, and the last modified
+		// date is checked again every 5 seconds in case a change is missed
+		if ( staticCacheSize > 0 ) {
+			resourceManager = new CachingResourceManager(
+			    10000,
+			    staticMaxFile * 1024,
+			    new DirectBufferCache( 1024, 1024, staticCacheSize * 1024 * 1024, BufferAllocator.DIRECT_BYTE_BUFFER_ALLOCATOR, 5000 ),
+			    resourceManager,
+			    5000
+			);
+		}
+
+		// Compress the static files up front so they never have to be compressed while serving a request
+		if ( precompress ) {
+			long pTime = System.currentTimeMillis();
+			try {
+				int count = Precompressor.precompress( absWebRoot );
+				System.out.println( "+ Precompressed " + count + " static files in " + ( System.currentTimeMillis() - pTime ) + "ms" );
+			} catch ( IOException e ) {
+				System.out.println( "Could not precompress the web root: " + e.getMessage() );
+			}
+		}
+
+		// Serve precompressed or cached compressed variants of static files instead of gzipping them on every request
+		CompressedResourceSupplier compressedResources = new CompressedResourceSupplier(
+		    resourceManager,
+		    compressedCache * 1024L * 1024L,
+		    staticMaxFile * 1024
+		);
+		registerMBean( compressedResources, "CompressedResourceCache" );
+
+		// Request metrics, recorded by the handlers and read when the metrics page is scraped
+		ServerMetrics serverMetrics = metrics ? new ServerMetrics() : null;
+
+		startup.phase( "resources" );
 		System.out.println( "+ Runtime Started in " + ( System.currentTimeMillis() - sTime ) + "ms" );
 
+		// Compile the whole web root up front so the first request to each template doesn't pay for it
+		if ( precompile ) {
+			long cTime = System.currentTimeMillis();
+			try {
+				int count = TemplatePrecompiler.precompile( runtime, absWebRoot );
+				System.out.println( "+ Precompiled " + count + " BoxLang files in " + ( System.currentTimeMillis() - cTime ) + "ms" );
+			} catch ( IOException e ) {
+				System.out.println( "Could not precompile the web root: " + e.getMessage() );
+			}
+			startup.phase( "precompile" );
+		}
+
+		// The BoxLang handler, with admission control in front of it if enabled
+		HttpHandler boxLangHandler = new BLHandler( absWebRoot.toString(), requestExecutor )
+		    .setFormParserFactory( BoxHTTPUndertowExchange.createFormParserFactory(
+		        uploadDir != null ? Paths.get( uploadDir ).toAbsolutePath() : null,
+		        maxUploadFile * 1024 * 1024
+		    ) )
+		    .setResponseBufferSize( responseBuffer * 1024 )
+		    .setResponseWrites( asyncWrites, writeTimeout )
+		    .setETags( etags )
+		    .setServerTiming( debug )
+		    .setRequestTimeouts( requestTimeouts )
+		    .setMetrics( serverMetrics );
+		if ( maxConcurrency > 0 ) {
+			AdmissionControlHandler admissionControl = new AdmissionControlHandler( boxLangHandler, maxConcurrency, queueSize, queueTimeout );
+			if ( adaptive ) {
+				admissionControl.setAdaptive( targetLatency );
+			}
+			registerMBean( admissionControl, "AdmissionControl" );
+			if ( serverMetrics != null ) {
+				admissionControl.setMetrics( serverMetrics );
+				serverMetrics.setAdmissionControl( admissionControl );
+			}
+			boxLangHandler = admissionControl;
+		}
+
+		// Identical concurrent requests wait for a single execution instead of all running the template
+		if ( coalesce ) {
+			RequestCoalescingHandler coalescingHandler = new RequestCoalescingHandler(
+			    boxLangHandler,
+			    coalesceTimeout,
+			    parseList( responseVary ),
+			    parseList( responseCookies )
+			);
+			registerMBean( coalescingHandler, "RequestCoalescing" );
+			boxLangHandler = coalescingHandler;
+		}
+
+		// The output cache goes in front of admission control, so replaying a cached page never waits for a permit
+		if ( responseCache ) {
+			ResponseCacheHandler responseCacheHandler = new ResponseCacheHandler(
+			    boxLangHandler,
+			    responseTTL * 1000,
+			    responseSize * 1024L * 1024L,
+			    parseList( responseVary ),
+			    parseList( responseCookies )
+			).invalidateOnChange( resourceManager );
+			registerMBean( responseCacheHandler, "ResponseCache" );
+			boxLangHandler = responseCacheHandler;
+		}
+
+		// Oversized bodies are rejected before anything else looks at the request
+		if ( maxRequestSize > 0 ) {
+			boxLangHandler = new RequestSizeLimitHandler( boxLangHandler, maxRequestSize * 1024 * 1024 );
+		}
+
+		// Static files are handed off to the worker by the ResourceHandler, the lane handler points it at the static lane
+		HttpHandler staticHandler = new ResourceHandler( compressedResources )
+		    .setDirectoryListingEnabled( true );
+		if ( staticLane != null || !prefixLanes.isEmpty() ) {
+			staticHandler = new LaneHandler( prefixLanes, staticLane, staticHandler );
+		}
+		// The lane is picked before any BoxLang handler queues the request, and used once it is dispatched
+		if ( dynamicLane != null || !prefixLanes.isEmpty() ) {
+			boxLangHandler = new LaneHandler( prefixLanes, dynamicLane, boxLangHandler );
+		}
+		for ( RequestLane lane : lanes ) {
+			registerMBean( lane, "RequestLane,name=" + lane.getName() );
+		}
+		if ( serverMetrics != null ) {
+			serverMetrics.setLanes( lanes );
+		}
+
 		// Build out the server
-		Undertow BLServer = builder
-		    .addHttpListener( port, host )
-		    .setHandler( new EncodingHandler( new ContentEncodingRepository().addEncodingHandler(
-		        "gzip", new GzipEncodingProvider(), 50, Predicates.parse( "request-larger-than(1500)" ) ) )
-		        .setNext( new WelcomeFileHandler(
-		            Handlers.predicate(
-		                // If this predicate evaluates to true, we process via BoxLang, otherwise, we serve a static file
-		                Predicates.parse( "regex( '^(/.+?\\.cfml|/.+?\\.cf[cms]|.+?\\.bx[ms]{0,1})(/.*)?$' )" ),
-		                new BLHandler( absWebRoot.toString() ),
-		                new ResourceHandler( resourceManager )
-		                    .setDirectoryListingEnabled( true ) ),
-		            resourceManager,
-		            List.of( "index.bxm", "index.bxs", "index.cfm", "index.cfs", "index.htm", "index.html" )
-		        ) ) )
+		WelcomeFileHandler welcomeFileHandler = new WelcomeFileHandler(
+		    new RoutingHandler(
+		        // BoxLang extensions are processed via BoxLang, otherwise, we serve a static file
+		        new RouteResolver(),
+		        boxLangHandler,
+		        staticHandler ),
+		    resourceManager,
+		    List.of( "index.bxm", "index.bxs", "index.cfm", "index.cfs", "index.htm", "index.html" ),
+		    welcomeFileTTL
+		);
+		registerMBean( welcomeFileHandler, "WelcomeFileCache" );
+
+		// HTTP/2 is negotiated through ALPN on the HTTPS listener and through an h2c upgrade on the HTTP listener
+		builder.addHttpListener( port, host );
+		if ( sslContext != null ) {
+			builder.addHttpsListener( sslPort, host, sslContext );
+		}
+		builder.setServerOption( UndertowOptions.ENABLE_HTTP2, http2 );
+		builder.setServerOption( UndertowOptions.MAX_PARAMETERS, maxFormFields );
+		// Connections whose client stops reading are closed, so slow readers can't tie up threads or buffers
+		if ( writeTimeout > 0 ) {
+			builder.setSocketOption( Options.WRITE_TIMEOUT, writeTimeout );
+		}
+		if ( http2 ) {
+			builder
+			    .setServerOption( UndertowOptions.HTTP2_SETTINGS_MAX_CONCURRENT_STREAMS, http2Streams )
+			    .setServerOption( UndertowOptions.HTTP2_SETTINGS_HEADER_TABLE_SIZE, http2TableSize );
+		}
+
+		// Files sent with ranges or validators must go out as they are, see FileSender
+		Predicate	gzipPredicate	= Predicates.and(
+		    Predicates.parse( "request-larger-than(1500)" ),
+		    exchange -> exchange.getAttachment( FileSender.NEGOTIATED ) == null
+		);
+		HttpHandler	rootHandler		= new EncodingHandler( new ContentEncodingRepository().addEncodingHandler(
+		    "gzip", serverMetrics != null ? new MeteredGzipEncodingProvider( serverMetrics ) : new GzipEncodingProvider(), 50,
+		    gzipPredicate ) )
+		    .setNext( welcomeFileHandler );
+
+		// Replay the warmup paths before the listener opens, without counting them in the metrics or the access log
+		if ( warmupFile != null && !warmupFile.isBlank() ) {
+			startup.phase( "handlers" );
+			long wTime = System.currentTimeMillis();
+			try {
+				List<String>	warmupPaths		= Warmup.readPaths( Paths.get( warmupFile ) );
+				int				warmupErrors	= Warmup.run( rootHandler, warmupPaths, warmupRequests );
+				System.out.println( "+ Warmed up " + warmupPaths.size() + " paths with " + warmupPaths.size() * warmupRequests + " requests in "
+				    + ( System.currentTimeMillis() - wTime ) + "ms" + ( warmupErrors > 0 ? ", " + warmupErrors + " failed" : "" ) );
+			} catch ( IOException e ) {
+				System.out.println( "Could not read the warmup file: " + e.getMessage() );
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+			startup.phase( "warmup" );
+		}
+
+		// The metrics handler goes first so it sees every request, and needs the connection statistics and start times
+		if ( serverMetrics != null ) {
+			rootHandler = new MetricsHandler( serverMetrics, metricsPath, rootHandler );
+			builder
+			    .setServerOption( UndertowOptions.ENABLE_STATISTICS, true )
+			    .setServerOption( UndertowOptions.RECORD_REQUEST_START_TIME, true );
+		}
+		// The access log goes around everything, so it also sees the metrics scrapes
+		if ( accessLog != null ) {
+			registerMBean( accessLog, "AccessLog" );
+			rootHandler = new AccessLogHandler( accessLog, rootHandler );
+			builder.setServerOption( UndertowOptions.RECORD_REQUEST_START_TIME, true );
+		}
+		// Cluster workers answer the health checks of the front process, and see the client address it forwards
+		if ( clusterWorker ) {
+			rootHandler = new HealthCheckHandler( Cluster.HEALTH_PATH, new ProxyPeerAddressHandler( rootHandler ) );
+		}
+
+		Undertow				BLServer				= builder
+		    .setHandler( rootHandler )
 		    .build();
+		startup.phase( "handlers" );
 
 		// Add a shutdown hook to stop the server
 		// Add shutdown hook to gracefully stop the server
+		final ExecutorService	finalRequestExecutor	= requestExecutor;
+		final AccessLog			finalAccessLog			= accessLog;
 		Runtime.getRuntime().addShutdownHook( new Thread( () -> {
 			System.out.println( "Shutting down BoxLang Server..." );
 			BLServer.stop();
+			if ( finalAccessLog != null ) {
+				finalAccessLog.close();
+			}
+			if ( finalRequestExecutor != null ) {
+				finalRequestExecutor.shutdown();
+			}
+			lanes.forEach( RequestLane::shutdown );
 			runtime.shutdown();
 			System.out.println( "BoxLang Server stopped." );
 		} ) );
 
-		// Startup the server
+		// Startup the server, it only reports ready once the listeners are open
+		BLServer.start();
+		startup.phase( "listener" );
 		System.out.println( "+ BoxLang MiniServer started in " + ( System.currentTimeMillis() - sTime ) + "ms" );
+		System.out.println( "+ Startup phases: " + startup );
 		System.out.println( "+ BoxLang MiniServer started at: http://" + host + ":" + port );
+		if ( sslContext != null ) {
+			System.out.println( "+ BoxLang MiniServer started at: https://" + host + ":" + sslPort );
+		}
 		System.out.println( "Press Ctrl+C to stop the server." );
-		BLServer.start();
+
+		// The worker and the listeners only exist once the server is started
+		if ( serverMetrics != null ) {
+			serverMetrics
+			    .setWorker( BLServer.getWorker().getMXBean() )
+			    .setListeners( BLServer.getListenerInfo() );
+		}
+	}
+
+	/**
+	 * Split a comma separated option value
+	 *
+	 * @param value The option value
+	 *
+	 * @return The trimmed, non empty items
+	 */
+	private static List<String> parseList( String value ) {
+		return Arrays.stream( value.split( "," ) ).map( String::trim ).filter( item -> !item.isEmpty() ).toList();
+	}
+
+	/**
+	 * Register a MiniServer component with the platform MBean server so it can be observed via JMX
+	 *
+	 * @param mbean The component to register
+	 * @param type  The type name to register it under
+	 */
+	private static void registerMBean( Object mbean, String type ) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean( mbean, new ObjectName( "ortus.boxlang.web:type=" + type ) );
+		} catch ( Exception e ) {
+			System.out.println( "Could not register the " + type + " MBean: " + e.getMessage() );
+		}
 	}
-}
+}
\ No newline at end of file
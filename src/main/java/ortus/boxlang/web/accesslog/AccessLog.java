@@ -0,0 +1,307 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.accesslog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.xnio.XnioIoThread;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+
+/**
+ * An access log that keeps disk IO off the request path.
+ *
+ * Completed requests are copied into the preallocated records of a bounded ring buffer and a single background thread
+ * formats them and writes them through a large buffer, flushing whenever it catches up. The buffer is the multi
+ * producer queue described by Dmitry Vyukov: a request thread claims a sequence with a CAS, fills the record and
+ * publishes it by advancing the record's own sequence, so producers never lock and never wait for each other.
+ *
+ * When the buffer is full the record is dropped, or with the blocking policy the thread completing the request waits
+ * for the writer to make room. An IO thread can't wait without stalling every connection it serves, so with the
+ * blocking policy its records go to an unbounded overflow queue instead, which the writer drains after the buffer.
+ * Nothing is dropped then, but lines written from the overflow can be slightly out of order.
+ */
+public class AccessLog implements AccessLogMXBean, Closeable {
+
+	/**
+	 * How long the writer sleeps when there is nothing to write
+	 */
+	private static final long								IDLE_PARK		= TimeUnit.MILLISECONDS.toNanos( 100 );
+
+	/**
+	 * How long a blocked request thread waits before it checks for room again
+	 */
+	private static final long								BLOCKED_PARK	= TimeUnit.MICROSECONDS.toNanos( 50 );
+
+	private final AccessLogRecord[]							records;
+	private final int										mask;
+	private final boolean									block;
+	private final AccessLogFormatter						formatter;
+	private final AccessLogFile								file;
+	private Thread											writer;
+
+	/**
+	 * The next sequence a request thread claims
+	 */
+	private final AtomicLong								tail			= new AtomicLong();
+
+	/**
+	 * The next sequence the writer reads, only written by the writer
+	 */
+	private volatile long									head;
+
+	/**
+	 * Records of IO threads that found the buffer full with the blocking policy, allocated for each request
+	 */
+	private final ConcurrentLinkedQueue<AccessLogRecord>	overflow		= new ConcurrentLinkedQueue<>();
+	private final AtomicLong								overflowCount	= new AtomicLong();
+
+	private volatile boolean								writerParked	= false;
+	private volatile boolean								closed			= false;
+
+	private final LongAdder									droppedCount	= new LongAdder();
+	private volatile long									writtenCount;
+	private volatile long									failedCount;
+
+	private AccessLog( Path path, AccessLogFormat format, int bufferSize, boolean block, long maxSize, AccessLogRotation rotation )
+	    throws IOException {
+		int capacity = Integer.highestOneBit( Math.max( bufferSize, 2 ) - 1 ) << 1;
+		this.records	= new AccessLogRecord[ capacity ];
+		this.mask		= capacity - 1;
+		for ( int i = 0; i < capacity; i++ ) {
+			records[ i ] = new AccessLogRecord( i );
+		}
+		ZoneId zone = ZoneId.systemDefault();
+		this.block		= block;
+		this.formatter	= new AccessLogFormatter( format, zone );
+		this.file		= new AccessLogFile( path, maxSize, rotation, zone );
+	}
+
+	/**
+	 * Open the access log and start its writer thread
+	 *
+	 * @param path       The access log file
+	 * @param format     The line format
+	 * @param bufferSize The number of records the ring buffer holds, rounded up to a power of two
+	 * @param block      True to make request threads wait when the buffer is full, false to drop the record
+	 * @param maxSize    The size in bytes the file is rotated at, 0 for no limit
+	 * @param rotation   The time based rotation
+	 *
+	 * @return The access log
+	 *
+	 * @throws IOException If the file cannot be opened
+	 */
+	public static AccessLog open( Path path, AccessLogFormat format, int bufferSize, boolean block, long maxSize, AccessLogRotation rotation )
+	    throws IOException {
+		AccessLog accessLog = new AccessLog( path, format, bufferSize, block, maxSize, rotation );
+		accessLog.writer = Thread.ofPlatform().name( "bx-access-log" ).daemon().start( accessLog::writeLoop );
+		return accessLog;
+	}
+
+	/**
+	 * Log a completed exchange
+	 *
+	 * @param exchange The exchange
+	 */
+	public void log( HttpServerExchange exchange ) {
+		long sequence;
+		while ( ( sequence = claim() ) < 0 ) {
+			if ( !block || closed ) {
+				droppedCount.increment();
+				return;
+			}
+			if ( Thread.currentThread() instanceof XnioIoThread ) {
+				AccessLogRecord record = new AccessLogRecord( 0 );
+				fill( record, exchange );
+				overflowCount.incrementAndGet();
+				overflow.add( record );
+				LockSupport.unpark( writer );
+				return;
+			}
+			LockSupport.parkNanos( this, BLOCKED_PARK );
+		}
+
+		AccessLogRecord record = records[ ( int ) sequence & mask ];
+		fill( record, exchange );
+		// Publish the record to the writer
+		record.sequence = sequence + 1;
+
+		if ( writerParked ) {
+			LockSupport.unpark( writer );
+		}
+	}
+
+	/**
+	 * Copy what the log line needs from the exchange into a record
+	 */
+	private static void fill( AccessLogRecord record, HttpServerExchange exchange ) {
+		InetSocketAddress	source	= exchange.getSourceAddress();
+		long				start	= exchange.getRequestStartTime();
+		record.timestamp		= System.currentTimeMillis();
+		record.remoteAddress	= source != null ? source.getAddress() : null;
+		record.method			= exchange.getRequestMethod();
+		record.uri				= exchange.getRequestURI();
+		record.query			= exchange.getQueryString();
+		record.protocol			= exchange.getProtocol();
+		record.status			= exchange.getStatusCode();
+		record.bytesSent		= exchange.getResponseBytesSent();
+		record.duration			= start > 0 ? System.nanoTime() - start : -1;
+		record.referer			= exchange.getRequestHeaders().getFirst( Headers.REFERER );
+		record.userAgent		= exchange.getRequestHeaders().getFirst( Headers.USER_AGENT );
+	}
+
+	/**
+	 * Claim the next free record
+	 *
+	 * @return Its sequence, or -1 if the buffer is full
+	 */
+	private long claim() {
+		while ( true ) {
+			long			sequence	= tail.get();
+			AccessLogRecord	record		= records[ ( int ) sequence & mask ];
+			long			available	= record.sequence - sequence;
+			if ( available == 0 ) {
+				if ( tail.compareAndSet( sequence, sequence + 1 ) ) {
+					return sequence;
+				}
+			} else if ( available < 0 ) {
+				// The writer has not freed this record from the previous lap yet
+				return -1;
+			}
+			// Another thread claimed it first
+		}
+	}
+
+	/**
+	 * The writer thread: drain the buffer, write the lines and flush whenever it runs dry
+	 */
+	private void writeLoop() {
+		StringBuilder line = new StringBuilder( 512 );
+		while ( true ) {
+			long			sequence	= head;
+			AccessLogRecord	record		= records[ ( int ) sequence & mask ];
+			boolean			written		= false;
+			while ( record.sequence == sequence + 1 ) {
+				line.setLength( 0 );
+				formatter.format( record, line );
+				long timestamp = record.timestamp;
+				record.clear();
+				// Hand the record back to the request threads for the next lap
+				record.sequence = sequence + records.length;
+				head = ++sequence;
+				write( line, timestamp );
+				written	= true;
+				record	= records[ ( int ) sequence & mask ];
+			}
+			AccessLogRecord overflowed;
+			while ( ( overflowed = overflow.poll() ) != null ) {
+				overflowCount.decrementAndGet();
+				line.setLength( 0 );
+				formatter.format( overflowed, line );
+				write( line, overflowed.timestamp );
+				written = true;
+			}
+			if ( written ) {
+				continue;
+			}
+
+			flush();
+			if ( closed && tail.get() == head && overflow.isEmpty() ) {
+				break;
+			}
+			writerParked = true;
+			if ( record.sequence != sequence + 1 && overflow.isEmpty() && !closed ) {
+				LockSupport.parkNanos( this, IDLE_PARK );
+			}
+			writerParked = false;
+		}
+		try {
+			file.close();
+		} catch ( IOException e ) {
+			System.out.println( "Could not close the access log: " + e.getMessage() );
+		}
+	}
+
+	private void write( StringBuilder line, long timestamp ) {
+		try {
+			file.write( line.toString().getBytes( StandardCharsets.UTF_8 ), timestamp );
+			writtenCount++;
+		} catch ( IOException e ) {
+			failedCount++;
+		}
+	}
+
+	private void flush() {
+		try {
+			file.flush();
+		} catch ( IOException e ) {
+			System.out.println( "Could not write the access log: " + e.getMessage() );
+		}
+	}
+
+	/**
+	 * Write what is left in the buffer and close the file
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark( writer );
+		try {
+			writer.join( TimeUnit.SECONDS.toMillis( 5 ) );
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public int getBufferSize() {
+		return records.length;
+	}
+
+	@Override
+	public long getPending() {
+		return Math.max( 0, tail.get() - head ) + overflowCount.get();
+	}
+
+	@Override
+	public long getWrittenCount() {
+		return writtenCount;
+	}
+
+	@Override
+	public long getDroppedCount() {
+		return droppedCount.sum();
+	}
+
+	@Override
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+}
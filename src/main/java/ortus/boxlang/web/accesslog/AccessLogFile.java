@@ -0,0 +1,126 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.accesslog;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * The file the access log writes to. It is rotated when the next line would go over the size limit or when a line
+ * belongs to the next hour or day. The current file keeps its name, rotated files get the period or time they were
+ * started as a suffix, like {@code access.log.2024-06-01}. Only used by the writer thread.
+ */
+final class AccessLogFile implements Closeable {
+
+	private static final int		BUFFER_SIZE	= 64 * 1024;
+
+	private final Path				path;
+	private final long				maxSize;
+	private final AccessLogRotation	rotation;
+	private final ZoneId			zone;
+
+	private OutputStream			out;
+	private long					size;
+	private ZonedDateTime			started;
+	private long					nextRotation;
+
+	/**
+	 * Open the access log, appending to the current file unless it belongs to an earlier period
+	 *
+	 * @param path     The access log file
+	 * @param maxSize  The size in bytes a file is rotated at, 0 for no limit
+	 * @param rotation The time based rotation
+	 * @param zone     The time zone periods are computed in
+	 */
+	AccessLogFile( Path path, long maxSize, AccessLogRotation rotation, ZoneId zone ) throws IOException {
+		this.path		= path.toAbsolutePath();
+		this.maxSize	= maxSize;
+		this.rotation	= rotation;
+		this.zone		= zone;
+		Files.createDirectories( this.path.getParent() );
+		long now = System.currentTimeMillis();
+		if ( Files.exists( this.path ) ) {
+			ZonedDateTime modified = Files.getLastModifiedTime( this.path ).toInstant().atZone( zone );
+			if ( rotation.nextPeriod( modified ) <= now ) {
+				open( modified );
+				rotate( now );
+				return;
+			}
+		}
+		open( Instant.ofEpochMilli( now ).atZone( zone ) );
+	}
+
+	/**
+	 * Write a line, rotating first if needed
+	 *
+	 * @param line      The encoded line
+	 * @param timestamp The time of the record
+	 */
+	void write( byte[] line, long timestamp ) throws IOException {
+		if ( timestamp >= nextRotation || ( maxSize > 0 && size > 0 && size + line.length > maxSize ) ) {
+			rotate( timestamp );
+		}
+		out.write( line );
+		size += line.length;
+	}
+
+	/**
+	 * Write out the buffered lines
+	 */
+	void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void open( ZonedDateTime time ) throws IOException {
+		out				= new BufferedOutputStream(
+		    Files.newOutputStream( path, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE ),
+		    BUFFER_SIZE
+		);
+		size			= Files.size( path );
+		started			= time;
+		nextRotation	= rotation.nextPeriod( time );
+	}
+
+	/**
+	 * Move the current file aside and start a new one
+	 */
+	private void rotate( long timestamp ) throws IOException {
+		out.close();
+		String	base	= path.getFileName() + "." + rotation.suffix( started );
+		Path	target	= path.resolveSibling( base );
+		for ( int i = 1; Files.exists( target ); i++ ) {
+			target = path.resolveSibling( base + "." + i );
+		}
+		Files.move( path, target );
+		open( Instant.ofEpochMilli( timestamp ).atZone( zone ) );
+	}
+
+}
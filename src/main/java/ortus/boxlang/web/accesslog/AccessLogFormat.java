@@ -0,0 +1,55 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.accesslog;
+
+import java.util.Locale;
+
+/**
+ * The line formats the access log can write
+ */
+public enum AccessLogFormat {
+
+	/**
+	 * The NCSA common log format: {@code host - - [time] "request" status bytes}
+	 */
+	COMMON,
+
+	/**
+	 * The common log format followed by the quoted {@code Referer} and {@code User-Agent} headers
+	 */
+	COMBINED,
+
+	/**
+	 * One JSON object per line, including the request duration
+	 */
+	JSON;
+
+	/**
+	 * Find a format by name, ignoring case
+	 *
+	 * @param name The format name
+	 *
+	 * @return The format
+	 *
+	 * @throws IllegalArgumentException If there is no format with that name
+	 */
+	public static AccessLogFormat parse( String name ) {
+		return valueOf( name.trim().toUpperCase( Locale.ROOT ) );
+	}
+
+}
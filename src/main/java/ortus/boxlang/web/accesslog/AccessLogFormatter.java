@@ -0,0 +1,161 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.accesslog;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Formats access log records into lines. Only used by the writer thread, so the formatted timestamp of the current
+ * second is simply cached in a field.
+ */
+final class AccessLogFormatter {
+
+	private static final DateTimeFormatter	COMMON_TIME	= DateTimeFormatter.ofPattern( "dd/MMM/yyyy:HH:mm:ss Z", Locale.US );
+	private static final DateTimeFormatter	JSON_TIME	= DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+	private static final char[]				HEX			= "0123456789abcdef".toCharArray();
+
+	private final AccessLogFormat			format;
+	private final ZoneId					zone;
+
+	private long							cachedSecond	= Long.MIN_VALUE;
+	private String							cachedTime;
+
+	AccessLogFormatter( AccessLogFormat format, ZoneId zone ) {
+		this.format	= format;
+		this.zone	= zone;
+	}
+
+	/**
+	 * Append a record as a line, including the line break
+	 *
+	 * @param record The record
+	 * @param out    The line
+	 */
+	void format( AccessLogRecord record, StringBuilder out ) {
+		if ( format == AccessLogFormat.JSON ) {
+			formatJson( record, out );
+		} else {
+			formatCommon( record, out );
+		}
+		out.append( '\n' );
+	}
+
+	private void formatCommon( AccessLogRecord record, StringBuilder out ) {
+		out.append( record.remoteAddress != null ? record.remoteAddress.getHostAddress() : "-" );
+		out.append( " - - [" ).append( commonTime( record.timestamp ) ).append( "] \"" );
+		escapeQuoted( record.method.toString(), out );
+		out.append( ' ' );
+		escapeQuoted( record.uri, out );
+		if ( record.query != null && !record.query.isEmpty() ) {
+			out.append( '?' );
+			escapeQuoted( record.query, out );
+		}
+		out.append( ' ' );
+		escapeQuoted( record.protocol.toString(), out );
+		out.append( "\" " ).append( record.status ).append( ' ' );
+		if ( record.bytesSent > 0 ) {
+			out.append( record.bytesSent );
+		} else {
+			out.append( '-' );
+		}
+		if ( format == AccessLogFormat.COMBINED ) {
+			out.append( " \"" );
+			escapeQuoted( record.referer != null ? record.referer : "-", out );
+			out.append( "\" \"" );
+			escapeQuoted( record.userAgent != null ? record.userAgent : "-", out );
+			out.append( '"' );
+		}
+	}
+
+	private void formatJson( AccessLogRecord record, StringBuilder out ) {
+		out.append( "{\"time\":\"" ).append( JSON_TIME.format( Instant.ofEpochMilli( record.timestamp ).atZone( zone ) ) ).append( '"' );
+		jsonField( "remote", record.remoteAddress != null ? record.remoteAddress.getHostAddress() : null, out );
+		jsonField( "method", record.method.toString(), out );
+		jsonField( "uri", record.uri, out );
+		jsonField( "query", record.query != null && !record.query.isEmpty() ? record.query : null, out );
+		jsonField( "protocol", record.protocol.toString(), out );
+		out.append( ",\"status\":" ).append( record.status );
+		out.append( ",\"bytes\":" ).append( Math.max( record.bytesSent, 0 ) );
+		if ( record.duration >= 0 ) {
+			out.append( ",\"duration_ms\":" ).append( record.duration / 1000 / 1000.0 );
+		}
+		jsonField( "referer", record.referer, out );
+		jsonField( "user_agent", record.userAgent, out );
+		out.append( '}' );
+	}
+
+	/**
+	 * The common log format time of a timestamp, formatted once per second
+	 */
+	private String commonTime( long timestamp ) {
+		long second = Math.floorDiv( timestamp, 1000 );
+		if ( second != cachedSecond ) {
+			cachedSecond	= second;
+			cachedTime		= COMMON_TIME.format( Instant.ofEpochSecond( second ).atZone( zone ) );
+		}
+		return cachedTime;
+	}
+
+	/**
+	 * Append a value inside a quoted field, escaping quotes, backslashes and control characters like Apache does
+	 */
+	private static void escapeQuoted( String value, StringBuilder out ) {
+		for ( int i = 0; i < value.length(); i++ ) {
+			char c = value.charAt( i );
+			if ( c == '"' || c == '\\' ) {
+				out.append( '\\' ).append( c );
+			} else if ( c < 0x20 || c == 0x7f ) {
+				out.append( "\\x" ).append( HEX[ c >> 4 ] ).append( HEX[ c & 0xf ] );
+			} else {
+				out.append( c );
+			}
+		}
+	}
+
+	/**
+	 * Append a JSON string field, skipped if the value is null
+	 */
+	private static void jsonField( String name, String value, StringBuilder out ) {
+		if ( value == null ) {
+			return;
+		}
+		out.append( ",\"" ).append( name ).append( "\":\"" );
+		for ( int i = 0; i < value.length(); i++ ) {
+			char c = value.charAt( i );
+			switch ( c ) {
+				case '"' -> out.append( "\\\"" );
+				case '\\' -> out.append( "\\\\" );
+				case '\n' -> out.append( "\\n" );
+				case '\r' -> out.append( "\\r" );
+				case '\t' -> out.append( "\\t" );
+				default -> {
+					if ( c < 0x20 ) {
+						out.append( "\\u00" ).append( HEX[ c >> 4 ] ).append( HEX[ c & 0xf ] );
+					} else {
+						out.append( c );
+					}
+				}
+			}
+		}
+		out.append( '"' );
+	}
+
+}
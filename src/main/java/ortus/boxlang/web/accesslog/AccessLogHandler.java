@@ -0,0 +1,59 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.accesslog;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Logs every request to an {@link AccessLog} once it completes. The handler is its own completion listener, so
+ * nothing is allocated per request and the formatting and disk IO happen on the access log's writer thread.
+ */
+public class AccessLogHandler implements HttpHandler, ExchangeCompletionListener {
+
+	private final AccessLog		accessLog;
+	private final HttpHandler	next;
+
+	/**
+	 * Create a new access log handler
+	 *
+	 * @param accessLog The access log to write to
+	 * @param next      The rest of the handler chain
+	 */
+	public AccessLogHandler( AccessLog accessLog, HttpHandler next ) {
+		this.accessLog	= accessLog;
+		this.next		= next;
+	}
+
+	@Override
+	public void handleRequest( HttpServerExchange exchange ) throws Exception {
+		exchange.addExchangeCompleteListener( this );
+		next.handleRequest( exchange );
+	}
+
+	@Override
+	public void exchangeEvent( HttpServerExchange exchange, NextListener nextListener ) {
+		try {
+			accessLog.log( exchange );
+		} finally {
+			nextListener.proceed();
+		}
+	}
+
+}
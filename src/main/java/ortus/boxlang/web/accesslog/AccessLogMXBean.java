@@ -0,0 +1,50 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.accesslog;
+
+/**
+ * JMX view of the {@link AccessLog} state
+ */
+public interface AccessLogMXBean {
+
+	/**
+	 * @return The number of records the ring buffer holds
+	 */
+	int getBufferSize();
+
+	/**
+	 * @return The number of records waiting for the writer
+	 */
+	long getPending();
+
+	/**
+	 * @return The number of records written to the log
+	 */
+	long getWrittenCount();
+
+	/**
+	 * @return The number of records dropped because the buffer was full
+	 */
+	long getDroppedCount();
+
+	/**
+	 * @return The number of records lost because the file could not be written
+	 */
+	long getFailedCount();
+
+}
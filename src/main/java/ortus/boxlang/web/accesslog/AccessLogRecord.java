@@ -0,0 +1,64 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.accesslog;
+
+import java.net.InetAddress;
+
+import io.undertow.util.HttpString;
+
+/**
+ * A slot of the access log ring buffer. Slots are allocated once, request threads fill them with references to what
+ * the exchange already holds and the writer formats them, so logging a request allocates nothing.
+ */
+final class AccessLogRecord {
+
+	/**
+	 * The ring buffer sequence this slot is ready for, see {@link AccessLog}
+	 */
+	volatile long	sequence;
+
+	long			timestamp;
+	InetAddress		remoteAddress;
+	HttpString		method;
+	String			uri;
+	String			query;
+	HttpString		protocol;
+	int				status;
+	long			bytesSent;
+	long			duration;
+	String			referer;
+	String			userAgent;
+
+	AccessLogRecord( long sequence ) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Drop the references so a quiet log doesn't keep request strings alive
+	 */
+	void clear() {
+		remoteAddress	= null;
+		method			= null;
+		uri				= null;
+		query			= null;
+		protocol		= null;
+		referer			= null;
+		userAgent		= null;
+	}
+
+}
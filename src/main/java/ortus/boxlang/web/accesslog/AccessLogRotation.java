@@ -0,0 +1,108 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.accesslog;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+/**
+ * How often the access log starts a new file, on top of the size limit
+ */
+public enum AccessLogRotation {
+
+	/**
+	 * Only rotate when the size limit is reached
+	 */
+	NONE( DateTimeFormatter.ofPattern( "yyyy-MM-dd-HHmmss" ) ),
+
+	/**
+	 * Start a new file every hour
+	 */
+	HOURLY( DateTimeFormatter.ofPattern( "yyyy-MM-dd-HH" ) ),
+
+	/**
+	 * Start a new file every day at midnight
+	 */
+	DAILY( DateTimeFormatter.ofPattern( "yyyy-MM-dd" ) );
+
+	/**
+	 * The suffix of rotated files
+	 */
+	private final DateTimeFormatter suffix;
+
+	AccessLogRotation( DateTimeFormatter suffix ) {
+		this.suffix = suffix;
+	}
+
+	/**
+	 * Find a rotation by name, ignoring case
+	 *
+	 * @param name The rotation name
+	 *
+	 * @return The rotation
+	 *
+	 * @throws IllegalArgumentException If there is no rotation with that name
+	 */
+	public static AccessLogRotation parse( String name ) {
+		return valueOf( name.trim().toUpperCase( Locale.ROOT ) );
+	}
+
+	/**
+	 * The start of the period a time falls in
+	 *
+	 * @param time The time
+	 *
+	 * @return The start of its hour or day, or the time itself if there are no periods
+	 */
+	ZonedDateTime periodStart( ZonedDateTime time ) {
+		return switch ( this ) {
+			case NONE -> time;
+			case HOURLY -> time.truncatedTo( ChronoUnit.HOURS );
+			case DAILY -> time.truncatedTo( ChronoUnit.DAYS );
+		};
+	}
+
+	/**
+	 * The start of the next period
+	 *
+	 * @param time The time
+	 *
+	 * @return The start of the next hour or day, or the end of time if there are no periods
+	 */
+	long nextPeriod( ZonedDateTime time ) {
+		return switch ( this ) {
+			case NONE -> Long.MAX_VALUE;
+			case HOURLY -> periodStart( time ).plusHours( 1 ).toInstant().toEpochMilli();
+			case DAILY -> periodStart( time ).plusDays( 1 ).toInstant().toEpochMilli();
+		};
+	}
+
+	/**
+	 * The suffix for a file that was started at the given time
+	 *
+	 * @param time When the file was started
+	 *
+	 * @return The suffix, without the leading dot
+	 */
+	String suffix( ZonedDateTime time ) {
+		return suffix.format( periodStart( time ) );
+	}
+
+}
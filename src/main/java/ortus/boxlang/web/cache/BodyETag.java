@@ -0,0 +1,55 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.cache;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import io.undertow.util.ETag;
+
+/**
+ * Builds weak entity tags for dynamic response bodies, so a client polling a page that did not change gets a 304
+ * instead of the same body again.
+ *
+ * The tag is the body length and its CRC32C, a fast non-cryptographic checksum that the JVM computes with hardware
+ * instructions where available and reads straight from the direct pooled buffers.
+ */
+public class BodyETag {
+
+	private BodyETag() {
+	}
+
+	/**
+	 * Build the entity tag of a body
+	 *
+	 * @param body The body, in order. The buffers are not modified.
+	 *
+	 * @return The weak entity tag
+	 */
+	public static ETag of( List<ByteBuffer> body ) {
+		CRC32C	crc		= new CRC32C();
+		long	length	= 0;
+		for ( ByteBuffer buffer : body ) {
+			length += buffer.remaining();
+			crc.update( buffer.duplicate() );
+		}
+		return new ETag( true, Long.toHexString( length ) + "-" + Long.toHexString( crc.getValue() ) );
+	}
+
+}
@@ -0,0 +1,164 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.cache;
+
+import java.util.List;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.Cookie;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+import ortus.boxlang.web.exchange.BoxHTTPUndertowExchange;
+
+/**
+ * Decides which BoxLang requests and responses can be shared between clients.
+ *
+ * Only anonymous {@code GET} and {@code HEAD} requests are looked up, and only when every cookie they carry is one the
+ * cache keys on, so session and login cookies keep a request out of the cache. Only complete {@code 200} responses to
+ * {@code GET} requests that set no cookies and did not look up the session are stored. Templates control caching with the {@code Cache-Control} header they send: {@code no-store},
+ * {@code no-cache} and {@code private} opt out, {@code s-maxage} or {@code max-age} set the time to live. A response
+ * that varies on a request header the cache does not key on is not stored.
+ */
+public class CachePolicy {
+
+	private CachePolicy() {
+	}
+
+	/**
+	 * @param exchange The exchange
+	 *
+	 * @return True if the request may be answered from the cache
+	 */
+	public static boolean isCacheableRequest( HttpServerExchange exchange ) {
+		HttpString method = exchange.getRequestMethod();
+		return ( method.equals( Methods.GET ) || method.equals( Methods.HEAD ) )
+		    && !exchange.getRequestHeaders().contains( Headers.AUTHORIZATION );
+	}
+
+	/**
+	 * @param exchange    The exchange
+	 * @param varyCookies The request cookies the cache keys on
+	 *
+	 * @return True if every cookie of the request is part of the cache key, so its response doesn't depend on a cookie
+	 *         another client lacks
+	 */
+	public static boolean hasOnlyVaryCookies( HttpServerExchange exchange, List<String> varyCookies ) {
+		for ( Cookie cookie : exchange.requestCookies() ) {
+			if ( varyCookies.stream().noneMatch( cookie.getName()::equalsIgnoreCase ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param exchange The exchange
+	 *
+	 * @return True if the request changes state, so cached responses for its path should be dropped
+	 */
+	public static boolean isUnsafeRequest( HttpServerExchange exchange ) {
+		HttpString method = exchange.getRequestMethod();
+		return method.equals( Methods.POST ) || method.equals( Methods.PUT ) || method.equals( Methods.PATCH ) || method.equals( Methods.DELETE );
+	}
+
+	/**
+	 * Work out how long a completed response can be cached
+	 *
+	 * @param exchange    The completed exchange
+	 * @param defaultTTL  The time to live in milliseconds when the template does not set one
+	 * @param varyHeaders The request headers the cache keys on
+	 *
+	 * @return The time to live in milliseconds, 0 or less if the response must not be cached
+	 */
+	public static long getTTL( HttpServerExchange exchange, long defaultTTL, List<HttpString> varyHeaders ) {
+		if ( !exchange.getRequestMethod().equals( Methods.GET ) || exchange.getStatusCode() != StatusCodes.OK ) {
+			return 0;
+		}
+		HeaderMap headers = exchange.getResponseHeaders();
+		if ( headers.contains( Headers.SET_COOKIE ) || exchange.responseCookies().iterator().hasNext() ) {
+			return 0;
+		}
+		if ( exchange.getAttachment( BoxHTTPUndertowExchange.SESSION_READ ) != null ) {
+			return 0;
+		}
+		if ( !isVaryCovered( headers.get( Headers.VARY ), varyHeaders ) ) {
+			return 0;
+		}
+
+		long			maxAge			= -1;
+		long			sMaxAge			= -1;
+		HeaderValues	cacheControl	= headers.get( Headers.CACHE_CONTROL );
+		if ( cacheControl != null ) {
+			for ( String value : cacheControl ) {
+				for ( String directive : value.split( "," ) ) {
+					directive = directive.trim().toLowerCase();
+					if ( directive.equals( "no-store" ) || directive.equals( "no-cache" ) || directive.equals( "private" ) ) {
+						return 0;
+					}
+					if ( directive.startsWith( "s-maxage=" ) ) {
+						sMaxAge = parseSeconds( directive.substring( 9 ) );
+					} else if ( directive.startsWith( "max-age=" ) ) {
+						maxAge = parseSeconds( directive.substring( 8 ) );
+					}
+				}
+			}
+		}
+		if ( sMaxAge >= 0 ) {
+			return sMaxAge * 1000;
+		}
+		if ( maxAge >= 0 ) {
+			return maxAge * 1000;
+		}
+		return defaultTTL;
+	}
+
+	/**
+	 * Whether every header named in the response {@code Vary} header is part of the cache key. The encoding is negotiated
+	 * again for every replay, so {@code Accept-Encoding} is always covered.
+	 */
+	private static boolean isVaryCovered( HeaderValues vary, List<HttpString> varyHeaders ) {
+		if ( vary == null ) {
+			return true;
+		}
+		for ( String value : vary ) {
+			for ( String name : value.split( "," ) ) {
+				name = name.trim();
+				if ( name.isEmpty() || name.equalsIgnoreCase( Headers.ACCEPT_ENCODING_STRING ) ) {
+					continue;
+				}
+				if ( name.equals( "*" ) || !varyHeaders.contains( new HttpString( name ) ) ) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static long parseSeconds( String value ) {
+		try {
+			return Long.parseLong( value.trim() );
+		} catch ( NumberFormatException e ) {
+			return 0;
+		}
+	}
+
+}
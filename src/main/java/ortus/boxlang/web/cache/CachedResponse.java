@@ -0,0 +1,143 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.DateUtils;
+import io.undertow.util.ETag;
+import io.undertow.util.ETagUtils;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.StatusCodes;
+
+/**
+ * A captured response, its status, headers and body, that can be replayed to other clients without running the
+ * template again.
+ */
+public class CachedResponse {
+
+	/**
+	 * Headers that describe a single transfer of the response and are never replayed
+	 */
+	private static final Set<HttpString>	TRANSFER_HEADERS	= Set.of(
+	    Headers.CONNECTION,
+	    Headers.CONTENT_ENCODING,
+	    Headers.CONTENT_LENGTH,
+	    Headers.DATE,
+	    Headers.KEEP_ALIVE,
+	    Headers.SET_COOKIE,
+	    Headers.TRANSFER_ENCODING
+	);
+
+	/**
+	 * Rough per entry overhead used for the cache size accounting
+	 */
+	private static final int				OVERHEAD			= 512;
+
+	private final int						status;
+	private final HeaderMap					headers;
+	private final byte[]					body;
+	private final long						created;
+	private final long						expires;
+
+	/**
+	 * Create a cached response
+	 *
+	 * @param status  The status code
+	 * @param headers The response headers, copied without the transfer headers
+	 * @param body    The response body
+	 * @param ttl     How long the response can be replayed in milliseconds
+	 */
+	public CachedResponse( int status, HeaderMap headers, byte[] body, long ttl ) {
+		this.status		= status;
+		this.headers	= new HeaderMap();
+		for ( HeaderValues values : headers ) {
+			if ( !TRANSFER_HEADERS.contains( values.getHeaderName() ) ) {
+				this.headers.putAll( values.getHeaderName(), values );
+			}
+		}
+		this.body		= body;
+		this.created	= System.nanoTime();
+		this.expires	= this.created + TimeUnit.MILLISECONDS.toNanos( ttl );
+	}
+
+	/**
+	 * @return True once the response is older than its time to live
+	 */
+	public boolean isExpired() {
+		return System.nanoTime() - expires > 0;
+	}
+
+	/**
+	 * @return The approximate memory used by the response in bytes
+	 */
+	public int size() {
+		return body.length + OVERHEAD;
+	}
+
+	/**
+	 * @return The response body
+	 */
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * Send the response to a client. This does not block, so it can be called from an IO thread. A 200 with an
+	 * {@code ETag} or a {@code Last-Modified} header that the client already has is answered with a 304 without a body.
+	 *
+	 * @param exchange The exchange to respond to
+	 */
+	public void replay( HttpServerExchange exchange ) {
+		exchange.setStatusCode( status );
+		HeaderMap responseHeaders = exchange.getResponseHeaders();
+		for ( HeaderValues values : headers ) {
+			responseHeaders.putAll( values.getHeaderName(), values );
+		}
+		responseHeaders.put( Headers.AGE, TimeUnit.NANOSECONDS.toSeconds( System.nanoTime() - created ) );
+		if ( status == StatusCodes.OK && isNotModified( exchange ) ) {
+			exchange.setStatusCode( StatusCodes.NOT_MODIFIED );
+			exchange.endExchange();
+			return;
+		}
+		exchange.setResponseContentLength( body.length );
+		exchange.getResponseSender().send( ByteBuffer.wrap( body ) );
+	}
+
+	/**
+	 * Whether the validators of the request match the cached response. If-Modified-Since is only considered when there
+	 * is no If-None-Match.
+	 */
+	private boolean isNotModified( HttpServerExchange exchange ) {
+		if ( exchange.getRequestHeaders().contains( Headers.IF_NONE_MATCH ) ) {
+			ETag etag = ETagUtils.getETag( exchange );
+			return etag != null && !ETagUtils.handleIfNoneMatch( exchange, etag, true );
+		}
+		String	lastModified	= headers.getFirst( Headers.LAST_MODIFIED );
+		Date	modified		= lastModified != null ? DateUtils.parseDate( lastModified ) : null;
+		return modified != null && !DateUtils.handleIfModifiedSince( exchange, modified );
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.cache;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.Cookie;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+
+/**
+ * Identifies the responses that can be shared between requests: the request method, the request path, the query string
+ * with its parameters in a stable order, and the values of the configured vary headers and cookies.
+ *
+ * A {@code HEAD} request uses the key of the matching {@code GET}, so it is answered with the headers of the stored
+ * response. Only {@code GET} responses are ever stored, a {@code HEAD} response has no body to replay.
+ *
+ * @param method  The request method, {@code GET} for {@code HEAD} requests
+ * @param path    The request path
+ * @param query   The normalized query string
+ * @param variant The vary header and cookie values
+ */
+public record ResponseCacheKey( String method, String path, String query, String variant ) {
+
+	/**
+	 * Build the key of a request
+	 *
+	 * @param exchange    The exchange
+	 * @param varyHeaders The request headers that select a different response
+	 * @param varyCookies The request cookies that select a different response
+	 *
+	 * @return The key
+	 */
+	public static ResponseCacheKey of( HttpServerExchange exchange, List<HttpString> varyHeaders, List<String> varyCookies ) {
+		String variant = "";
+		if ( !varyHeaders.isEmpty() || !varyCookies.isEmpty() ) {
+			StringBuilder builder = new StringBuilder();
+			for ( HttpString header : varyHeaders ) {
+				String value = exchange.getRequestHeaders().getFirst( header );
+				builder.append( header ).append( '=' ).append( value == null ? "" : value ).append( '\n' );
+			}
+			for ( String name : varyCookies ) {
+				Cookie cookie = exchange.getRequestCookie( name );
+				builder.append( name ).append( '=' ).append( cookie == null ? "" : cookie.getValue() ).append( '\n' );
+			}
+			variant = builder.toString();
+		}
+		String method = exchange.getRequestMethod().equals( Methods.HEAD ) ? Methods.GET_STRING : exchange.getRequestMethod().toString();
+		return new ResponseCacheKey( method, exchange.getRequestPath(), normalizeQuery( exchange.getQueryString() ), variant );
+	}
+
+	/**
+	 * Sort the query string parameters so the same parameters in a different order share a key
+	 *
+	 * @param query The raw query string
+	 *
+	 * @return The normalized query string
+	 */
+	static String normalizeQuery( String query ) {
+		if ( query == null || query.isEmpty() || query.indexOf( '&' ) == -1 ) {
+			return query == null ? "" : query;
+		}
+		String[] parameters = query.split( "&" );
+		Arrays.sort( parameters );
+		return String.join( "&", parameters );
+	}
+
+}
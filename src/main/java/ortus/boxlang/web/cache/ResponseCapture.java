@@ -0,0 +1,190 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.xnio.IoUtils;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.ConduitWritableByteChannel;
+import org.xnio.conduits.Conduits;
+import org.xnio.conduits.StreamSinkConduit;
+
+import io.undertow.server.ConduitWrapper;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.ConduitFactory;
+import io.undertow.util.Headers;
+
+/**
+ * Keeps a copy of the response body of an exchange while it is written to the client.
+ *
+ * The capture wraps the response channel before any other wrapper, like the gzip encoding, so the copy is the body as
+ * the template produced it. It gives up, and only passes the writes through, when the body grows over the maximum size
+ * or when the response was already content encoded by the template.
+ */
+public class ResponseCapture implements ConduitWrapper<StreamSinkConduit> {
+
+	private final int	maxSize;
+	private byte[]		body		= new byte[ 1024 ];
+	private int			size		= 0;
+	private boolean		failed		= false;
+	private boolean		finished	= false;
+
+	private ResponseCapture( int maxSize ) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Start capturing the response body of an exchange. It must be called before the response channel is requested.
+	 *
+	 * @param exchange The exchange
+	 * @param maxSize  The largest body to capture in bytes
+	 *
+	 * @return The capture
+	 */
+	public static ResponseCapture start( HttpServerExchange exchange, int maxSize ) {
+		ResponseCapture capture = new ResponseCapture( maxSize );
+		exchange.addResponseWrapper( capture );
+		return capture;
+	}
+
+	/**
+	 * The captured body, only available once the response was written completely
+	 *
+	 * @return The body, or null if it could not be captured
+	 */
+	public synchronized byte[] getBody() {
+		if ( failed || !finished ) {
+			return null;
+		}
+		return Arrays.copyOf( body, size );
+	}
+
+	@Override
+	public StreamSinkConduit wrap( ConduitFactory<StreamSinkConduit> factory, HttpServerExchange exchange ) {
+		// The template wrote an encoded body itself, we would have no way to replay it for another client
+		if ( exchange.getResponseHeaders().contains( Headers.CONTENT_ENCODING ) ) {
+			fail();
+		}
+		return new CaptureConduit( factory.create() );
+	}
+
+	private synchronized void fail() {
+		failed	= true;
+		body	= null;
+	}
+
+	private synchronized void append( ByteBuffer source ) {
+		if ( failed ) {
+			return;
+		}
+		int length = source.remaining();
+		if ( size + length > maxSize ) {
+			fail();
+			return;
+		}
+		if ( size + length > body.length ) {
+			body = Arrays.copyOf( body, Math.min( maxSize, Math.max( body.length * 2, size + length ) ) );
+		}
+		source.get( body, size, length );
+		size += length;
+	}
+
+	private synchronized void finish() {
+		finished = true;
+	}
+
+	/**
+	 * Copies every byte the next conduit accepted
+	 */
+	private final class CaptureConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+
+		CaptureConduit( StreamSinkConduit next ) {
+			super( next );
+		}
+
+		@Override
+		public int write( ByteBuffer src ) throws IOException {
+			ByteBuffer	copy	= src.duplicate();
+			int			written	= super.write( src );
+			if ( written > 0 ) {
+				copy.limit( copy.position() + written );
+				append( copy );
+			}
+			return written;
+		}
+
+		@Override
+		public long write( ByteBuffer[] srcs, int offs, int len ) throws IOException {
+			ByteBuffer[] copies = new ByteBuffer[ len ];
+			for ( int i = 0; i < len; i++ ) {
+				copies[ i ] = srcs[ offs + i ].duplicate();
+			}
+			long	written	= super.write( srcs, offs, len );
+			long	left	= written;
+			for ( int i = 0; i < len && left > 0; i++ ) {
+				ByteBuffer copy = copies[ i ];
+				if ( copy.remaining() > left ) {
+					copy.limit( ( int ) ( copy.position() + left ) );
+				}
+				left -= copy.remaining();
+				append( copy );
+			}
+			return written;
+		}
+
+		@Override
+		public int writeFinal( ByteBuffer src ) throws IOException {
+			return Conduits.writeFinalBasic( this, src );
+		}
+
+		@Override
+		public long writeFinal( ByteBuffer[] srcs, int offset, int length ) throws IOException {
+			return Conduits.writeFinalBasic( this, srcs, offset, length );
+		}
+
+		// File and channel transfers go through our own write so they are captured too
+
+		@Override
+		public long transferFrom( FileChannel src, long position, long count ) throws IOException {
+			return src.transferTo( position, count, new ConduitWritableByteChannel( this ) );
+		}
+
+		@Override
+		public long transferFrom( StreamSourceChannel source, long count, ByteBuffer throughBuffer ) throws IOException {
+			return IoUtils.transfer( source, count, throughBuffer, new ConduitWritableByteChannel( this ) );
+		}
+
+		@Override
+		public void terminateWrites() throws IOException {
+			finish();
+			super.terminateWrites();
+		}
+
+		@Override
+		public void truncateWrites() throws IOException {
+			fail();
+			super.truncateWrites();
+		}
+	}
+
+}
@@ -0,0 +1,600 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.cluster;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import ortus.boxlang.web.MiniServer;
+
+/**
+ * Runs a fixed number of MiniServer worker processes on loopback ports and keeps them healthy, while the
+ * {@link ClusterProxyClient} balances requests across them.
+ *
+ * The BoxLang runtime is a singleton per JVM, so a cluster is how one host runs several runtimes, each with its own
+ * smaller heap and garbage collector. Workers are started with the options of this process, minus the ones that only
+ * apply to the front process, like the port and the access log.
+ *
+ * Workers that exit or fail {@value #MAX_FAILED_CHECKS} health checks in a row are restarted, waiting longer after
+ * every crash so a worker that can't start doesn't spin. A rolling restart replaces the workers one at a time, starting
+ * the new one before the old one stops. Everything happens on a single cluster thread, so none of this state is
+ * locked.
+ */
+public class Cluster implements ClusterMXBean {
+
+	/**
+	 * The path workers answer health checks on
+	 */
+	public static final String								HEALTH_PATH			= "/__health";
+
+	/**
+	 * The environment variable with the slot of a worker, set by the front process
+	 */
+	public static final String								WORKER_VARIABLE		= "BOXLANG_CLUSTER_WORKER";
+
+	/**
+	 * Options of the front process that take a value, lower case. Workers don't get them.
+	 */
+	private static final Set<String>						FRONT_OPTIONS		= Set.of(
+	    "--port", "-p", "--host", "-h", "--sslport", "--accesslog",
+	    "--cluster", "--clusterjvmargs", "--clusterhealthinterval", "--clusterdraintimeout"
+	);
+
+	/**
+	 * Options of the front process without a value, lower case. The front process precompresses the web root once, so
+	 * the workers don't all write the same files.
+	 */
+	private static final Set<String>						FRONT_FLAGS			= Set.of( "--precompress" );
+
+	/**
+	 * The environment variables of the front process options
+	 */
+	private static final List<String>						FRONT_VARIABLES		= List.of(
+	    "BOXLANG_PORT", "BOXLANG_HOST", "BOXLANG_SSL_PORT", "BOXLANG_ACCESS_LOG", "BOXLANG_PRECOMPRESS",
+	    "BOXLANG_CLUSTER", "BOXLANG_CLUSTER_JVM_ARGS", "BOXLANG_CLUSTER_HEALTH_INTERVAL", "BOXLANG_CLUSTER_DRAIN_TIMEOUT"
+	);
+
+	/**
+	 * JVM options of this process that would clash between workers: debugger and JMX ports, and CDS archive dumps
+	 */
+	private static final List<String>						FRONT_JVM_OPTIONS	= List.of(
+	    "-agentlib:jdwp", "-XX:ArchiveClassesAtExit", "-Dcom.sun.management.jmxremote.port", "-Dcom.sun.management.jmxremote.rmi.port"
+	);
+
+	/**
+	 * How often starting workers are polled and drained workers checked, in milliseconds
+	 */
+	private static final long								TICK				= 250;
+
+	/**
+	 * How long a worker may take to answer its first health check, in milliseconds. Covers precompiling and warming up.
+	 */
+	private static final long								START_TIMEOUT		= 300000;
+
+	/**
+	 * How long a health check may take, in milliseconds
+	 */
+	private static final long								CHECK_TIMEOUT		= 2000;
+
+	/**
+	 * How many health checks in a row a worker can fail before it is restarted
+	 */
+	private static final int								MAX_FAILED_CHECKS	= 3;
+
+	/**
+	 * The longest wait before restarting a worker that keeps crashing, in milliseconds
+	 */
+	private static final long								MAX_RESTART_DELAY	= 30000;
+
+	private final int										size;
+	private final List<String>								command;
+	private final long										healthInterval;
+	private final long										drainTimeout;
+	private final ClusterProxyClient						proxyClient			= ClusterProxyClient.create();
+	private final ScheduledExecutorService					scheduler			= Executors.newSingleThreadScheduledExecutor(
+	    Thread.ofPlatform().name( "bx-cluster" ).daemon().factory()
+	);
+	private final HttpClient								healthClient		= HttpClient.newBuilder()
+	    .version( HttpClient.Version.HTTP_1_1 )
+	    .connectTimeout( Duration.ofMillis( CHECK_TIMEOUT ) )
+	    .build();
+	private final CompletableFuture<Void>					started				= new CompletableFuture<>();
+	private final LongAdder									restarts			= new LongAdder();
+
+	/**
+	 * The current worker of every slot. Written by the cluster thread, read by JMX.
+	 */
+	private final AtomicReferenceArray<ClusterWorker>		workers;
+	private final List<ClusterWorker>						draining			= new CopyOnWriteArrayList<>();
+	private final int[]										crashes;
+	private final Deque<Integer>							restartQueue		= new ArrayDeque<>();
+	private volatile ClusterWorker							replacement;
+	private volatile boolean								rolling				= false;
+	private volatile boolean								stopping			= false;
+
+	/**
+	 * Create a cluster, call {@link #start()} to start the workers
+	 *
+	 * @param size           The number of worker processes
+	 * @param jvmArgs        The JVM options of the workers
+	 * @param serverArgs     The MiniServer options of the workers, without a host and port
+	 * @param healthInterval How often ready workers are health checked in milliseconds
+	 * @param drainTimeout   How long a replaced or stopped worker may take to finish its requests in milliseconds
+	 */
+	public Cluster( int size, List<String> jvmArgs, List<String> serverArgs, long healthInterval, long drainTimeout ) {
+		if ( size < 1 ) {
+			throw new IllegalArgumentException( "A cluster needs at least one worker" );
+		}
+		this.size			= size;
+		this.healthInterval	= Math.max( healthInterval, TICK );
+		this.drainTimeout	= Math.max( drainTimeout, 0 );
+		this.workers		= new AtomicReferenceArray<>( size );
+		this.crashes		= new int[ size ];
+
+		List<String> workerCommand = new ArrayList<>();
+		workerCommand.add( ProcessHandle.current().info().command()
+		    .orElse( Paths.get( System.getProperty( "java.home" ), "bin", "java" ).toString() ) );
+		workerCommand.addAll( jvmArgs );
+		workerCommand.add( "-cp" );
+		workerCommand.add( System.getProperty( "java.class.path" ) );
+		workerCommand.add( MiniServer.class.getName() );
+		workerCommand.addAll( serverArgs );
+		workerCommand.add( "--host" );
+		workerCommand.add( InetAddress.getLoopbackAddress().getHostAddress() );
+		this.command = List.copyOf( workerCommand );
+	}
+
+	/**
+	 * The MiniServer options of the workers
+	 *
+	 * @param args The command line of the front process
+	 *
+	 * @return The options, without the ones that only apply to the front process
+	 */
+	public static List<String> workerArguments( String[] args ) {
+		List<String> workerArgs = new ArrayList<>();
+		for ( int i = 0; i < args.length; i++ ) {
+			String option = args[ i ].toLowerCase();
+			if ( FRONT_OPTIONS.contains( option ) ) {
+				i++;
+			} else if ( !FRONT_FLAGS.contains( option ) ) {
+				workerArgs.add( args[ i ] );
+			}
+		}
+		return workerArgs;
+	}
+
+	/**
+	 * The JVM options of the workers
+	 *
+	 * @param jvmArgs The space separated options given for the workers, or blank to use the ones of this process
+	 *
+	 * @return The options
+	 */
+	public static List<String> workerJvmArguments( String jvmArgs ) {
+		if ( jvmArgs != null && !jvmArgs.isBlank() ) {
+			return Arrays.asList( jvmArgs.trim().split( "\\s+" ) );
+		}
+		return ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+		    .filter( arg -> FRONT_JVM_OPTIONS.stream().noneMatch( arg::startsWith ) )
+		    .toList();
+	}
+
+	/**
+	 * Prepare the environment of a worker process
+	 *
+	 * @param environment The environment, a copy of ours
+	 * @param slot        The slot of the worker
+	 */
+	static void workerEnvironment( Map<String, String> environment, int slot ) {
+		FRONT_VARIABLES.forEach( environment::remove );
+		environment.put( WORKER_VARIABLE, String.valueOf( slot ) );
+	}
+
+	/**
+	 * Start the workers and keep them running
+	 *
+	 * @return Completes when every worker is ready, or fails when one exits or times out before it is
+	 */
+	public CompletableFuture<Void> start() {
+		execute( () -> {
+			for ( int index = 0; index < this.size; index++ ) {
+				startWorker( index );
+			}
+		} );
+		this.scheduler.scheduleWithFixedDelay( guarded( this::tick ), TICK, TICK, TimeUnit.MILLISECONDS );
+		this.scheduler.scheduleWithFixedDelay( guarded( this::checkHealth ), this.healthInterval, this.healthInterval, TimeUnit.MILLISECONDS );
+		return this.started;
+	}
+
+	/**
+	 * Stop the workers, giving them the drain timeout to shut down before they are killed
+	 */
+	public void shutdown() {
+		this.stopping = true;
+		this.scheduler.shutdownNow();
+		try {
+			this.scheduler.awaitTermination( 1, TimeUnit.SECONDS );
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+
+		List<ClusterWorker> all = allWorkers();
+		all.forEach( ClusterWorker::stop );
+		for ( ClusterWorker worker : all ) {
+			try {
+				worker.getProcess().onExit().get( this.drainTimeout, TimeUnit.MILLISECONDS );
+			} catch ( TimeoutException | ExecutionException e ) {
+				worker.kill();
+			} catch ( InterruptedException e ) {
+				worker.kill();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return The proxy client that balances requests across the ready workers
+	 */
+	public ClusterProxyClient getProxyClient() {
+		return this.proxyClient;
+	}
+
+	@Override
+	public int getSize() {
+		return this.size;
+	}
+
+	@Override
+	public int getReadyWorkers() {
+		int ready = 0;
+		for ( int index = 0; index < this.size; index++ ) {
+			ClusterWorker worker = this.workers.get( index );
+			if ( worker != null && worker.getState() == ClusterWorker.State.READY ) {
+				ready++;
+			}
+		}
+		return ready;
+	}
+
+	@Override
+	public int getActiveRequests() {
+		return allWorkers().stream().mapToInt( ClusterWorker::getActiveRequests ).sum();
+	}
+
+	@Override
+	public long getRestarts() {
+		return this.restarts.sum();
+	}
+
+	@Override
+	public boolean isRollingRestart() {
+		return this.rolling;
+	}
+
+	@Override
+	public String[] getWorkers() {
+		return allWorkers().stream().map( ClusterWorker::toString ).toArray( String[]::new );
+	}
+
+	@Override
+	public void rollingRestart() {
+		execute( () -> {
+			if ( this.rolling ) {
+				return;
+			}
+			System.out.println( "+ Rolling restart of " + this.size + " cluster workers" );
+			this.rolling = true;
+			for ( int index = 0; index < this.size; index++ ) {
+				this.restartQueue.add( index );
+			}
+		} );
+	}
+
+	@Override
+	public String toString() {
+		return this.size + " workers, health checks every " + this.healthInterval + "ms, " + this.drainTimeout + "ms drain timeout";
+	}
+
+	/**
+	 * Poll starting workers, stop drained ones and move the rolling restart along
+	 */
+	private void tick() {
+		long now = System.currentTimeMillis();
+		for ( int index = 0; index < this.size; index++ ) {
+			pollStarting( this.workers.get( index ), now );
+		}
+		pollStarting( this.replacement, now );
+
+		this.draining.removeIf( worker -> {
+			if ( worker.getActiveRequests() <= 0 || now >= worker.getDrainDeadline() ) {
+				worker.stop();
+				return true;
+			}
+			return false;
+		} );
+
+		// One replacement at a time, and only while the cluster is complete
+		if ( this.replacement == null && !this.restartQueue.isEmpty() && getReadyWorkers() == this.size ) {
+			int index = this.restartQueue.poll();
+			try {
+				this.replacement = launch( index );
+			} catch ( IOException e ) {
+				stopRollingRestart( "could not start a new worker " + ( index + 1 ) + ": " + e.getMessage() );
+			}
+		}
+	}
+
+	/**
+	 * Check whether a starting worker answers yet
+	 */
+	private void pollStarting( ClusterWorker worker, long now ) {
+		if ( worker == null || worker.getState() != ClusterWorker.State.STARTING || worker.isCheckPending() ) {
+			return;
+		}
+		if ( now > worker.getStartDeadline() ) {
+			System.out.println( "- Cluster worker " + worker.getSlot() + " did not start within " + START_TIMEOUT / 1000 + "s, restarting" );
+			worker.kill();
+			return;
+		}
+		check( worker, healthy -> {
+			if ( healthy && worker.getState() == ClusterWorker.State.STARTING ) {
+				ready( worker );
+			}
+		} );
+	}
+
+	/**
+	 * Health check the ready workers, and restart the ones that stopped answering
+	 */
+	private void checkHealth() {
+		for ( int index = 0; index < this.size; index++ ) {
+			ClusterWorker worker = this.workers.get( index );
+			if ( worker == null || worker.getState() != ClusterWorker.State.READY || worker.isCheckPending() ) {
+				continue;
+			}
+			check( worker, healthy -> {
+				if ( worker.getState() != ClusterWorker.State.READY ) {
+					return;
+				}
+				if ( healthy ) {
+					worker.setFailedChecks( 0 );
+					return;
+				}
+				worker.setFailedChecks( worker.getFailedChecks() + 1 );
+				if ( worker.getFailedChecks() >= MAX_FAILED_CHECKS ) {
+					System.out.println( "- Cluster worker " + worker.getSlot() + " failed " + MAX_FAILED_CHECKS + " health checks, restarting" );
+					this.proxyClient.removeWorker( worker );
+					worker.kill();
+				}
+			} );
+		}
+	}
+
+	/**
+	 * Request the health check of a worker without blocking the cluster thread
+	 *
+	 * @param worker The worker
+	 * @param result Called on the cluster thread with the outcome
+	 */
+	private void check( ClusterWorker worker, Consumer<Boolean> result ) {
+		worker.setCheckPending( true );
+		HttpRequest request = HttpRequest.newBuilder( worker.getUri().resolve( HEALTH_PATH ) )
+		    .timeout( Duration.ofMillis( CHECK_TIMEOUT ) )
+		    .GET()
+		    .build();
+		this.healthClient.sendAsync( request, HttpResponse.BodyHandlers.discarding() )
+		    .whenComplete( ( response, error ) -> execute( () -> {
+			    worker.setCheckPending( false );
+			    result.accept( error == null && response.statusCode() == 200 );
+		    } ) );
+	}
+
+	/**
+	 * A worker answered its first health check
+	 */
+	private void ready( ClusterWorker worker ) {
+		int index = worker.getSlot() - 1;
+		worker.setState( ClusterWorker.State.READY );
+		this.crashes[ index ] = 0;
+		this.proxyClient.addWorker( worker );
+		System.out.println( "+ Cluster worker " + worker.getSlot() + " ready on port " + worker.getPort() + " (pid " + worker.getProcess().pid() + ")" );
+
+		if ( worker == this.replacement ) {
+			this.replacement = null;
+			retire( this.workers.getAndSet( index, worker ) );
+			if ( this.restartQueue.isEmpty() ) {
+				this.rolling = false;
+				System.out.println( "+ Rolling restart complete" );
+			}
+		}
+		if ( !this.started.isDone() && getReadyWorkers() == this.size ) {
+			this.started.complete( null );
+		}
+	}
+
+	/**
+	 * Stop sending requests to a replaced worker, it stops once its requests are done or the drain timeout passes
+	 */
+	private void retire( ClusterWorker worker ) {
+		if ( worker == null ) {
+			return;
+		}
+		this.proxyClient.removeWorker( worker );
+		if ( worker.getState() == ClusterWorker.State.STOPPED ) {
+			return;
+		}
+		worker.setState( ClusterWorker.State.DRAINING );
+		worker.setDrainDeadline( System.currentTimeMillis() + this.drainTimeout );
+		this.draining.add( worker );
+	}
+
+	/**
+	 * A worker process exited
+	 */
+	private void exited( ClusterWorker worker ) {
+		int					index	= worker.getSlot() - 1;
+		ClusterWorker.State	state	= worker.getState();
+		int					code	= worker.getProcess().exitValue();
+		worker.setState( ClusterWorker.State.STOPPED );
+		this.proxyClient.removeWorker( worker );
+		this.draining.remove( worker );
+
+		if ( worker == this.replacement ) {
+			this.replacement = null;
+			stopRollingRestart( "the new worker " + worker.getSlot() + " exited with code " + code );
+			return;
+		}
+		if ( worker != this.workers.get( index ) || state == ClusterWorker.State.STOPPED ) {
+			return;
+		}
+		if ( !this.started.isDone() ) {
+			this.started.completeExceptionally( new IllegalStateException( "Cluster worker " + worker.getSlot() + " exited with code " + code ) );
+			return;
+		}
+
+		this.restarts.increment();
+		this.crashes[ index ]++;
+		long delay = Math.min( 1000L << Math.min( this.crashes[ index ] - 1, 5 ), MAX_RESTART_DELAY );
+		System.out.println( "- Cluster worker " + worker.getSlot() + " exited with code " + code + ", restarting in " + delay + "ms" );
+		schedule( () -> {
+			// A rolling restart may have replaced it in the meantime
+			if ( this.workers.get( index ) == worker ) {
+				startWorker( index );
+			}
+		}, delay );
+	}
+
+	/**
+	 * Start the worker of a slot, trying again later if the process cannot be started
+	 */
+	private void startWorker( int index ) {
+		try {
+			this.workers.set( index, launch( index ) );
+		} catch ( IOException e ) {
+			if ( !this.started.isDone() ) {
+				this.started.completeExceptionally( e );
+				return;
+			}
+			System.out.println( "- Could not start cluster worker " + ( index + 1 ) + ", trying again in " + MAX_RESTART_DELAY + "ms: " + e.getMessage() );
+			schedule( () -> startWorker( index ), MAX_RESTART_DELAY );
+		}
+	}
+
+	/**
+	 * Start a worker process for a slot on a free loopback port
+	 */
+	private ClusterWorker launch( int index ) throws IOException {
+		int				port			= freePort();
+		List<String>	workerCommand	= new ArrayList<>( this.command );
+		workerCommand.add( "--port" );
+		workerCommand.add( String.valueOf( port ) );
+		ClusterWorker worker = ClusterWorker.start( index + 1, port, workerCommand, START_TIMEOUT );
+		worker.getProcess().onExit().thenRun( () -> execute( () -> exited( worker ) ) );
+		return worker;
+	}
+
+	private void stopRollingRestart( String reason ) {
+		this.restartQueue.clear();
+		this.rolling = false;
+		System.out.println( "- Rolling restart stopped, " + reason );
+	}
+
+	/**
+	 * @return The workers of every slot, the replacement and the draining workers
+	 */
+	private List<ClusterWorker> allWorkers() {
+		List<ClusterWorker> all = new ArrayList<>();
+		for ( int index = 0; index < this.size; index++ ) {
+			ClusterWorker worker = this.workers.get( index );
+			if ( worker != null ) {
+				all.add( worker );
+			}
+		}
+		ClusterWorker next = this.replacement;
+		if ( next != null ) {
+			all.add( next );
+		}
+		all.addAll( this.draining );
+		return all;
+	}
+
+	/**
+	 * Run a task on the cluster thread, unless the cluster is shutting down
+	 */
+	private void execute( Runnable task ) {
+		schedule( task, 0 );
+	}
+
+	private void schedule( Runnable task, long delay ) {
+		if ( this.stopping ) {
+			return;
+		}
+		try {
+			this.scheduler.schedule( guarded( task ), delay, TimeUnit.MILLISECONDS );
+		} catch ( RejectedExecutionException e ) {
+			// Shutting down
+		}
+	}
+
+	/**
+	 * Log the failures of a cluster task instead of letting the scheduler drop them, which would also cancel a periodic
+	 * task
+	 */
+	private static Runnable guarded( Runnable task ) {
+		return () -> {
+			try {
+				task.run();
+			} catch ( RuntimeException e ) {
+				System.out.println( "- Cluster task failed: " + e );
+			}
+		};
+	}
+
+	private static int freePort() throws IOException {
+		try ( ServerSocket socket = new ServerSocket( 0, 0, InetAddress.getLoopbackAddress() ) ) {
+			return socket.getLocalPort();
+		}
+	}
+
+}
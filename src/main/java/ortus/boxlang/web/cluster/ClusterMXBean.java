@@ -0,0 +1,61 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.cluster;
+
+/**
+ * JMX view and control of the worker processes of a {@link Cluster}
+ */
+public interface ClusterMXBean {
+
+	/**
+	 * @return The number of worker processes the cluster keeps running
+	 */
+	int getSize();
+
+	/**
+	 * @return The number of workers taking requests
+	 */
+	int getReadyWorkers();
+
+	/**
+	 * @return The number of requests the workers are handling
+	 */
+	int getActiveRequests();
+
+	/**
+	 * @return The total number of workers restarted because they exited or failed their health checks
+	 */
+	long getRestarts();
+
+	/**
+	 * @return True while a rolling restart is replacing the workers
+	 */
+	boolean isRollingRestart();
+
+	/**
+	 * @return The port, process id, state and active requests of every worker
+	 */
+	String[] getWorkers();
+
+	/**
+	 * Replace the workers one at a time. Each one keeps taking requests until its replacement is ready, then finishes
+	 * the requests it has and stops, so the cluster never runs below its size.
+	 */
+	void rollingRestart();
+
+}
@@ -0,0 +1,154 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.cluster;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.undertow.client.UndertowClient;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.proxy.LoadBalancingProxyClient;
+import io.undertow.util.AttachmentKey;
+
+/**
+ * Balances requests across the ready workers of a {@link Cluster}, sending each one to the worker with the fewest active
+ * requests. Ties go round robin, so idle workers share the load evenly.
+ *
+ * Undertow's pool still skips workers it can't connect to, and only the host selection is replaced.
+ */
+public final class ClusterProxyClient extends LoadBalancingProxyClient {
+
+	/**
+	 * The worker a request was sent to, so a retry on another worker moves the request count with it
+	 */
+	private static final AttachmentKey<ClusterWorker>	WORKER_KEY				= AttachmentKey.create( ClusterWorker.class );
+
+	/**
+	 * Connections per IO thread and worker. BoxLang requests can be slow, so this is well above Undertow's default of 10,
+	 * and the workers decide how many run at once.
+	 */
+	private static final int							CONNECTIONS_PER_THREAD	= 100;
+
+	/**
+	 * How many requests can wait for a connection to a worker before they get a 503
+	 */
+	private static final int							MAX_QUEUE_SIZE			= 1000;
+
+	private final Map<URI, ClusterWorker>				workers;
+
+	private ClusterProxyClient( Map<URI, ClusterWorker> workers, HostSelector hostSelector ) {
+		super( UndertowClient.getInstance(), null, hostSelector );
+		this.workers = workers;
+	}
+
+	/**
+	 * Create a proxy client without workers
+	 *
+	 * @return The proxy client
+	 */
+	public static ClusterProxyClient create() {
+		Map<URI, ClusterWorker>	workers	= new ConcurrentHashMap<>();
+		ClusterProxyClient		client	= new ClusterProxyClient( workers, new LeastRequestsSelector( workers ) );
+		client.setConnectionsPerThread( CONNECTIONS_PER_THREAD );
+		client.setMaxQueueSize( MAX_QUEUE_SIZE );
+		return client;
+	}
+
+	/**
+	 * Start sending requests to a worker
+	 *
+	 * @param worker The ready worker
+	 */
+	public void addWorker( ClusterWorker worker ) {
+		this.workers.put( worker.getUri(), worker );
+		addHost( worker.getUri() );
+	}
+
+	/**
+	 * Stop sending new requests to a worker. The requests it has keep their connection until they complete.
+	 *
+	 * @param worker The worker
+	 */
+	public void removeWorker( ClusterWorker worker ) {
+		if ( this.workers.remove( worker.getUri() ) != null ) {
+			removeHost( worker.getUri() );
+		}
+	}
+
+	@Override
+	protected Host selectHost( HttpServerExchange exchange ) {
+		Host host = super.selectHost( exchange );
+		if ( host == null ) {
+			return null;
+		}
+		ClusterWorker	worker		= this.workers.get( host.getUri() );
+		ClusterWorker	previous	= worker != null ? exchange.putAttachment( WORKER_KEY, worker ) : null;
+		if ( previous != null ) {
+			previous.requestCompleted();
+		} else if ( worker != null ) {
+			exchange.addExchangeCompleteListener( ( completed, nextListener ) -> {
+				try {
+					ClusterWorker last = completed.getAttachment( WORKER_KEY );
+					if ( last != null ) {
+						last.requestCompleted();
+					}
+				} finally {
+					nextListener.proceed();
+				}
+			} );
+		}
+		if ( worker != null ) {
+			worker.requestStarted();
+		}
+		return host;
+	}
+
+	/**
+	 * Picks the worker with the fewest active requests
+	 */
+	private static class LeastRequestsSelector implements HostSelector {
+
+		private final Map<URI, ClusterWorker>	workers;
+		private final AtomicInteger				next	= new AtomicInteger();
+
+		LeastRequestsSelector( Map<URI, ClusterWorker> workers ) {
+			this.workers = workers;
+		}
+
+		@Override
+		public int selectHost( Host[] hosts ) {
+			int	start		= Math.floorMod( this.next.getAndIncrement(), hosts.length );
+			int	selected	= start;
+			int	fewest		= Integer.MAX_VALUE;
+			for ( int i = 0; i < hosts.length; i++ ) {
+				int				index	= ( start + i ) % hosts.length;
+				ClusterWorker	worker	= this.workers.get( hosts[ index ].getUri() );
+				int				active	= worker != null ? worker.getActiveRequests() : Integer.MAX_VALUE;
+				if ( active < fewest ) {
+					selected	= index;
+					fewest		= active;
+				}
+			}
+			return selected;
+		}
+
+	}
+
+}
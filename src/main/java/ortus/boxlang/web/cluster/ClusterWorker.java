@@ -0,0 +1,223 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.cluster;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One MiniServer worker process of a {@link Cluster}, listening on a loopback port.
+ *
+ * A worker is never started twice: when its process exits or is replaced, the cluster starts a new worker in the same
+ * slot. Apart from the active request count, which the proxy client updates from the IO threads, its state is only
+ * touched by the cluster thread.
+ */
+public class ClusterWorker {
+
+	/**
+	 * The lifecycle of a worker
+	 */
+	public enum State {
+		/**
+		 * The process is running but doesn't answer its health check yet
+		 */
+		STARTING,
+		/**
+		 * The worker takes requests
+		 */
+		READY,
+		/**
+		 * The worker was replaced and finishes the requests it still has
+		 */
+		DRAINING,
+		/**
+		 * The process was stopped or exited
+		 */
+		STOPPED
+	}
+
+	private final int			slot;
+	private final int			port;
+	private final URI			uri;
+	private final Process		process;
+	private final long			startDeadline;
+	private final AtomicInteger	activeRequests	= new AtomicInteger();
+
+	private volatile State		state			= State.STARTING;
+	private int					failedChecks	= 0;
+	private boolean				checkPending	= false;
+	private long				drainDeadline	= 0;
+
+	private ClusterWorker( int slot, int port, Process process, long startDeadline ) {
+		this.slot			= slot;
+		this.port			= port;
+		this.uri			= URI.create( "http://127.0.0.1:" + port );
+		this.process		= process;
+		this.startDeadline	= startDeadline;
+	}
+
+	/**
+	 * Start a worker process. Its output is copied to ours, every line prefixed with the worker name.
+	 *
+	 * @param slot         The slot of the worker in the cluster, from 1
+	 * @param port         The loopback port the worker listens on
+	 * @param command      The command that starts the worker process
+	 * @param startTimeout How long the worker may take to answer its first health check in milliseconds
+	 *
+	 * @return The worker
+	 *
+	 * @throws IOException If the process cannot be started
+	 */
+	public static ClusterWorker start( int slot, int port, List<String> command, long startTimeout ) throws IOException {
+		ProcessBuilder processBuilder = new ProcessBuilder( command ).redirectErrorStream( true );
+		Cluster.workerEnvironment( processBuilder.environment(), slot );
+		ClusterWorker worker = new ClusterWorker( slot, port, processBuilder.start(), System.currentTimeMillis() + startTimeout );
+		Thread.ofVirtual().name( "bx-cluster-worker-" + slot + "-output" ).start( worker::copyOutput );
+		return worker;
+	}
+
+	/**
+	 * Copy the worker output until the process exits
+	 */
+	private void copyOutput() {
+		String prefix = "[worker-" + this.slot + "] ";
+		try ( BufferedReader reader = new BufferedReader( new InputStreamReader( this.process.getInputStream(), StandardCharsets.UTF_8 ) ) ) {
+			String line;
+			while ( ( line = reader.readLine() ) != null ) {
+				System.out.println( prefix + line );
+			}
+		} catch ( IOException e ) {
+			// The process is gone
+		}
+	}
+
+	/**
+	 * Ask the worker to shut down, it stops its server and its runtime
+	 */
+	public void stop() {
+		this.state = State.STOPPED;
+		this.process.destroy();
+	}
+
+	/**
+	 * Kill a worker that doesn't answer anymore, without giving it a chance to clean up
+	 */
+	public void kill() {
+		this.process.destroyForcibly();
+	}
+
+	/**
+	 * A request was sent to the worker
+	 */
+	void requestStarted() {
+		this.activeRequests.incrementAndGet();
+	}
+
+	/**
+	 * A request sent to the worker completed
+	 */
+	void requestCompleted() {
+		this.activeRequests.decrementAndGet();
+	}
+
+	/**
+	 * @return The number of requests the worker is handling
+	 */
+	public int getActiveRequests() {
+		return this.activeRequests.get();
+	}
+
+	/**
+	 * @return The slot of the worker in the cluster, from 1
+	 */
+	public int getSlot() {
+		return this.slot;
+	}
+
+	/**
+	 * @return The loopback port the worker listens on
+	 */
+	public int getPort() {
+		return this.port;
+	}
+
+	/**
+	 * @return The address the proxy sends requests to
+	 */
+	public URI getUri() {
+		return this.uri;
+	}
+
+	/**
+	 * @return The worker process
+	 */
+	public Process getProcess() {
+		return this.process;
+	}
+
+	/**
+	 * @return The lifecycle state of the worker
+	 */
+	public State getState() {
+		return this.state;
+	}
+
+	void setState( State state ) {
+		this.state = state;
+	}
+
+	long getStartDeadline() {
+		return this.startDeadline;
+	}
+
+	int getFailedChecks() {
+		return this.failedChecks;
+	}
+
+	void setFailedChecks( int failedChecks ) {
+		this.failedChecks = failedChecks;
+	}
+
+	boolean isCheckPending() {
+		return this.checkPending;
+	}
+
+	void setCheckPending( boolean checkPending ) {
+		this.checkPending = checkPending;
+	}
+
+	long getDrainDeadline() {
+		return this.drainDeadline;
+	}
+
+	void setDrainDeadline( long drainDeadline ) {
+		this.drainDeadline = drainDeadline;
+	}
+
+	@Override
+	public String toString() {
+		return "worker-" + this.slot + " port " + this.port + " pid " + this.process.pid() + " " + this.state.name().toLowerCase() + ", "
+		    + this.activeRequests.get() + " active requests";
+	}
+
+}
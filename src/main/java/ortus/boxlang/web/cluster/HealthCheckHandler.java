@@ -0,0 +1,58 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.cluster;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+
+/**
+ * Answers the health checks of the cluster front process on a worker. The front process answers the same path for
+ * itself, so a health check from outside never reaches a worker.
+ *
+ * The check is answered on the IO thread, so a worker that is busy with slow requests still counts as healthy. It fails
+ * when the process is stuck, out of memory or pausing for longer than the check timeout.
+ */
+public class HealthCheckHandler implements HttpHandler {
+
+	private final String		path;
+	private final HttpHandler	next;
+
+	/**
+	 * Create a health check handler
+	 *
+	 * @param path The path of the health check, like {@code /__health}
+	 * @param next The rest of the handler chain
+	 */
+	public HealthCheckHandler( String path, HttpHandler next ) {
+		this.path	= path;
+		this.next	= next;
+	}
+
+	@Override
+	public void handleRequest( HttpServerExchange exchange ) throws Exception {
+		if ( exchange.getRequestPath().equals( this.path ) ) {
+			exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, "text/plain; charset=utf-8" );
+			exchange.getResponseHeaders().put( Headers.CACHE_CONTROL, "no-store" );
+			exchange.getResponseSender().send( "OK" );
+			return;
+		}
+		this.next.handleRequest( exchange );
+	}
+
+}
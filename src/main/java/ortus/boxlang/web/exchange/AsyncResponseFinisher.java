@@ -0,0 +1,165 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.XnioExecutor;
+import org.xnio.channels.StreamSinkChannel;
+
+import io.undertow.UndertowLogger;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Protocols;
+
+/**
+ * Writes the rest of a response body from the IO thread once the template is done, so the request thread is free as
+ * soon as the template finishes instead of waiting for a slow client to read the response.
+ *
+ * The writes are non-blocking: when the socket is full the finisher waits for the next writable event. Once the body
+ * is written the channel is shut down and flushed and the exchange ends. If the whole transfer takes longer than the
+ * write timeout, the connection (or the HTTP/2 stream) is closed, so slow readers can't hold on to the buffers.
+ */
+public class AsyncResponseFinisher implements ChannelListener<StreamSinkChannel> {
+
+	private final HttpServerExchange		exchange;
+	private final List<PooledByteBuffer>	buffers;
+	private final ByteBuffer[]				data;
+	private final long						writeTimeout;
+	private StreamSinkChannel				channel;
+	private XnioExecutor.Key				timeoutKey;
+	private boolean							written		= false;
+	private boolean							done		= false;
+
+	/**
+	 * Create a finisher for the rest of a response body
+	 *
+	 * @param exchange     The exchange
+	 * @param buffers      The buffers with the rest of the body, ready to be written. They are returned to the pool once
+	 *                     written.
+	 * @param writeTimeout The longest the transfer may take in milliseconds, 0 for no limit
+	 */
+	public AsyncResponseFinisher( HttpServerExchange exchange, List<PooledByteBuffer> buffers, long writeTimeout ) {
+		this.exchange		= exchange;
+		this.buffers		= buffers;
+		this.writeTimeout	= writeTimeout;
+		this.data			= new ByteBuffer[ buffers.size() ];
+		for ( int i = 0; i < data.length; i++ ) {
+			data[ i ] = buffers.get( i ).getBuffer();
+		}
+	}
+
+	/**
+	 * Hand the body off to the IO thread. When called from the request thread while the exchange is being handled,
+	 * Undertow resumes the writes on the IO thread once the handler returns.
+	 *
+	 * @param channel The response channel
+	 */
+	public void start( StreamSinkChannel channel ) {
+		this.channel = channel;
+		if ( writeTimeout > 0 ) {
+			timeoutKey = channel.getIoThread().executeAfter( this::timedOut, writeTimeout, TimeUnit.MILLISECONDS );
+		}
+		channel.getWriteSetter().set( this );
+		channel.resumeWrites();
+	}
+
+	@Override
+	public void handleEvent( StreamSinkChannel channel ) {
+		if ( done ) {
+			return;
+		}
+		try {
+			if ( !written ) {
+				long remaining = 0;
+				for ( ByteBuffer buffer : data ) {
+					remaining += buffer.remaining();
+				}
+				while ( remaining > 0 ) {
+					long count = channel.write( data, 0, data.length );
+					if ( count == 0 ) {
+						// The socket is full, wait until the client reads some more
+						return;
+					}
+					remaining -= count;
+				}
+				written = true;
+				release();
+				channel.shutdownWrites();
+			}
+			if ( !channel.flush() ) {
+				return;
+			}
+			channel.suspendWrites();
+			finish();
+			exchange.endExchange();
+		} catch ( IOException e ) {
+			UndertowLogger.REQUEST_IO_LOGGER.ioException( e );
+			abort( channel );
+		}
+	}
+
+	/**
+	 * The client did not read the response within the write timeout
+	 */
+	private void timedOut() {
+		if ( done ) {
+			return;
+		}
+		timeoutKey = null;
+		UndertowLogger.REQUEST_IO_LOGGER.debugf( "Response to %s was not read within %sms, closing", exchange.getSourceAddress(), writeTimeout );
+		abort( channel );
+	}
+
+	/**
+	 * Give up on the response: close the HTTP/2 stream or the connection and end the exchange
+	 *
+	 * @param channel The response channel
+	 */
+	private void abort( StreamSinkChannel channel ) {
+		finish();
+		if ( exchange.getProtocol().equals( Protocols.HTTP_2_0 ) ) {
+			IoUtils.safeClose( channel );
+		} else {
+			IoUtils.safeClose( exchange.getConnection() );
+		}
+		exchange.endExchange();
+	}
+
+	private void finish() {
+		done = true;
+		if ( timeoutKey != null ) {
+			timeoutKey.remove();
+			timeoutKey = null;
+		}
+		release();
+	}
+
+	private void release() {
+		for ( PooledByteBuffer buffer : buffers ) {
+			buffer.close();
+		}
+		buffers.clear();
+	}
+
+}
@@ -17,83 +17,185 @@
  */
 package ortus.boxlang.web.exchange;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 
+import org.xnio.channels.Channels;
 import org.xnio.channels.StreamSinkChannel;
 
-import io.undertow.predicate.Predicate;
+import io.undertow.connector.PooledByteBuffer;
 import io.undertow.security.api.SecurityContext;
 import io.undertow.security.idm.Account;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RequestTooBigException;
 import io.undertow.server.handlers.Cookie;
 import io.undertow.server.handlers.CookieImpl;
 import io.undertow.server.handlers.form.FormData;
 import io.undertow.server.handlers.form.FormDataParser;
+import io.undertow.server.handlers.form.FormEncodedDataDefinition;
 import io.undertow.server.handlers.form.FormParserFactory;
+import io.undertow.server.handlers.form.MultiPartParserDefinition;
+import io.undertow.util.AttachmentKey;
 import io.undertow.util.HeaderMap;
 import io.undertow.util.Headers;
 import io.undertow.util.HttpString;
 import io.undertow.util.LocaleUtils;
+import io.undertow.util.ParameterLimitException;
 import ortus.boxlang.runtime.scopes.Key;
 import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
 import ortus.boxlang.web.context.WebRequestBoxContext;
+import ortus.boxlang.web.routing.Route;
+import ortus.boxlang.web.timeout.RequestTimeoutException;
 
 /**
  * I implement a BoxLang HTTP exchange for Undertow
  */
 public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 
+	/**
+	 * Form fields larger than this are written to disk while parsing
+	 */
+	public static final long				FIELD_SIZE_THRESHOLD		= 16 * 1024;
+
+	/**
+	 * Responses up to this size are held and sent with a Content-Length, unless configured otherwise
+	 */
+	public static final int					DEFAULT_RESPONSE_BUFFER_SIZE	= 64 * 1024;
+
+	/**
+	 * The parser factory used when none is configured
+	 */
+	public static final FormParserFactory	DEFAULT_FORM_PARSER_FACTORY	= createFormParserFactory( null, -1 );
+
+	/**
+	 * Set on the Undertow exchange when the template looked up the session, so its response is never shared
+	 */
+	public static final AttachmentKey<Boolean>	SESSION_READ				= AttachmentKey.create( Boolean.class );
+
+	/**
+	 * The cookies BoxLang tracks sessions with, lower case. A template that looks one up uses the session scope.
+	 */
+	private static final Set<String>		SESSION_COOKIES				= Set.of( "jsessionid", "cfid", "cftoken" );
+
 	/**
 	 * Request attributes
 	 */
-	private Map<String, Object>		attributes	= new HashMap<String, Object>();
+	private Map<String, Object>				attributes					= new HashMap<String, Object>();
 
 	/**
 	 * Undertow response channel
 	 */
-	protected StreamSinkChannel		channel		= null;
+	protected StreamSinkChannel				channel						= null;
+
+	/**
+	 * PrintWriter for the response that wraps the body writer
+	 */
+	PrintWriter								writer;
+
+	/**
+	 * Encodes the response output into pooled buffers, null until the writer is first needed
+	 */
+	private ResponseBodyWriter				bodyWriter;
+
+	/**
+	 * The largest response body in bytes that is held to be sent with a Content-Length
+	 */
+	private int								responseBufferSize			= DEFAULT_RESPONSE_BUFFER_SIZE;
 
 	/**
-	 * PrintWriter for the response that wraps the channel
+	 * Whether the template flushed the response output
 	 */
-	PrintWriter						writer;
+	private boolean							responseFlushed				= false;
 
 	/**
 	 * The Undertow exchange for this request
 	 */
-	protected HttpServerExchange	exchange;
+	protected HttpServerExchange			exchange;
 
 	/**
 	 * The BoxLang context for this request
 	 */
-	protected WebRequestBoxContext	context;
+	protected WebRequestBoxContext			context;
 
 	/**
 	 * The list of file uploads
 	 */
-	List<FileUpload>				fileUploads	= new ArrayList<FileUpload>();
+	List<FileUpload>						fileUploads					= new ArrayList<FileUpload>();
+
+	/**
+	 * The parser factory for form and multipart bodies
+	 */
+	private FormParserFactory				formParserFactory;
+
+	/**
+	 * The parsed form, null until the form scope is first needed
+	 */
+	private Map<String, String[]>			formMap;
+
+	/**
+	 * How long parsing the form took, in nanoseconds
+	 */
+	private long							formParseTime;
+
+	/**
+	 * Whether the request body was over one of the upload limits
+	 */
+	private boolean							requestLimitExceeded		= false;
+
+	/**
+	 * Read-only view of the request headers, created on first use
+	 */
+	private HeaderMapView					requestHeaderMap;
+
+	/**
+	 * Read-only view of the response headers, created on first use
+	 */
+	private HeaderMapView					responseHeaderMap;
+
+	/**
+	 * Read-only view of the query parameters, created on first use
+	 */
+	private ParameterMapView				requestURLMap;
+
+	/**
+	 * The request cookies, null until they are first needed
+	 */
+	private BoxCookie[]						requestCookies;
+
+	/**
+	 * The request cookies by lower case name, for single cookie lookups
+	 */
+	private Map<String, BoxCookie>			requestCookieIndex;
+
+	/**
+	 * Guards the response channel and the response changes made by the template against a timeout taking the response
+	 * away. Never held while blocking, since the IO thread takes it.
+	 */
+	private final Object					responseLock				= new Object();
+
+	/**
+	 * Set when the request timed out, from then on the template can't change or write the response
+	 */
+	private boolean							cancelled					= false;
 
 	/**
 	 * Create a new BoxLang HTTP exchange for Undertow
@@ -101,7 +203,54 @@ public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 	 * @param exchange The Undertow exchange for this request
 	 */
 	public BoxHTTPUndertowExchange( HttpServerExchange exchange ) {
-		this.exchange = exchange;
+		this( exchange, DEFAULT_FORM_PARSER_FACTORY );
+	}
+
+	/**
+	 * Create a new BoxLang HTTP exchange for Undertow
+	 * 
+	 * @param exchange          The Undertow exchange for this request
+	 * @param formParserFactory The shared parser factory for form and multipart bodies
+	 */
+	public BoxHTTPUndertowExchange( HttpServerExchange exchange, FormParserFactory formParserFactory ) {
+		this.exchange			= exchange;
+		this.formParserFactory	= formParserFactory;
+	}
+
+	/**
+	 * Set the largest response body that is held and sent with a Content-Length, larger bodies are streamed
+	 *
+	 * @param responseBufferSize The size in bytes, 0 to stream from the first flush
+	 *
+	 * @return This exchange
+	 */
+	public BoxHTTPUndertowExchange setResponseBufferSize( int responseBufferSize ) {
+		this.responseBufferSize = responseBufferSize;
+		return this;
+	}
+
+	/**
+	 * Create the parser factory for form and multipart bodies. It is thread safe and meant to be shared by all requests.
+	 *
+	 * Form fields stay in memory unless they are over {@link #FIELD_SIZE_THRESHOLD}, uploaded files are always streamed
+	 * to a temporary file since BoxLang works with upload paths. The temporary files are deleted when the request ends,
+	 * unless the template moved them away.
+	 *
+	 * @param uploadDirectory The directory for temporary upload files, or null for the system temp directory
+	 * @param maxFileSize     The maximum size of a single uploaded file in bytes, 0 or less for no limit
+	 *
+	 * @return The parser factory
+	 */
+	public static FormParserFactory createFormParserFactory( Path uploadDirectory, long maxFileSize ) {
+		MultiPartParserDefinition multipart = uploadDirectory == null ? new MultiPartParserDefinition() : new MultiPartParserDefinition( uploadDirectory );
+		multipart.setFileSizeThreshold( 0 );
+		multipart.setFieldSizeThreshold( FIELD_SIZE_THRESHOLD );
+		if ( maxFileSize > 0 ) {
+			multipart.setMaxIndividualFileSize( maxFileSize );
+		}
+		return FormParserFactory.builder( false )
+		    .addParsers( new FormEncodedDataDefinition(), multipart )
+		    .build();
 	}
 
 	/**
@@ -109,11 +258,37 @@ public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 	 * 
 	 * @return The response channel
 	 */
-	public synchronized StreamSinkChannel getResponseChannel() {
-		if ( channel == null ) {
-			channel = exchange.getResponseChannel();
+	public StreamSinkChannel getResponseChannel() {
+		synchronized ( responseLock ) {
+			ensureNotCancelled();
+			if ( channel == null ) {
+				channel = exchange.getResponseChannel();
+			}
+			return channel;
+		}
+	}
+
+	/**
+	 * Take the response away from the template because its request timed out. Its next attempt to change or write the
+	 * response fails with a {@link RequestTimeoutException}.
+	 *
+	 * @return True if nothing was sent yet and the caller can send its own response instead
+	 */
+	public boolean cancelResponse() {
+		synchronized ( responseLock ) {
+			cancelled = true;
+			return exchange.isResponseChannelAvailable() && !exchange.isResponseStarted();
+		}
+	}
+
+	/**
+	 * Fail if the request timed out, so the template stops changing a response it doesn't own anymore. Called with the
+	 * response lock held.
+	 */
+	private void ensureNotCancelled() {
+		if ( cancelled ) {
+			throw new RequestTimeoutException();
 		}
-		return channel;
 	}
 
 	/**
@@ -145,38 +320,114 @@ public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 
 	@Override
 	public void addResponseCookie( BoxCookie cookie ) {
-		if ( !isResponseStarted() ) {
-			Cookie c = new CookieImpl( cookie.getName(), cookie.getValue() );
-			if ( cookie.getDomain() != null )
-				c.setDomain( cookie.getDomain() );
-			if ( cookie.getPath() != null )
-				c.setPath( cookie.getPath() );
-			c.setSecure( cookie.isSecure() );
-			c.setHttpOnly( cookie.isHttpOnly() );
-			if ( cookie.getMaxAge() != null )
-				c.setMaxAge( cookie.getMaxAge() );
-			c.setSameSite( cookie.isSameSite() );
-			if ( cookie.getExpires() != null )
-				c.setExpires( cookie.getExpires() );
-			if ( cookie.getSameSiteMode() != null )
-				c.setSameSiteMode( cookie.getSameSiteMode() );
-			exchange.setResponseCookie( c );
+		synchronized ( responseLock ) {
+			ensureNotCancelled();
+			if ( !isResponseStarted() ) {
+				Cookie c = new CookieImpl( cookie.getName(), cookie.getValue() );
+				if ( cookie.getDomain() != null )
+					c.setDomain( cookie.getDomain() );
+				if ( cookie.getPath() != null )
+					c.setPath( cookie.getPath() );
+				c.setSecure( cookie.isSecure() );
+				c.setHttpOnly( cookie.isHttpOnly() );
+				if ( cookie.getMaxAge() != null )
+					c.setMaxAge( cookie.getMaxAge() );
+				c.setSameSite( cookie.isSameSite() );
+				if ( cookie.getExpires() != null )
+					c.setExpires( cookie.getExpires() );
+				if ( cookie.getSameSiteMode() != null )
+					c.setSameSiteMode( cookie.getSameSiteMode() );
+				exchange.setResponseCookie( c );
+			}
 		}
 	}
 
 	@Override
 	public void addResponseHeader( String name, String value ) {
-		exchange.getResponseHeaders().put( new HttpString( name ), value );
+		synchronized ( responseLock ) {
+			ensureNotCancelled();
+			exchange.getResponseHeaders().put( new HttpString( name ), value );
+		}
 	}
 
 	@Override
 	public void flushResponseBuffer() {
-		try {
+		// The template asked for the output to go out now, so the body is streamed from here on even if it is still
+		// under the response buffer size
+		responseFlushed = true;
+		if ( bodyWriter != null ) {
+			try {
+				writer.flush();
+				bodyWriter.flushToClient();
+			} catch ( IOException e ) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Whether the template flushed the response output, after which the body can't be replaced anymore
+	 *
+	 * @return True if the response buffer was flushed
+	 */
+	public boolean isResponseFlushed() {
+		return responseFlushed;
+	}
+
+	/**
+	 * Send the rest of the response output written through the response writer. Called once the request is done.
+	 */
+	public void finishResponseBody() {
+		if ( bodyWriter != null ) {
 			writer.flush();
-			getResponseChannel().flush();
-		} catch ( IOException e ) {
-			e.printStackTrace();
+			try {
+				bodyWriter.close();
+			} catch ( IOException e ) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * The whole response body written through the response writer, if it is still held. Nothing else can be written to
+	 * the response once it has been looked at.
+	 *
+	 * @return Read-only views of the body, in order, or null if part of the body was already sent, because it was over
+	 *         the response buffer size or flushed, or the response was written some other way
+	 *
+	 * @throws IOException If the client connection fails
+	 */
+	public List<ByteBuffer> getHeldResponseBody() throws IOException {
+		if ( bodyWriter == null || !exchange.isResponseChannelAvailable() ) {
+			return null;
+		}
+		writer.flush();
+		return bodyWriter.getHeldBody();
+	}
+
+	/**
+	 * Drop the response body written through the response writer without sending it
+	 */
+	public void discardResponseBody() {
+		if ( bodyWriter != null ) {
+			bodyWriter.discard();
+		}
+	}
+
+	/**
+	 * Take over the rest of the response output written through the response writer, so it can be sent without
+	 * blocking the request thread. A body that was held gets its Content-Length set.
+	 *
+	 * @return The buffers with the rest of the body, ready to be written. The caller must return them to the pool.
+	 *
+	 * @throws IOException If sending the part of the body that was over the response buffer size fails
+	 */
+	public List<PooledByteBuffer> detachResponseBody() throws IOException {
+		if ( bodyWriter == null ) {
+			return new ArrayList<>();
 		}
+		writer.flush();
+		return bodyWriter.detach();
 	}
 
 	@Override
@@ -226,14 +477,29 @@ public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 
 	@Override
 	public BoxCookie[] getRequestCookies() {
-		Iterable<Cookie>	cookiesIterable	= exchange.requestCookies();
-		List<Cookie>		cookies			= new ArrayList<>();
-		cookiesIterable.forEach( cookies::add );
-
-		BoxCookie[] boxCookies = new BoxCookie[ cookies.size() ];
-		for ( int i = 0; i < cookies.size(); i++ ) {
-			Cookie	cookie	= cookies.get( i );
-			var		c		= new BoxCookie( cookie.getName(), cookie.getValue() );
+		BoxCookie[] cookies = indexRequestCookies();
+		for ( BoxCookie cookie : cookies ) {
+			if ( SESSION_COOKIES.contains( cookie.getName().toLowerCase( Locale.ROOT ) ) ) {
+				exchange.putAttachment( SESSION_READ, true );
+				break;
+			}
+		}
+		return cookies.clone();
+	}
+
+	/**
+	 * Convert the request cookies and index them by name, once per exchange
+	 *
+	 * @return The request cookies
+	 */
+	private synchronized BoxCookie[] indexRequestCookies() {
+		if ( requestCookies != null ) {
+			return requestCookies;
+		}
+		List<BoxCookie>			cookies	= new ArrayList<>();
+		Map<String, BoxCookie>	index	= new HashMap<>();
+		for ( Cookie cookie : exchange.requestCookies() ) {
+			var c = new BoxCookie( cookie.getName(), cookie.getValue() );
 			if ( cookie.getDomain() != null )
 				c.setDomain( cookie.getDomain() );
 			if ( cookie.getPath() != null )
@@ -247,18 +513,22 @@ public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 				c.setExpires( cookie.getExpires() );
 			if ( cookie.getSameSiteMode() != null )
 				c.setSameSiteMode( cookie.getSameSiteMode() );
-			boxCookies[ i ] = c;
+			cookies.add( c );
+			// Cookie names are matched case insensitively, the first cookie with a name wins
+			index.putIfAbsent( cookie.getName().toLowerCase( Locale.ROOT ), c );
 		}
-		return boxCookies;
+		requestCookieIndex	= index;
+		requestCookies		= cookies.toArray( new BoxCookie[ 0 ] );
+		return requestCookies;
 	}
 
 	@Override
-	public Map<String, String[]> getRequestHeaderMap() {
-		Map<String, String[]> headers = new HashMap<>();
-		exchange.getRequestHeaders().forEach( ( headerValues ) -> {
-			headers.put( headerValues.getHeaderName().toString(), headerValues.toArray( new String[ 0 ] ) );
-		} );
-		return headers;
+	public synchronized Map<String, String[]> getRequestHeaderMap() {
+		// The request headers are fixed once the request is parsed, so the view can memoize its copy
+		if ( requestHeaderMap == null ) {
+			requestHeaderMap = new HeaderMapView( exchange.getRequestHeaders(), true );
+		}
+		return requestHeaderMap;
 	}
 
 	@Override
@@ -317,78 +587,114 @@ public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 	}
 
 	@Override
-	public Map<String, String[]> getRequestURLMap() {
-		Map<String, Deque<String>>	queryParameters			= exchange.getQueryParameters();
-		Map<String, String[]>		queryParametersArray	= new HashMap<>();
-		for ( Map.Entry<String, Deque<String>> entry : queryParameters.entrySet() ) {
-			String			key			= entry.getKey();
-			Deque<String>	valueDeque	= entry.getValue();
-			String[]		valueArray	= valueDeque.toArray( new String[ 0 ] );
-			queryParametersArray.put( key, valueArray );
+	public synchronized Map<String, String[]> getRequestURLMap() {
+		if ( requestURLMap == null ) {
+			requestURLMap = new ParameterMapView( exchange.getQueryParameters() );
 		}
-		return queryParametersArray;
+		return requestURLMap;
 	}
 
 	@Override
-	public Map<String, String[]> getRequestFormMap() {
-		// Store all files on disk
-		System.setProperty( "io.undertow.multipart.minsize", "0" );
-		FormParserFactory		parserFactory	= FormParserFactory.builder().build();
-		FormDataParser			parser			= parserFactory.createParser( exchange );
-
-		FormData				formData;
-		Map<String, String[]>	formMap			= new HashMap<>();
+	public synchronized Map<String, String[]> getRequestFormMap() {
+		// The body is only parsed once, the first time the form scope is needed
+		if ( formMap != null ) {
+			return formMap;
+		}
+		FormDataParser parser = formParserFactory.createParser( exchange );
 
 		// If there is no parser for the request content type, this will be null
-		if ( parser != null ) {
+		if ( parser == null ) {
+			formMap = Collections.emptyMap();
+			return formMap;
+		}
 
-			try {
-				formData = parser.parseBlocking();
-			} catch ( IOException e ) {
-				throw new BoxRuntimeException( "Could not parse form data", e );
+		FormData	formData;
+		long		start	= System.nanoTime();
+		try {
+			formData = parser.parseBlocking();
+		} catch ( IOException | RuntimeException e ) {
+			if ( isLimitExceeded( e ) ) {
+				// The runtime's error handling may replace the response, the handler answers with the 413 afterwards
+				requestLimitExceeded = true;
+				throw new RequestLimitExceededException( e );
 			}
-			for ( String key : formData ) {
-				formMap.put(
-				    key,
-				    formData.get( key )
-				        .stream()
-				        .map( f -> {
-					        if ( f.isFileItem() ) {
-						        Path file = f.getFileItem().getFile();
-						        if ( file != null ) {
-							        fileUploads.add( new FileUpload( Key.of( key ), file, f.getFileName() ) );
-							        return file.toString();
-						        } else {
-							        return f.getValue();
-						        }
+			throw new BoxRuntimeException( "Could not parse form data", e );
+		} finally {
+			formParseTime = System.nanoTime() - start;
+		}
+
+		formMap = new HashMap<>();
+		for ( String key : formData ) {
+			formMap.put(
+			    key,
+			    formData.get( key )
+			        .stream()
+			        .map( f -> {
+				        if ( f.isFileItem() ) {
+					        Path file = f.getFileItem().getFile();
+					        if ( file != null ) {
+						        fileUploads.add( new FileUpload( Key.of( key ), file, f.getFileName() ) );
+						        return file.toString();
 					        } else {
 						        return f.getValue();
 					        }
-				        } )
-				        .toArray( String[]::new ) );
-			}
-			return formMap;
-		} else {
-			return Collections.emptyMap();
+				        } else {
+					        return f.getValue();
+				        }
+			        } )
+			        .toArray( String[]::new ) );
 		}
+		return formMap;
+	}
 
+	/**
+	 * How long parsing the form body took
+	 *
+	 * @return The time in nanoseconds, 0 if the form was not parsed
+	 */
+	public synchronized long getFormParseTime() {
+		return formParseTime;
+	}
+
+	/**
+	 * Whether the request body was over one of the upload limits, in which case the request must get a 413
+	 *
+	 * @return True if parsing the form hit a limit
+	 */
+	public synchronized boolean isRequestLimitExceeded() {
+		return requestLimitExceeded;
+	}
+
+	/**
+	 * Whether a form parsing failure was caused by one of the upload limits
+	 *
+	 * @param e The failure
+	 *
+	 * @return True if the body, a file or the number of fields was over its limit
+	 */
+	private static boolean isLimitExceeded( Throwable e ) {
+		for ( Throwable cause = e; cause != null; cause = cause.getCause() ) {
+			if ( cause instanceof RequestTooBigException
+			    || cause instanceof MultiPartParserDefinition.FileTooLargeException
+			    || cause instanceof ParameterLimitException ) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	@Override
 	public FileUpload[] getUploadData() {
+		// Uploads are collected while parsing the form
+		getRequestFormMap();
 		return fileUploads.toArray( new FileUpload[ 0 ] );
 	}
 
 	@Override
 	public String getRequestPathInfo() {
-		// In the mini server, we set this predicate context value in the BLHandler
-		// prior to the request
-		Map<String, Object> predicateContext = exchange.getAttachment( Predicate.PREDICATE_CONTEXT );
-		if ( predicateContext.containsKey( "pathInfo" ) ) {
-			return ( String ) predicateContext.get( "pathInfo" );
-		} else {
-			return "";
-		}
+		// In the mini server, the route resolved for the request carries the path info
+		Route route = exchange.getAttachment( Route.ATTACHMENT_KEY );
+		return route != null ? route.pathInfo() : "";
 	}
 
 	@Override
@@ -505,12 +811,12 @@ public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 	}
 
 	@Override
-	public Map<String, String[]> getResponseHeaderMap() {
-		Map<String, String[]> headers = new HashMap<>();
-		exchange.getResponseHeaders().forEach( ( headerValues ) -> {
-			headers.put( headerValues.getHeaderName().toString(), headerValues.toArray( new String[ 0 ] ) );
-		} );
-		return headers;
+	public synchronized Map<String, String[]> getResponseHeaderMap() {
+		// Response headers keep changing until the response starts, so this view is always live
+		if ( responseHeaderMap == null ) {
+			responseHeaderMap = new HeaderMapView( exchange.getResponseHeaders(), false );
+		}
+		return responseHeaderMap;
 	}
 
 	@Override
@@ -521,17 +827,41 @@ public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 	@Override
 	public PrintWriter getResponseWriter() {
 		if ( writer == null ) {
-			OutputStream outputStream = new BufferedOutputStream( Channels.newOutputStream( getResponseChannel() ) );
-			writer = new PrintWriter( outputStream, false );
+			// The body writer encodes straight into pooled buffers and uses the XNIO blocking writes, which wait for
+			// the channel to become writable, so it is safe to use from both platform and virtual request threads
+			bodyWriter	= new ResponseBodyWriter( this, getResponseCharset().newEncoder(), responseBufferSize );
+			writer		= new PrintWriter( bodyWriter, false );
 		}
 		return writer;
 	}
 
+	/**
+	 * The character set of the response output: the charset of the Content-Type the template set, or UTF-8
+	 *
+	 * @return The response character set
+	 */
+	private Charset getResponseCharset() {
+		String contentType = exchange.getResponseHeaders().getFirst( Headers.CONTENT_TYPE );
+		if ( contentType != null ) {
+			String charset = Headers.extractQuotedValueFromHeader( contentType, "charset" );
+			if ( charset != null ) {
+				try {
+					return Charset.forName( charset );
+				} catch ( IllegalArgumentException e ) {
+					// Unknown or illegal charset name, fall back to the default
+				}
+			}
+		}
+		return StandardCharsets.UTF_8;
+	}
+
 	@Override
 	public void sendResponseBinary( byte[] data ) {
 		ByteBuffer bBuffer = ByteBuffer.wrap( data );
 		try {
-			getResponseChannel().write( bBuffer );
+			flushToChannel();
+			// Loops over partial writes, waiting for the channel to become writable
+			Channels.writeBlocking( getResponseChannel(), bBuffer );
 		} catch ( IOException e ) {
 			e.printStackTrace();
 		}
@@ -539,16 +869,31 @@ public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 
 	@Override
 	public void sendResponseFile( File file ) {
+		synchronized ( responseLock ) {
+			ensureNotCancelled();
+		}
+		// Conditional and range requests are only honored when the file is the whole response
+		boolean negotiate = exchange.isResponseChannelAvailable() && ( bodyWriter == null || bodyWriter.isEmpty() );
 		try ( FileInputStream fis = new FileInputStream( file ) ) {
+			flushToChannel();
 			// This method doesn't buffer entire file in heap.
 			// On supported kernels, it may even use sendfile directly
-			FileChannel fileChannel = fis.getChannel();
-			getResponseChannel().transferFrom( fileChannel, 0, fileChannel.size() );
+			new FileSender( this ).send( fis.getChannel(), file.lastModified(), negotiate );
 		} catch ( IOException e ) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Send the output already written through the response writer, before writing to the channel directly
+	 */
+	private void flushToChannel() throws IOException {
+		if ( bodyWriter != null ) {
+			writer.flush();
+			bodyWriter.flushToChannel();
+		}
+	}
+
 	@Override
 	public boolean isRequestSecure() {
 		return exchange.isSecure();
@@ -571,35 +916,44 @@ public class BoxHTTPUndertowExchange implements IBoxHTTPExchange {
 
 	@Override
 	public void setResponseHeader( String name, String value ) {
-		if ( !isResponseStarted() ) {
-			exchange.getResponseHeaders().put( new HttpString( name ), value );
+		synchronized ( responseLock ) {
+			ensureNotCancelled();
+			if ( !isResponseStarted() ) {
+				exchange.getResponseHeaders().put( new HttpString( name ), value );
+			}
 		}
 	}
 
 	@Override
 	public void setResponseStatus( int sc ) {
-		if ( !isResponseStarted() ) {
-			exchange.setStatusCode( sc );
+		synchronized ( responseLock ) {
+			ensureNotCancelled();
+			if ( !isResponseStarted() ) {
+				exchange.setStatusCode( sc );
+			}
 		}
 	}
 
 	@Override
 	public void setResponseStatus( int sc, String sm ) {
-		if ( !isResponseStarted() ) {
-			exchange.setStatusCode( sc );
-			exchange.setReasonPhrase( sm );
+		synchronized ( responseLock ) {
+			ensureNotCancelled();
+			if ( !isResponseStarted() ) {
+				exchange.setStatusCode( sc );
+				exchange.setReasonPhrase( sm );
+			}
 		}
 	}
 
 	@Override
-	public BoxCookie getRequestCookie( String name ) {
-		var cookies = getRequestCookies();
-		for ( BoxCookie cookie : cookies ) {
-			if ( cookie.getName().equalsIgnoreCase( name ) ) {
-				return cookie;
-			}
+	public synchronized BoxCookie getRequestCookie( String name ) {
+		indexRequestCookies();
+		String lowerName = name.toLowerCase( Locale.ROOT );
+		// Asked for even when there is no session yet, a new one can be tracked without a Set-Cookie
+		if ( SESSION_COOKIES.contains( lowerName ) ) {
+			exchange.putAttachment( SESSION_READ, true );
 		}
-		return null;
+		return requestCookieIndex.get( lowerName );
 	}
 
 	@Override
@@ -0,0 +1,320 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.xnio.IoUtils;
+import org.xnio.channels.Channels;
+import org.xnio.channels.StreamSinkChannel;
+
+import io.undertow.UndertowLogger;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.ByteRange;
+import io.undertow.util.DateUtils;
+import io.undertow.util.ETag;
+import io.undertow.util.ETagUtils;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.Protocols;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Sends a file as the response body of a BoxLang request, with conditional and range request support, so downloads
+ * served through a template can be cached and resumed.
+ *
+ * The file gets an {@code ETag} and a {@code Last-Modified} header unless the template set its own. A matching
+ * {@code If-None-Match} or {@code If-Modified-Since} is answered with a 304, a failed {@code If-Match} or
+ * {@code If-Unmodified-Since} with a 412. A {@code Range} request, when {@code If-Range} still matches, gets a 206 with
+ * a single range or a {@code multipart/byteranges} body, and a 416 when no range is satisfiable. All the file content
+ * is sent with zero-copy channel transfers.
+ *
+ * Conditional and range handling only applies to GET and HEAD requests answered with a 200 by a template that didn't
+ * write any other output. Otherwise the whole file is appended to the response as is. A negotiated response is marked
+ * with {@link #NEGOTIATED} so it is never compressed: its {@code Content-Range}, {@code Content-Length} and strong
+ * {@code ETag} all describe the file bytes as they are.
+ */
+public class FileSender {
+
+	/**
+	 * Requests with more ranges than this get the whole file, so a request can't make us seek all over a file
+	 */
+	public static final int							MAX_RANGES	= 16;
+
+	/**
+	 * Set on responses that honored the conditional and range headers, the content encoding predicate skips them
+	 */
+	public static final AttachmentKey<Boolean>	NEGOTIATED	= AttachmentKey.create( Boolean.class );
+
+	private final BoxHTTPUndertowExchange			owner;
+	private final HttpServerExchange				exchange;
+
+	/**
+	 * Create a sender for the response of an exchange
+	 *
+	 * @param owner The exchange
+	 */
+	public FileSender( BoxHTTPUndertowExchange owner ) {
+		this.owner		= owner;
+		this.exchange	= owner.getExchange();
+	}
+
+	/**
+	 * Send a file, or the part of it the request asked for
+	 *
+	 * @param file         The open file
+	 * @param lastModified The last modified time of the file in milliseconds
+	 * @param negotiate    Whether the conditional and range headers of the request can be honored
+	 *
+	 * @throws IOException If the client connection fails before anything was sent
+	 */
+	public void send( FileChannel file, long lastModified, boolean negotiate ) throws IOException {
+		long length = file.size();
+		if ( !negotiate
+		    || exchange.getStatusCode() != StatusCodes.OK
+		    || !( exchange.getRequestMethod().equals( Methods.GET ) || exchange.getRequestMethod().equals( Methods.HEAD ) ) ) {
+			transfer( file, 0, length );
+			return;
+		}
+		exchange.putAttachment( NEGOTIATED, true );
+
+		// Validators, HTTP dates only have a precision of one second
+		Date	modified	= new Date( lastModified / 1000 * 1000 );
+		ETag	etag		= ETagUtils.getETag( exchange );
+		if ( etag == null ) {
+			etag = new ETag( false, Long.toHexString( lastModified ) + "-" + Long.toHexString( length ) );
+			exchange.getResponseHeaders().put( Headers.ETAG, etag.toString() );
+		}
+		if ( !exchange.getResponseHeaders().contains( Headers.LAST_MODIFIED ) ) {
+			exchange.getResponseHeaders().put( Headers.LAST_MODIFIED, DateUtils.toDateString( modified ) );
+		}
+		exchange.getResponseHeaders().put( Headers.ACCEPT_RANGES, "bytes" );
+
+		// Preconditions
+		if ( !ETagUtils.handleIfMatch( exchange, etag, false ) || !DateUtils.handleIfUnmodifiedSince( exchange, modified ) ) {
+			sendEmpty( StatusCodes.PRECONDITION_FAILED );
+			return;
+		}
+		// If-Modified-Since is only considered when there is no If-None-Match
+		boolean notModified = exchange.getRequestHeaders().contains( Headers.IF_NONE_MATCH )
+		    ? !ETagUtils.handleIfNoneMatch( exchange, etag, true )
+		    : !DateUtils.handleIfModifiedSince( exchange, modified );
+		if ( notModified ) {
+			sendEmpty( StatusCodes.NOT_MODIFIED );
+			return;
+		}
+
+		// Ranges
+		List<long[]> ranges = resolveRanges( length, etag, modified );
+		if ( ranges == null ) {
+			exchange.setResponseContentLength( length );
+			sendBody( file, List.of( new long[] { 0, length - 1 } ), null, null );
+		} else if ( ranges.isEmpty() ) {
+			exchange.getResponseHeaders().put( Headers.CONTENT_RANGE, "bytes */" + length );
+			sendEmpty( StatusCodes.REQUEST_RANGE_NOT_SATISFIABLE );
+		} else if ( ranges.size() == 1 ) {
+			long[] range = ranges.get( 0 );
+			exchange.setStatusCode( StatusCodes.PARTIAL_CONTENT );
+			exchange.getResponseHeaders().put( Headers.CONTENT_RANGE, contentRange( range, length ) );
+			exchange.setResponseContentLength( range[ 1 ] - range[ 0 ] + 1 );
+			sendBody( file, ranges, null, null );
+		} else {
+			sendMultipart( file, ranges, length );
+		}
+	}
+
+	/**
+	 * The satisfiable ranges of the request, as inclusive {@code [start, end]} pairs
+	 *
+	 * @param length   The file length
+	 * @param etag     The file entity tag
+	 * @param modified The file modification date
+	 *
+	 * @return The ranges, empty if none is satisfiable, or null if the whole file must be sent
+	 */
+	private List<long[]> resolveRanges( long length, ETag etag, Date modified ) {
+		String header = exchange.getRequestHeaders().getFirst( Headers.RANGE );
+		if ( header == null || !ifRangeMatches( etag, modified ) ) {
+			return null;
+		}
+		return resolveRanges( header, length );
+	}
+
+	/**
+	 * The satisfiable ranges of a {@code Range} header, as inclusive {@code [start, end]} pairs in the order they were
+	 * asked for. Ranges past the end of the file are dropped and ranges that run past it are cut short.
+	 *
+	 * @param header The {@code Range} header
+	 * @param length The file length
+	 *
+	 * @return The ranges, empty if none is satisfiable, or null if the header is invalid or has more than
+	 *         {@link #MAX_RANGES} ranges and the whole file must be sent
+	 */
+	static List<long[]> resolveRanges( String header, long length ) {
+		ByteRange range = ByteRange.parse( header );
+		if ( range == null || range.getRanges() > MAX_RANGES ) {
+			return null;
+		}
+		List<long[]> ranges = new ArrayList<>( range.getRanges() );
+		for ( int i = 0; i < range.getRanges(); i++ ) {
+			long	start	= range.getStart( i );
+			long	end		= range.getEnd( i );
+			if ( start == -1 ) {
+				// A suffix range: the last end bytes
+				if ( end == 0 ) {
+					continue;
+				}
+				start	= Math.max( 0, length - end );
+				end		= length - 1;
+			} else if ( end == -1 || end >= length ) {
+				end = length - 1;
+			}
+			if ( start < length && start <= end ) {
+				ranges.add( new long[] { start, end } );
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * Whether the {@code If-Range} header, if any, still matches the file, so the range can be sent
+	 */
+	private boolean ifRangeMatches( ETag etag, Date modified ) {
+		String ifRange = exchange.getRequestHeaders().getFirst( Headers.IF_RANGE );
+		if ( ifRange == null ) {
+			return true;
+		}
+		if ( ifRange.startsWith( "\"" ) || ifRange.startsWith( "W/" ) ) {
+			// Weak tags never match for ranges
+			return !etag.isWeak() && ifRange.equals( etag.toString() );
+		}
+		Date date = DateUtils.parseDate( ifRange );
+		return date != null && !modified.after( date );
+	}
+
+	/**
+	 * Send several ranges as a {@code multipart/byteranges} body
+	 */
+	private void sendMultipart( FileChannel file, List<long[]> ranges, long length ) throws IOException {
+		String			boundary	= Long.toHexString( ThreadLocalRandom.current().nextLong() ) + Long.toHexString( System.nanoTime() );
+		String			contentType	= exchange.getResponseHeaders().getFirst( Headers.CONTENT_TYPE );
+		List<byte[]>	headers		= new ArrayList<>( ranges.size() );
+		long			total		= 0;
+		for ( long[] range : ranges ) {
+			StringBuilder part = new StringBuilder( "\r\n--" ).append( boundary ).append( "\r\n" );
+			if ( contentType != null ) {
+				part.append( "Content-Type: " ).append( contentType ).append( "\r\n" );
+			}
+			part.append( "Content-Range: " ).append( contentRange( range, length ) ).append( "\r\n\r\n" );
+			byte[] bytes = part.toString().getBytes( StandardCharsets.ISO_8859_1 );
+			headers.add( bytes );
+			total += bytes.length + range[ 1 ] - range[ 0 ] + 1;
+		}
+		byte[] end = ( "\r\n--" + boundary + "--\r\n" ).getBytes( StandardCharsets.ISO_8859_1 );
+		total += end.length;
+
+		exchange.setStatusCode( StatusCodes.PARTIAL_CONTENT );
+		exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary );
+		exchange.setResponseContentLength( total );
+		sendBody( file, ranges, headers, end );
+	}
+
+	/**
+	 * Send the ranges of the file, each one after its part header if any. Once the headers are out, a failure leaves
+	 * the response incomplete, so the connection (or the HTTP/2 stream) is closed instead of being reused.
+	 */
+	private void sendBody( FileChannel file, List<long[]> ranges, List<byte[]> partHeaders, byte[] end ) throws IOException {
+		if ( exchange.getRequestMethod().equals( Methods.HEAD ) ) {
+			return;
+		}
+		StreamSinkChannel channel = owner.getResponseChannel();
+		try {
+			for ( int i = 0; i < ranges.size(); i++ ) {
+				if ( partHeaders != null ) {
+					Channels.writeBlocking( channel, ByteBuffer.wrap( partHeaders.get( i ) ) );
+				}
+				long[] range = ranges.get( i );
+				transfer( channel, file, range[ 0 ], range[ 1 ] - range[ 0 ] + 1 );
+			}
+			if ( end != null ) {
+				Channels.writeBlocking( channel, ByteBuffer.wrap( end ) );
+			}
+		} catch ( IOException e ) {
+			UndertowLogger.REQUEST_IO_LOGGER.ioException( e );
+			if ( exchange.getProtocol().equals( Protocols.HTTP_2_0 ) ) {
+				IoUtils.safeClose( channel );
+			} else {
+				IoUtils.safeClose( exchange.getConnection() );
+			}
+		}
+	}
+
+	/**
+	 * Append part of the file to the response without any headers of our own
+	 */
+	private void transfer( FileChannel file, long position, long count ) throws IOException {
+		transfer( owner.getResponseChannel(), file, position, count );
+	}
+
+	/**
+	 * Transfer part of the file to the channel, waiting for the channel to become writable. Unlike
+	 * {@link Channels#transferBlocking}, a file that gets shorter during the transfer is an error instead of an endless
+	 * wait.
+	 */
+	private static void transfer( StreamSinkChannel channel, FileChannel file, long position, long count ) throws IOException {
+		while ( count > 0 ) {
+			// Some conduits read from the current file position instead of the given one, so keep them in sync
+			file.position( position );
+			long transferred = channel.transferFrom( file, position, count );
+			if ( transferred > 0 ) {
+				position	+= transferred;
+				count		-= transferred;
+			} else if ( position >= file.size() ) {
+				throw new EOFException( "The file was truncated while it was being sent" );
+			} else {
+				channel.awaitWritable();
+			}
+		}
+	}
+
+	/**
+	 * Answer with a status and no body
+	 */
+	private void sendEmpty( int status ) {
+		exchange.setStatusCode( status );
+		exchange.getResponseHeaders().remove( Headers.CONTENT_TYPE );
+		// A 304 never has a body, its headers describe the file the client already has
+		if ( status != StatusCodes.NOT_MODIFIED ) {
+			exchange.setResponseContentLength( 0 );
+		}
+	}
+
+	private static String contentRange( long[] range, long length ) {
+		return "bytes " + range[ 0 ] + "-" + range[ 1 ] + "/" + length;
+	}
+
+}
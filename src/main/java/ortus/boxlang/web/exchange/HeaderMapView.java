@@ -0,0 +1,116 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HeaderValues;
+
+/**
+ * A read-only {@code Map<String, String[]>} view of an Undertow {@link HeaderMap}.
+ *
+ * Single lookups go straight to the header map, which is case insensitive, and only copy the values of that header.
+ * The full map is only built when it is iterated. For request headers, which don't change once the request is parsed,
+ * it is built once and reused for the rest of the exchange. Response headers are rebuilt on each iteration so the view
+ * always reflects the headers set so far.
+ */
+public final class HeaderMapView extends AbstractMap<String, String[]> {
+
+	/**
+	 * The backing Undertow headers
+	 */
+	private final HeaderMap						headers;
+
+	/**
+	 * Whether the headers can no longer change, so the materialized map can be kept
+	 */
+	private final boolean						immutable;
+
+	/**
+	 * The materialized map, only kept for immutable headers
+	 */
+	private volatile Map<String, String[]>		materialized;
+
+	/**
+	 * Create a view of a header map
+	 *
+	 * @param headers   The Undertow headers
+	 * @param immutable True if the headers won't change while the view is in use
+	 */
+	public HeaderMapView( HeaderMap headers, boolean immutable ) {
+		this.headers	= headers;
+		this.immutable	= immutable;
+	}
+
+	@Override
+	public String[] get( Object key ) {
+		if ( ! ( key instanceof String name ) ) {
+			return null;
+		}
+		if ( materialized != null ) {
+			String[] values = materialized.get( name );
+			if ( values != null ) {
+				return values;
+			}
+		}
+		HeaderValues values = headers.get( name );
+		return values == null || values.isEmpty() ? null : values.toArray( new String[ 0 ] );
+	}
+
+	@Override
+	public boolean containsKey( Object key ) {
+		if ( ! ( key instanceof String name ) ) {
+			return false;
+		}
+		HeaderValues values = headers.get( name );
+		return values != null && !values.isEmpty();
+	}
+
+	@Override
+	public Set<Entry<String, String[]>> entrySet() {
+		return materialize().entrySet();
+	}
+
+	/**
+	 * Copy the headers into an unmodifiable map, keeping the copy when the headers are immutable
+	 *
+	 * @return The headers by name, in the order they were received or set
+	 */
+	private synchronized Map<String, String[]> materialize() {
+		if ( materialized != null ) {
+			return materialized;
+		}
+		Map<String, String[]> map = new LinkedHashMap<>();
+		for ( HeaderValues values : headers ) {
+			if ( !values.isEmpty() ) {
+				map.put( values.getHeaderName().toString(), values.toArray( new String[ 0 ] ) );
+			}
+		}
+		map = Collections.unmodifiableMap( map );
+		if ( immutable ) {
+			materialized = map;
+		}
+		return map;
+	}
+
+}
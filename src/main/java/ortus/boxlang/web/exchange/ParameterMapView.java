@@ -0,0 +1,99 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only {@code Map<String, String[]>} view of the query parameters Undertow parsed for a request.
+ *
+ * Single lookups only copy the values of that parameter. The full map is built the first time it is iterated and then
+ * reused for the rest of the exchange, since the query parameters don't change once the request is parsed.
+ */
+public final class ParameterMapView extends AbstractMap<String, String[]> {
+
+	/**
+	 * The backing Undertow query parameters
+	 */
+	private final Map<String, Deque<String>>	parameters;
+
+	/**
+	 * The materialized map, null until the view is first iterated
+	 */
+	private volatile Map<String, String[]>		materialized;
+
+	/**
+	 * Create a view of the query parameters
+	 *
+	 * @param parameters The Undertow query parameters
+	 */
+	public ParameterMapView( Map<String, Deque<String>> parameters ) {
+		this.parameters = parameters;
+	}
+
+	@Override
+	public String[] get( Object key ) {
+		if ( materialized != null ) {
+			return materialized.get( key );
+		}
+		Deque<String> values = parameters.get( key );
+		return values == null ? null : values.toArray( new String[ 0 ] );
+	}
+
+	@Override
+	public boolean containsKey( Object key ) {
+		return parameters.containsKey( key );
+	}
+
+	@Override
+	public int size() {
+		return parameters.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return parameters.isEmpty();
+	}
+
+	@Override
+	public Set<Entry<String, String[]>> entrySet() {
+		return materialize().entrySet();
+	}
+
+	/**
+	 * Copy the parameters into an unmodifiable map, once per exchange
+	 *
+	 * @return The parameters by name
+	 */
+	private synchronized Map<String, String[]> materialize() {
+		if ( materialized == null ) {
+			Map<String, String[]> map = new LinkedHashMap<>();
+			for ( Map.Entry<String, Deque<String>> entry : parameters.entrySet() ) {
+				map.put( entry.getKey(), entry.getValue().toArray( new String[ 0 ] ) );
+			}
+			materialized = Collections.unmodifiableMap( map );
+		}
+		return materialized;
+	}
+
+}
@@ -0,0 +1,34 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Thrown to a template that reads a request body over one of the upload limits, so it stops. The request is answered
+ * with a 413 by the {@code BLHandler}, whatever the template's error handling did with the response.
+ */
+public class RequestLimitExceededException extends BoxRuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RequestLimitExceededException( Throwable cause ) {
+		super( "The request body exceeds the configured upload limits", cause );
+	}
+
+}
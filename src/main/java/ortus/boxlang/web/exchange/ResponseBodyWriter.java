@@ -0,0 +1,420 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xnio.channels.Channels;
+import org.xnio.channels.StreamSinkChannel;
+
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+
+/**
+ * Writes the character output of a BoxLang request to the response channel.
+ *
+ * Characters are encoded straight into buffers from the connection's {@code ByteBufferPool}. While the body is smaller
+ * than the buffer size the writer holds all of it, and when it is closed it sets an exact {@code Content-Length} and
+ * sends the buffers with a single gathering write. Once the body grows over the buffer size, the held buffers are sent
+ * and the rest of the body is streamed one pooled buffer at a time, with chunked encoding.
+ *
+ * The {@link Writer#flush()} of the writer itself does nothing while the body is held, so a small response is always
+ * sent in one piece. A buffer size of 0 streams from the first flush. A flush the template asks for goes through
+ * {@link #flushToClient()}, which always sends what was written so far.
+ */
+public class ResponseBodyWriter extends Writer {
+
+	/**
+	 * The exchange the body belongs to
+	 */
+	private final BoxHTTPUndertowExchange	owner;
+
+	/**
+	 * The Undertow exchange, where the buffers come from
+	 */
+	private final HttpServerExchange		exchange;
+
+	/**
+	 * How many bytes are held before switching to streaming
+	 */
+	private final int						bufferSize;
+
+	/**
+	 * The encoder for the response character set
+	 */
+	private final CharsetEncoder			encoder;
+
+	/**
+	 * The pooled buffers with the body so far, the last one is being filled
+	 */
+	private final List<PooledByteBuffer>	buffers		= new ArrayList<>();
+
+	/**
+	 * A high surrogate at the end of a write, waiting for the low surrogate of the next one
+	 */
+	private final CharBuffer				pending		= CharBuffer.allocate( 2 );
+
+	/**
+	 * Whether the held buffers were sent and the body is being streamed
+	 */
+	private boolean							streaming	= false;
+
+	/**
+	 * Whether the body was completely written
+	 */
+	private boolean							closed		= false;
+
+	/**
+	 * Whether the encoder was flushed, after which nothing else can be encoded
+	 */
+	private boolean							finished	= false;
+
+	/**
+	 * Create a writer for the response body of an exchange
+	 *
+	 * @param owner      The exchange
+	 * @param encoder    The encoder for the response character set
+	 * @param bufferSize The largest body in bytes that is held to be sent with a {@code Content-Length}
+	 */
+	public ResponseBodyWriter( BoxHTTPUndertowExchange owner, CharsetEncoder encoder, int bufferSize ) {
+		this.owner		= owner;
+		this.exchange	= owner.getExchange();
+		this.bufferSize	= bufferSize;
+		this.encoder	= encoder
+		    .onMalformedInput( CodingErrorAction.REPLACE )
+		    .onUnmappableCharacter( CodingErrorAction.REPLACE );
+	}
+
+	@Override
+	public void write( char[] cbuf, int off, int len ) throws IOException {
+		encode( CharBuffer.wrap( cbuf, off, len ) );
+	}
+
+	@Override
+	public void write( String str, int off, int len ) throws IOException {
+		// Wrapping the string reads its characters in place, without copying them to an array first
+		encode( CharBuffer.wrap( str, off, off + len ) );
+	}
+
+	/**
+	 * Send what was written so far, unless the body is still being held
+	 */
+	@Override
+	public void flush() throws IOException {
+		if ( closed ) {
+			return;
+		}
+		if ( !streaming ) {
+			if ( bufferSize > 0 ) {
+				return;
+			}
+			startStreaming();
+		}
+		writeCurrent();
+		Channels.flushBlocking( owner.getResponseChannel() );
+	}
+
+	/**
+	 * Send everything written so far to the client and stream the rest of the body, even while it is under the buffer
+	 * size. Used for a flush the template asks for, like for a progressive page or long polling.
+	 *
+	 * @throws IOException If the client connection fails
+	 */
+	public void flushToClient() throws IOException {
+		if ( closed ) {
+			return;
+		}
+		flushToChannel();
+		Channels.flushBlocking( owner.getResponseChannel() );
+	}
+
+	/**
+	 * Send everything written so far and stream the rest of the body. Used before anything else is written to the
+	 * response channel, so the output stays in order.
+	 *
+	 * @throws IOException If the client connection fails
+	 */
+	public void flushToChannel() throws IOException {
+		if ( closed ) {
+			return;
+		}
+		if ( !streaming ) {
+			startStreaming();
+		}
+		writeCurrent();
+	}
+
+	/**
+	 * Finish the body. A held body is sent with its {@code Content-Length}, a streamed body gets its last buffer sent.
+	 * The response channel is left open.
+	 */
+	@Override
+	public void close() throws IOException {
+		if ( closed ) {
+			return;
+		}
+		try {
+			finishEncoding();
+			if ( streaming ) {
+				writeCurrent();
+			} else {
+				writeHeld( true );
+			}
+		} finally {
+			closed = true;
+			release();
+		}
+	}
+
+	/**
+	 * Whether nothing was written to the body so far
+	 *
+	 * @return True if the body is empty
+	 */
+	public boolean isEmpty() {
+		if ( streaming || pending.position() > 0 ) {
+			return false;
+		}
+		for ( PooledByteBuffer buffer : buffers ) {
+			if ( buffer.getBuffer().position() > 0 ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The whole body, when it is held and nothing else can be written to it
+	 *
+	 * @return Read-only views of the body, in order, or null if part of it was already sent
+	 *
+	 * @throws IOException If the client connection fails
+	 */
+	public List<ByteBuffer> getHeldBody() throws IOException {
+		if ( streaming || closed ) {
+			return null;
+		}
+		finishEncoding();
+		if ( streaming ) {
+			return null;
+		}
+		List<ByteBuffer> body = new ArrayList<>( buffers.size() );
+		for ( PooledByteBuffer buffer : buffers ) {
+			body.add( buffer.getBuffer().asReadOnlyBuffer().flip() );
+		}
+		return body;
+	}
+
+	/**
+	 * Drop the body without sending it, like for a 304 response
+	 */
+	public void discard() {
+		closed = true;
+		release();
+	}
+
+	/**
+	 * Finish the body without sending what is left of it. A held body gets its {@code Content-Length} set, and the
+	 * caller takes over the buffers: it must send them and return them to the pool.
+	 *
+	 * @return The buffers with the rest of the body, ready to be written
+	 *
+	 * @throws IOException If the client connection fails
+	 */
+	public List<PooledByteBuffer> detach() throws IOException {
+		if ( closed ) {
+			return new ArrayList<>();
+		}
+		closed = true;
+		try {
+			finishEncoding();
+			long length = 0;
+			for ( PooledByteBuffer buffer : buffers ) {
+				length += buffer.getBuffer().flip().remaining();
+			}
+			if ( !streaming ) {
+				setContentLength( length );
+			}
+		} catch ( IOException | RuntimeException e ) {
+			release();
+			throw e;
+		}
+		List<PooledByteBuffer> detached = new ArrayList<>( buffers );
+		buffers.clear();
+		return detached;
+	}
+
+	/**
+	 * Encode a trailing high surrogate, if any, and flush the encoder
+	 */
+	private void finishEncoding() throws IOException {
+		if ( finished ) {
+			return;
+		}
+		finished = true;
+		pending.flip();
+		encode( pending, true );
+		while ( encoder.flush( current() ).isOverflow() ) {
+			bufferFull();
+		}
+	}
+
+	/**
+	 * Set the {@code Content-Length} of a complete held body. The length must be known before the channel is created,
+	 * which is when Undertow picks the transfer encoding.
+	 *
+	 * @param length The body length
+	 */
+	private void setContentLength( long length ) {
+		if ( exchange.isResponseChannelAvailable()
+		    && !exchange.getResponseHeaders().contains( Headers.CONTENT_LENGTH )
+		    && !exchange.getResponseHeaders().contains( Headers.TRANSFER_ENCODING ) ) {
+			exchange.setResponseContentLength( length );
+		}
+	}
+
+	/**
+	 * Encode characters into the pooled buffers, keeping a trailing high surrogate for the next write
+	 *
+	 * @param chars The characters
+	 */
+	private void encode( CharBuffer chars ) throws IOException {
+		if ( closed ) {
+			throw new IOException( "The response body was already written" );
+		}
+		if ( pending.position() > 0 && chars.hasRemaining() ) {
+			pending.put( chars.get() );
+			pending.flip();
+			encode( pending, false );
+			pending.compact();
+		}
+		encode( chars, false );
+		if ( chars.hasRemaining() ) {
+			pending.put( chars );
+		}
+	}
+
+	private void encode( CharBuffer chars, boolean endOfInput ) throws IOException {
+		while ( true ) {
+			CoderResult result = encoder.encode( chars, current(), endOfInput );
+			if ( result.isOverflow() ) {
+				bufferFull();
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The buffer being filled, allocating the first one
+	 */
+	private ByteBuffer current() {
+		if ( buffers.isEmpty() ) {
+			buffers.add( exchange.getConnection().getByteBufferPool().allocate() );
+		}
+		return buffers.get( buffers.size() - 1 ).getBuffer();
+	}
+
+	/**
+	 * The buffer being filled is full: send it when streaming, otherwise hold it and take another one until the body
+	 * is over the buffer size
+	 */
+	private void bufferFull() throws IOException {
+		if ( !streaming ) {
+			long held = 0;
+			for ( PooledByteBuffer buffer : buffers ) {
+				held += buffer.getBuffer().position();
+			}
+			if ( held < bufferSize ) {
+				buffers.add( exchange.getConnection().getByteBufferPool().allocate() );
+				return;
+			}
+			startStreaming();
+		}
+		writeCurrent();
+	}
+
+	/**
+	 * Send the held buffers and keep a single buffer for the rest of the body
+	 */
+	private void startStreaming() throws IOException {
+		streaming = true;
+		if ( buffers.size() > 1 ) {
+			writeHeld( false );
+			// The first buffer is reused for the rest of the body
+			for ( int i = buffers.size() - 1; i > 0; i-- ) {
+				buffers.remove( i ).close();
+			}
+		}
+	}
+
+	/**
+	 * Send all the held buffers with one gathering write, leaving them empty
+	 *
+	 * @param complete Whether this is the whole body, so the {@code Content-Length} can be set
+	 */
+	private void writeHeld( boolean complete ) throws IOException {
+		ByteBuffer[]	data	= new ByteBuffer[ buffers.size() ];
+		long			length	= 0;
+		for ( int i = 0; i < data.length; i++ ) {
+			data[ i ]	= buffers.get( i ).getBuffer().flip();
+			length		+= data[ i ].remaining();
+		}
+		if ( complete ) {
+			setContentLength( length );
+		}
+		if ( length > 0 ) {
+			StreamSinkChannel channel = owner.getResponseChannel();
+			Channels.writeBlocking( channel, data, 0, data.length );
+		}
+		for ( ByteBuffer buffer : data ) {
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Send the content of the buffer being filled, leaving it empty
+	 */
+	private void writeCurrent() throws IOException {
+		ByteBuffer buffer = current().flip();
+		if ( buffer.hasRemaining() ) {
+			Channels.writeBlocking( owner.getResponseChannel(), buffer );
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Return the buffers to the pool
+	 */
+	private void release() {
+		for ( PooledByteBuffer buffer : buffers ) {
+			buffer.close();
+		}
+		buffers.clear();
+	}
+
+}
@@ -0,0 +1,374 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.handlers;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xnio.XnioExecutor;
+
+import io.undertow.server.Connectors;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+import ortus.boxlang.web.metrics.ServerMetrics;
+
+/**
+ * Admission control in front of the {@link BLHandler}
+ *
+ * Only {@code limit} BoxLang requests execute at the same time. Requests over the limit wait in a bounded queue on the
+ * IO thread, without holding a worker thread, until a permit is released or the queue timeout expires. Requests that
+ * cannot be queued, or that time out, are shed right away with a 503 and a {@code Retry-After} header so latency stays
+ * bounded under overload.
+ *
+ * In adaptive mode the limit follows an AIMD policy: every window of completed requests the p99 latency is compared
+ * to the target latency. If it is over the target the limit is cut by 10%, otherwise it grows by one while the
+ * server is actually using the current limit.
+ */
+public class AdmissionControlHandler implements HttpHandler, AdmissionControlMXBean {
+
+	/**
+	 * Number of latency samples per adaptive window
+	 */
+	private static final int			ADAPTIVE_WINDOW		= 100;
+
+	/**
+	 * Multiplicative decrease applied to the limit when the window is over the target latency
+	 */
+	private static final double			BACKOFF_RATIO		= 0.9;
+
+	private final HttpHandler			next;
+	private final int					maxConcurrency;
+	private final int					queueCapacity;
+	private final long					queueTimeout;
+	private final String				retryAfter;
+
+	/**
+	 * The current concurrency limit
+	 */
+	private volatile int				limit;
+
+	private final AtomicInteger			inFlight			= new AtomicInteger();
+	private final AtomicInteger			queueDepth			= new AtomicInteger();
+	private final Queue<QueuedRequest>	queue				= new ConcurrentLinkedQueue<>();
+
+	private final LongAdder				admittedCount		= new LongAdder();
+	private final LongAdder				queuedCount			= new LongAdder();
+	private final LongAdder				shedCount			= new LongAdder();
+	private final LongAdder				queueTimeoutCount	= new LongAdder();
+
+	/**
+	 * Adaptive mode settings, the target latency is in nanoseconds
+	 */
+	private volatile boolean			adaptive			= false;
+	private volatile long				targetLatency;
+	private final long[]				window				= new long[ ADAPTIVE_WINDOW ];
+	private int							windowCount			= 0;
+
+	/**
+	 * Records how long queued requests waited, null if metrics are disabled
+	 */
+	private volatile ServerMetrics		metrics;
+
+	/**
+	 * Create a new admission control handler
+	 *
+	 * @param next           The handler to protect
+	 * @param maxConcurrency The maximum number of concurrent requests
+	 * @param queueCapacity  The maximum number of requests that can wait for a permit
+	 * @param queueTimeout   How long a request can wait for a permit in milliseconds, 0 to wait forever
+	 */
+	public AdmissionControlHandler( HttpHandler next, int maxConcurrency, int queueCapacity, long queueTimeout ) {
+		if ( maxConcurrency < 1 ) {
+			throw new IllegalArgumentException( "Maximum concurrency must be at least 1" );
+		}
+		this.next			= next;
+		this.maxConcurrency	= maxConcurrency;
+		this.limit			= maxConcurrency;
+		this.queueCapacity	= Math.max( queueCapacity, 0 );
+		this.queueTimeout	= Math.max( queueTimeout, 0 );
+		this.retryAfter		= String.valueOf( Math.max( 1, TimeUnit.MILLISECONDS.toSeconds( this.queueTimeout ) ) );
+	}
+
+	/**
+	 * Enable the adaptive limit
+	 *
+	 * @param targetLatencyMillis The p99 latency in milliseconds the limit should be tuned for
+	 *
+	 * @return This handler
+	 */
+	public AdmissionControlHandler setAdaptive( long targetLatencyMillis ) {
+		this.targetLatency	= TimeUnit.MILLISECONDS.toNanos( targetLatencyMillis );
+		this.adaptive		= true;
+		return this;
+	}
+
+	/**
+	 * Record how long queued requests wait for a permit
+	 *
+	 * @param metrics The server metrics
+	 *
+	 * @return This handler
+	 */
+	public AdmissionControlHandler setMetrics( ServerMetrics metrics ) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	@Override
+	public void handleRequest( HttpServerExchange exchange ) throws Exception {
+		if ( tryAcquire() ) {
+			admit( exchange );
+			next.handleRequest( exchange );
+			return;
+		}
+
+		if ( queueDepth.incrementAndGet() > queueCapacity ) {
+			queueDepth.decrementAndGet();
+			shedCount.increment();
+			reject( exchange );
+			return;
+		}
+
+		// Suspend the exchange, it will be resumed once a permit is released
+		queuedCount.increment();
+		QueuedRequest request = new QueuedRequest( exchange );
+		exchange.dispatch( SameThreadExecutor.INSTANCE, () -> {
+			if ( queueTimeout > 0 ) {
+				request.timeoutKey = exchange.getIoThread().executeAfter( () -> expire( request ), queueTimeout, TimeUnit.MILLISECONDS );
+			}
+			queue.offer( request );
+			// A permit may have been released while we were queueing
+			drain();
+		} );
+	}
+
+	/**
+	 * Try to take a permit without waiting
+	 *
+	 * @return True if a permit was taken
+	 */
+	private boolean tryAcquire() {
+		int current;
+		do {
+			current = inFlight.get();
+			if ( current >= limit ) {
+				return false;
+			}
+		} while ( !inFlight.compareAndSet( current, current + 1 ) );
+		return true;
+	}
+
+	/**
+	 * Track an admitted exchange so its permit is released when it completes
+	 *
+	 * @param exchange The admitted exchange
+	 */
+	private void admit( HttpServerExchange exchange ) {
+		admittedCount.increment();
+		exchange.addExchangeCompleteListener( new Permit( System.nanoTime() ) );
+	}
+
+	/**
+	 * Hand out available permits to queued requests
+	 */
+	private void drain() {
+		while ( !queue.isEmpty() && tryAcquire() ) {
+			QueuedRequest request = queue.poll();
+			if ( request == null ) {
+				inFlight.decrementAndGet();
+				return;
+			}
+			// The queue timeout already claimed this request
+			if ( !request.claim() ) {
+				inFlight.decrementAndGet();
+				continue;
+			}
+			queueDepth.decrementAndGet();
+			if ( request.timeoutKey != null ) {
+				request.timeoutKey.remove();
+			}
+			recordQueueWait( request );
+			admit( request.exchange );
+			// Resume on the exchange's own IO thread so the rest of the chain runs as it would for a fresh request
+			request.exchange.dispatch( request.exchange.getIoThread(), next );
+		}
+	}
+
+	/**
+	 * Shed a request that waited longer than the queue timeout
+	 *
+	 * @param request The queued request
+	 */
+	private void expire( QueuedRequest request ) {
+		if ( !request.claim() ) {
+			return;
+		}
+		queue.remove( request );
+		queueDepth.decrementAndGet();
+		queueTimeoutCount.increment();
+		recordQueueWait( request );
+		Connectors.executeRootHandler( this::reject, request.exchange );
+	}
+
+	/**
+	 * Record how long a request spent in the queue
+	 *
+	 * @param request The request leaving the queue
+	 */
+	private void recordQueueWait( QueuedRequest request ) {
+		ServerMetrics current = metrics;
+		if ( current != null ) {
+			current.recordQueueWait( System.nanoTime() - request.queuedAt );
+		}
+	}
+
+	/**
+	 * Send a 503 for a shed request
+	 *
+	 * @param exchange The exchange to reject
+	 */
+	private void reject( HttpServerExchange exchange ) {
+		exchange.setStatusCode( StatusCodes.SERVICE_UNAVAILABLE );
+		exchange.getResponseHeaders().put( Headers.RETRY_AFTER, retryAfter );
+		exchange.endExchange();
+	}
+
+	/**
+	 * Record the latency of a completed request and adjust the limit once a window is full
+	 *
+	 * @param latency The latency in nanoseconds
+	 */
+	private void recordLatency( long latency ) {
+		long p99;
+		synchronized ( window ) {
+			window[ windowCount++ ] = latency;
+			if ( windowCount < window.length ) {
+				return;
+			}
+			windowCount = 0;
+			Arrays.sort( window );
+			p99 = window[ ( int ) Math.ceil( window.length * 0.99 ) - 1 ];
+		}
+
+		int current = limit;
+		if ( p99 > targetLatency ) {
+			limit = Math.max( 1, ( int ) ( current * BACKOFF_RATIO ) );
+		} else if ( current < maxConcurrency && inFlight.get() * 2 >= current ) {
+			limit = current + 1;
+		}
+	}
+
+	@Override
+	public int getLimit() {
+		return limit;
+	}
+
+	@Override
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	@Override
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	@Override
+	public long getAdmittedCount() {
+		return admittedCount.sum();
+	}
+
+	@Override
+	public long getQueuedCount() {
+		return queuedCount.sum();
+	}
+
+	@Override
+	public long getShedCount() {
+		return shedCount.sum();
+	}
+
+	@Override
+	public long getQueueTimeoutCount() {
+		return queueTimeoutCount.sum();
+	}
+
+	/**
+	 * Releases the permit of an admitted exchange when it completes
+	 */
+	private final class Permit implements ExchangeCompletionListener {
+
+		private final long start;
+
+		Permit( long start ) {
+			this.start = start;
+		}
+
+		@Override
+		public void exchangeEvent( HttpServerExchange exchange, NextListener nextListener ) {
+			try {
+				inFlight.decrementAndGet();
+				if ( adaptive ) {
+					recordLatency( System.nanoTime() - start );
+				}
+				drain();
+			} finally {
+				nextListener.proceed();
+			}
+		}
+	}
+
+	/**
+	 * A request waiting for a permit. It is claimed exactly once, either by a released permit or by the queue timeout.
+	 */
+	private static final class QueuedRequest {
+
+		final HttpServerExchange	exchange;
+		final AtomicBoolean			claimed		= new AtomicBoolean();
+		final long					queuedAt	= System.nanoTime();
+		volatile XnioExecutor.Key	timeoutKey;
+
+		QueuedRequest( HttpServerExchange exchange ) {
+			this.exchange = exchange;
+		}
+
+		boolean claim() {
+			return claimed.compareAndSet( false, true );
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.handlers;
+
+/**
+ * JMX view of the {@link AdmissionControlHandler} state
+ */
+public interface AdmissionControlMXBean {
+
+	/**
+	 * @return The current concurrency limit. In adaptive mode this moves between 1 and the configured maximum.
+	 */
+	int getLimit();
+
+	/**
+	 * @return The configured maximum concurrency
+	 */
+	int getMaxConcurrency();
+
+	/**
+	 * @return The number of BoxLang requests currently executing
+	 */
+	int getInFlight();
+
+	/**
+	 * @return The number of requests waiting for a permit
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return The maximum number of requests that can wait for a permit
+	 */
+	int getQueueCapacity();
+
+	/**
+	 * @return The total number of requests that were admitted
+	 */
+	long getAdmittedCount();
+
+	/**
+	 * @return The total number of requests that had to wait in the queue
+	 */
+	long getQueuedCount();
+
+	/**
+	 * @return The total number of requests rejected because the queue was full
+	 */
+	long getShedCount();
+
+	/**
+	 * @return The total number of requests rejected because they waited longer than the queue timeout
+	 */
+	long getQueueTimeoutCount();
+
+}
@@ -18,19 +18,37 @@
 package ortus.boxlang.web.handlers;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.xnio.ChannelListener;
 import org.xnio.ChannelListeners;
+import org.xnio.IoUtils;
 import org.xnio.channels.StreamSinkChannel;
 
-import io.undertow.predicate.Predicate;
+import io.undertow.connector.PooledByteBuffer;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.form.FormParserFactory;
+import io.undertow.util.ETag;
+import io.undertow.util.ETagUtils;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.Protocols;
+import io.undertow.util.StatusCodes;
 import ortus.boxlang.web.WebRequestExecutor;
+import ortus.boxlang.web.cache.BodyETag;
+import ortus.boxlang.web.exchange.AsyncResponseFinisher;
 import ortus.boxlang.web.exchange.BoxHTTPUndertowExchange;
+import ortus.boxlang.web.lanes.RequestLane;
+import ortus.boxlang.web.metrics.RequestTimingEvent;
+import ortus.boxlang.web.metrics.ServerMetrics;
+import ortus.boxlang.web.routing.Route;
+import ortus.boxlang.web.routing.RouteResolver;
+import ortus.boxlang.web.timeout.RequestDeadline;
+import ortus.boxlang.web.timeout.RequestTimeouts;
 
 /**
  * Undertow HttpHandler for BoxLang
@@ -38,26 +56,221 @@ import ortus.boxlang.web.exchange.BoxHTTPUndertowExchange;
  */
 public class BLHandler implements HttpHandler {
 
-	static final Pattern	pattern	= Pattern.compile( "^(/.+?\\.cfml|/.+?\\.cf[cms]|.+?\\.bx[ms]{0,1})(/.*)?$" );
+	/**
+	 * Resolves the route when the handler is used without a {@link RoutingHandler} in front of it
+	 */
+	static final RouteResolver	defaultResolver		= new RouteResolver();
+
+	/**
+	 * The header with the phase timings, not defined in Undertow's {@code Headers}
+	 */
+	static final HttpString		SERVER_TIMING		= new HttpString( "Server-Timing" );
+
+	private String				webRoot;
+
+	/**
+	 * The executor BoxLang requests are dispatched to. If null, Undertow's XNIO worker pool is used.
+	 */
+	private Executor			executor;
+
+	/**
+	 * The shared parser factory for form and multipart bodies
+	 */
+	private FormParserFactory	formParserFactory	= BoxHTTPUndertowExchange.DEFAULT_FORM_PARSER_FACTORY;
+
+	/**
+	 * The largest response body in bytes that is held and sent with a Content-Length
+	 */
+	private int					responseBufferSize	= BoxHTTPUndertowExchange.DEFAULT_RESPONSE_BUFFER_SIZE;
+
+	/**
+	 * Whether the rest of the response is written from the IO thread once the template is done
+	 */
+	private boolean				asyncResponseWrites	= true;
+
+	/**
+	 * The longest the IO thread spends sending the rest of a response, in milliseconds. 0 for no limit.
+	 */
+	private long				writeTimeout		= 30000;
+
+	/**
+	 * Whether held response bodies get a weak ETag and matching requests a 304
+	 */
+	private boolean				etags				= false;
 
-	private String			webRoot;
+	/**
+	 * Whether responses get a Server-Timing header with the time spent in each phase
+	 */
+	private boolean				serverTiming		= false;
+
+	/**
+	 * How long requests may run, null for no limit
+	 */
+	private RequestTimeouts		requestTimeouts;
+
+	/**
+	 * The metrics that count timed out requests, or null
+	 */
+	private ServerMetrics		metrics;
 
 	public BLHandler( String webRoot ) {
-		this.webRoot = webRoot;
+		this( webRoot, null );
+	}
+
+	/**
+	 * Create a new BoxLang handler that dispatches requests to the given executor
+	 *
+	 * @param webRoot  The web root for all requests
+	 * @param executor The executor to run BoxLang requests on, or null to use the XNIO worker pool
+	 */
+	public BLHandler( String webRoot, Executor executor ) {
+		this.webRoot	= webRoot;
+		this.executor	= executor;
+	}
+
+	/**
+	 * Set the parser factory used for form and multipart bodies
+	 *
+	 * @param formParserFactory The parser factory, shared by all requests
+	 *
+	 * @return This handler
+	 */
+	public BLHandler setFormParserFactory( FormParserFactory formParserFactory ) {
+		this.formParserFactory = formParserFactory;
+		return this;
+	}
+
+	/**
+	 * Set the largest response body that is held and sent with a Content-Length, larger bodies are streamed
+	 *
+	 * @param responseBufferSize The size in bytes, 0 to stream from the first flush
+	 *
+	 * @return This handler
+	 */
+	public BLHandler setResponseBufferSize( int responseBufferSize ) {
+		this.responseBufferSize = responseBufferSize;
+		return this;
+	}
+
+	/**
+	 * Choose how the rest of the response is written once the template is done
+	 *
+	 * @param asyncResponseWrites True to hand it off to the IO thread and free the request thread, false to write it
+	 *                            from the request thread
+	 * @param writeTimeout        The longest the IO thread spends sending it in milliseconds, 0 for no limit
+	 *
+	 * @return This handler
+	 */
+	public BLHandler setResponseWrites( boolean asyncResponseWrites, long writeTimeout ) {
+		this.asyncResponseWrites	= asyncResponseWrites;
+		this.writeTimeout			= writeTimeout;
+		return this;
+	}
+
+	/**
+	 * Tag held response bodies with a weak ETag, and answer requests that already have the same body with a 304
+	 *
+	 * @param etags True to enable it
+	 *
+	 * @return This handler
+	 */
+	public BLHandler setETags( boolean etags ) {
+		this.etags = etags;
+		return this;
+	}
+
+	/**
+	 * Send a Server-Timing header with the time spent waiting for a thread, routing, parsing the form and running the
+	 * template. The timings are always available as {@link RequestTimingEvent} JFR events.
+	 *
+	 * @param serverTiming True to send the header
+	 *
+	 * @return This handler
+	 */
+	public BLHandler setServerTiming( boolean serverTiming ) {
+		this.serverTiming = serverTiming;
+		return this;
+	}
+
+	/**
+	 * Limit how long requests may run. A request that runs over its timeout is interrupted and gets a 504 if nothing was
+	 * sent yet.
+	 *
+	 * @param requestTimeouts The timeouts by path, or null for no limit
+	 *
+	 * @return This handler
+	 */
+	public BLHandler setRequestTimeouts( RequestTimeouts requestTimeouts ) {
+		this.requestTimeouts = requestTimeouts != null && requestTimeouts.isEnabled() ? requestTimeouts : null;
+		return this;
+	}
+
+	/**
+	 * Count timed out requests in these metrics
+	 *
+	 * @param metrics The server metrics
+	 *
+	 * @return This handler
+	 */
+	public BLHandler setMetrics( ServerMetrics metrics ) {
+		this.metrics = metrics;
+		return this;
 	}
 
 	@Override
 	public void handleRequest( io.undertow.server.HttpServerExchange exchange ) throws Exception {
 		if ( exchange.isInIoThread() ) {
-			exchange.dispatch( this );
+			RequestTimingEvent.start( exchange );
+			// A request assigned to a lane runs on it, whatever queue it waited in before
+			RequestLane lane = exchange.getAttachment( RequestLane.ATTACHMENT_KEY );
+			exchange.dispatch( lane != null ? lane : this.executor, this );
 			return;
 		}
+		RequestTimingEvent timing = exchange.getAttachment( RequestTimingEvent.ATTACHMENT_KEY );
+		if ( timing == null ) {
+			timing = RequestTimingEvent.start( exchange );
+		}
+		timing.dispatched();
 		exchange.startBlocking();
 
 		processPathInfo( exchange );
-		BoxHTTPUndertowExchange httpExchange = new BoxHTTPUndertowExchange( exchange );
-		// In our custom pure Undertow server, we need to track our own FR transactions
-		WebRequestExecutor.execute( httpExchange, this.webRoot, true );
+		timing.routed();
+		BoxHTTPUndertowExchange httpExchange = new BoxHTTPUndertowExchange( exchange, this.formParserFactory )
+		    .setResponseBufferSize( this.responseBufferSize );
+		long			timeout		= this.requestTimeouts != null ? this.requestTimeouts.getTimeout( exchange.getRequestPath() ) : 0;
+		RequestDeadline	deadline	= timeout > 0 ? RequestDeadline.start( httpExchange, timeout, this.metrics ) : null;
+		try {
+			// In our custom pure Undertow server, we need to track our own FR transactions
+			WebRequestExecutor.execute( httpExchange, this.webRoot, true );
+		} catch ( Throwable e ) {
+			// A template that runs over its timeout usually fails on the interrupt or on its next write
+			if ( deadline != null && !deadline.finish() ) {
+				abandonResponse( httpExchange, deadline );
+				return;
+			}
+			if ( httpExchange.isRequestLimitExceeded() ) {
+				rejectRequestTooLarge( httpExchange );
+				return;
+			}
+			// The response is never finalized, give the held buffers back to the pool
+			httpExchange.discardResponseBody();
+			throw e;
+		}
+		if ( deadline != null && !deadline.finish() ) {
+			abandonResponse( httpExchange, deadline );
+			return;
+		}
+		// The template's error handling may have answered an over limit request with its own error page
+		if ( httpExchange.isRequestLimitExceeded() ) {
+			rejectRequestTooLarge( httpExchange );
+			return;
+		}
+		timing.executed( httpExchange.getFormParseTime() );
+
+		// Only possible while the headers are not sent, a template that flushed early gets no header
+		if ( serverTiming && !exchange.isResponseStarted() ) {
+			exchange.getResponseHeaders().put( SERVER_TIMING, timing.toServerTiming() );
+		}
 
 		finalizeResponse( httpExchange );
 
@@ -66,28 +279,96 @@ public class BLHandler implements HttpHandler {
 	/**
 	 * Process path info real quick
 	 * Path info is sort of a servlet concept. It's just everything left in the URI that didn't match the servlet mapping
-	 * In undertow, we can use predicates to match the path info and store it in the exchange attachment so we can get it in the CGI scope
+	 * The {@link RoutingHandler} already split the path into the template and the path info, so we only need to point the
+	 * relative path at the template. The route stays attached to the exchange so we can get the path info in the CGI scope.
+	 * It only depends on the exchange, so the routing benchmarks can call it on its own.
 	 *
 	 * @param exchange The HttpServerExchange
 	 */
-	private void processPathInfo( HttpServerExchange exchange ) {
-		String				requestPath			= exchange.getRequestURI();
-		Map<String, Object>	predicateContext	= exchange.getAttachment( Predicate.PREDICATE_CONTEXT );
-		if ( !predicateContext.containsKey( "pathInfo" ) ) {
-			Matcher matcher = pattern.matcher( requestPath );
-			if ( matcher.find() ) {
-				// Use the second capture group if it exists to set the path info
-				String pathInfo = matcher.group( 2 );
-				if ( pathInfo != null ) {
-					exchange.setRelativePath( matcher.group( 1 ) );
-					predicateContext.put( "pathInfo", pathInfo );
-				} else {
-					predicateContext.put( "pathInfo", "" );
-				}
+	public static void processPathInfo( HttpServerExchange exchange ) {
+		Route route = exchange.getAttachment( Route.ATTACHMENT_KEY );
+		if ( route == null ) {
+			route = defaultResolver.resolve( exchange.getRelativePath() );
+			exchange.putAttachment( Route.ATTACHMENT_KEY, route );
+		}
+		if ( !route.pathInfo().isEmpty() ) {
+			exchange.setRelativePath( route.path() );
+		}
+	}
+
+	/**
+	 * Tag a held response body with a weak ETag, and drop it for a 304 if the client already has it. Responses the
+	 * template flushed, or that were partly sent already, are left alone.
+	 *
+	 * @param httpExchange The BoxHTTPUndertowExchange
+	 */
+	private void applyETag( BoxHTTPUndertowExchange httpExchange ) {
+		HttpServerExchange	exchange	= httpExchange.getExchange();
+		HttpString			method		= exchange.getRequestMethod();
+		if ( exchange.getStatusCode() != StatusCodes.OK
+		    || ! ( method.equals( Methods.GET ) || method.equals( Methods.HEAD ) )
+		    || exchange.getResponseHeaders().contains( Headers.ETAG )
+		    || httpExchange.isResponseFlushed() ) {
+			return;
+		}
+		List<ByteBuffer> body;
+		try {
+			body = httpExchange.getHeldResponseBody();
+		} catch ( IOException e ) {
+			return;
+		}
+		if ( body == null ) {
+			return;
+		}
+		ETag etag = BodyETag.of( body );
+		exchange.getResponseHeaders().put( Headers.ETAG, etag.toString() );
+		if ( !ETagUtils.handleIfNoneMatch( exchange, etag, true ) ) {
+			httpExchange.discardResponseBody();
+			exchange.setStatusCode( StatusCodes.NOT_MODIFIED );
+		}
+	}
+
+	/**
+	 * The request timed out and its response was taken away from the template. The 504 is already sent if nothing else
+	 * was, otherwise the response is incomplete and the connection, or the HTTP/2 stream, is closed to say so.
+	 *
+	 * @param httpExchange The BoxHTTPUndertowExchange
+	 * @param deadline     The deadline that expired
+	 */
+	private void abandonResponse( BoxHTTPUndertowExchange httpExchange, RequestDeadline deadline ) {
+		httpExchange.discardResponseBody();
+		HttpServerExchange exchange = httpExchange.getExchange();
+		if ( !deadline.isResponseReplaced() ) {
+			if ( exchange.getProtocol().equals( Protocols.HTTP_2_0 ) ) {
+				IoUtils.safeClose( exchange.getResponseChannel() );
+			} else {
+				IoUtils.safeClose( exchange.getConnection() );
+			}
+		}
+	}
+
+	/**
+	 * The request body was over one of the upload limits. Whatever the template wrote is dropped and the request gets a
+	 * 413, or its connection is closed if the response already started.
+	 *
+	 * @param httpExchange The BoxHTTPUndertowExchange
+	 */
+	private void rejectRequestTooLarge( BoxHTTPUndertowExchange httpExchange ) {
+		httpExchange.discardResponseBody();
+		HttpServerExchange exchange = httpExchange.getExchange();
+		if ( exchange.isResponseStarted() ) {
+			if ( exchange.getProtocol().equals( Protocols.HTTP_2_0 ) ) {
+				IoUtils.safeClose( exchange.getResponseChannel() );
 			} else {
-				predicateContext.put( "pathInfo", "" );
+				IoUtils.safeClose( exchange.getConnection() );
 			}
+			return;
 		}
+		// The rest of the body is not read, so the connection can't be reused
+		exchange.getResponseHeaders().clear();
+		exchange.setPersistent( false );
+		exchange.setStatusCode( StatusCodes.REQUEST_ENTITY_TOO_LARGE );
+		exchange.endExchange();
 	}
 
 	/**
@@ -96,6 +377,28 @@ public class BLHandler implements HttpHandler {
 	 * @param httpExchange The BoxHTTPUndertowExchange
 	 */
 	public void finalizeResponse( BoxHTTPUndertowExchange httpExchange ) {
+		if ( etags ) {
+			applyETag( httpExchange );
+		}
+
+		// The output the response writer is still holding is written from the IO thread, so a slow client doesn't keep
+		// the request thread busy
+		if ( asyncResponseWrites ) {
+			List<PooledByteBuffer> body;
+			try {
+				body = httpExchange.detachResponseBody();
+			} catch ( IOException e ) {
+				// End the exchange in case of an error
+				httpExchange.getExchange().endExchange();
+				return;
+			}
+			new AsyncResponseFinisher( httpExchange.getExchange(), body, writeTimeout ).start( httpExchange.getResponseChannel() );
+			return;
+		}
+
+		// Send the output the response writer is still holding
+		httpExchange.finishResponseBody();
+
 		StreamSinkChannel channel = httpExchange.getResponseChannel();
 
 		channel.getWriteSetter().set( new ChannelListener<StreamSinkChannel>() {
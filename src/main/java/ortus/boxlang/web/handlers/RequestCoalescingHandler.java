@@ -0,0 +1,237 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.handlers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xnio.XnioExecutor;
+
+import io.undertow.server.Connectors;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.SameThreadExecutor;
+import ortus.boxlang.web.cache.CachePolicy;
+import ortus.boxlang.web.cache.CachedResponse;
+import ortus.boxlang.web.cache.ResponseCacheKey;
+import ortus.boxlang.web.cache.ResponseCapture;
+
+/**
+ * Single flight execution of identical concurrent {@code GET} requests in front of the {@link BLHandler}
+ *
+ * The first request for a {@link ResponseCacheKey} becomes the leader and runs the template. Identical requests that
+ * arrive while it runs are suspended on the IO thread, without holding a worker thread, and get a copy of the leader's
+ * status, headers and body once it completes. The leader's response is only shared when the {@link CachePolicy} would
+ * allow it to be cached, otherwise, or when the leader takes longer than the timeout, the waiting requests run the
+ * template on their own. Requests with cookies other than the vary cookies, like a session, are never coalesced.
+ */
+public class RequestCoalescingHandler implements HttpHandler, RequestCoalescingMXBean {
+
+	private final HttpHandler					next;
+	private final long							timeout;
+	private final List<HttpString>				varyHeaders;
+	private final List<String>					varyCookies;
+
+	private final Map<ResponseCacheKey, Flight>	flights			= new ConcurrentHashMap<>();
+
+	private final LongAdder						leaderCount		= new LongAdder();
+	private final LongAdder						coalescedCount	= new LongAdder();
+	private final LongAdder						fallbackCount	= new LongAdder();
+
+	/**
+	 * Create a new request coalescing handler
+	 *
+	 * @param next        The BoxLang handler
+	 * @param timeout     How long a duplicate request waits for the leader in milliseconds
+	 * @param varyHeaders The request headers that select a different response
+	 * @param varyCookies The request cookies that select a different response
+	 */
+	public RequestCoalescingHandler( HttpHandler next, long timeout, List<String> varyHeaders, List<String> varyCookies ) {
+		this.next			= next;
+		this.timeout		= timeout;
+		this.varyHeaders	= varyHeaders.stream().map( HttpString::new ).toList();
+		this.varyCookies	= List.copyOf( varyCookies );
+	}
+
+	@Override
+	public void handleRequest( HttpServerExchange exchange ) throws Exception {
+		// Requests with other cookies, like a session, may each get a different page
+		if ( !exchange.getRequestMethod().equals( Methods.GET ) || !CachePolicy.isCacheableRequest( exchange )
+		    || !CachePolicy.hasOnlyVaryCookies( exchange, varyCookies ) ) {
+			next.handleRequest( exchange );
+			return;
+		}
+
+		ResponseCacheKey	key			= ResponseCacheKey.of( exchange, varyHeaders, varyCookies );
+		Flight				flight		= new Flight();
+		Flight				existing	= flights.putIfAbsent( key, flight );
+		if ( existing == null ) {
+			lead( key, flight, exchange );
+			return;
+		}
+
+		// Suspend the duplicate until the leader completes
+		Waiter waiter = new Waiter( exchange );
+		exchange.dispatch( SameThreadExecutor.INSTANCE, () -> {
+			if ( timeout > 0 ) {
+				waiter.timeoutKey = exchange.getIoThread().executeAfter( () -> fallback( waiter ), timeout, TimeUnit.MILLISECONDS );
+			}
+			existing.join( waiter );
+		} );
+	}
+
+	/**
+	 * Run the template for a flight and hand the response to the waiting duplicates once it completes
+	 *
+	 * @param key      The flight key
+	 * @param flight   The flight
+	 * @param exchange The leading exchange
+	 */
+	private void lead( ResponseCacheKey key, Flight flight, HttpServerExchange exchange ) throws Exception {
+		leaderCount.increment();
+		ResponseCapture capture = ResponseCapture.start( exchange, ResponseCacheHandler.MAX_ENTRY_SIZE );
+		exchange.addExchangeCompleteListener( ( completed, nextListener ) -> {
+			try {
+				flights.remove( key, flight );
+				CachedResponse	response	= null;
+				// Any positive time to live means the response may be shared
+				long			ttl			= CachePolicy.getTTL( completed, 1, varyHeaders );
+				byte[]			body		= ttl > 0 ? capture.getBody() : null;
+				if ( body != null ) {
+					response = new CachedResponse( completed.getStatusCode(), completed.getResponseHeaders(), body, ttl );
+				}
+				flight.complete( response );
+			} finally {
+				nextListener.proceed();
+			}
+		} );
+		next.handleRequest( exchange );
+	}
+
+	/**
+	 * Answer a waiting request with the leader's response
+	 *
+	 * @param waiter   The waiting request
+	 * @param response The leader's response, or null if it cannot be shared
+	 */
+	private void resume( Waiter waiter, CachedResponse response ) {
+		if ( !waiter.claim() ) {
+			return;
+		}
+		if ( waiter.timeoutKey != null ) {
+			waiter.timeoutKey.remove();
+		}
+		if ( response == null ) {
+			fallbackCount.increment();
+			waiter.exchange.dispatch( waiter.exchange.getIoThread(), next );
+		} else {
+			coalescedCount.increment();
+			waiter.exchange.dispatch( waiter.exchange.getIoThread(), response::replay );
+		}
+	}
+
+	/**
+	 * Let a waiting request run the template on its own once it waited longer than the timeout
+	 *
+	 * @param waiter The waiting request
+	 */
+	private void fallback( Waiter waiter ) {
+		if ( !waiter.claim() ) {
+			return;
+		}
+		fallbackCount.increment();
+		Connectors.executeRootHandler( next, waiter.exchange );
+	}
+
+	@Override
+	public int getInFlightCount() {
+		return flights.size();
+	}
+
+	@Override
+	public long getLeaderCount() {
+		return leaderCount.sum();
+	}
+
+	@Override
+	public long getCoalescedCount() {
+		return coalescedCount.sum();
+	}
+
+	@Override
+	public long getFallbackCount() {
+		return fallbackCount.sum();
+	}
+
+	/**
+	 * The execution of one leader and the requests waiting for it
+	 */
+	private final class Flight {
+
+		private final List<Waiter>	waiters	= new ArrayList<>();
+		private boolean				done	= false;
+		private CachedResponse		response;
+
+		void join( Waiter waiter ) {
+			synchronized ( this ) {
+				if ( !done ) {
+					waiters.add( waiter );
+					return;
+				}
+			}
+			// The leader completed while the waiter was being suspended
+			resume( waiter, response );
+		}
+
+		void complete( CachedResponse response ) {
+			synchronized ( this ) {
+				this.done		= true;
+				this.response	= response;
+			}
+			for ( Waiter waiter : waiters ) {
+				resume( waiter, response );
+			}
+		}
+	}
+
+	/**
+	 * A duplicate request waiting for the leader. It is claimed exactly once, either by the leader or by the timeout.
+	 */
+	private static final class Waiter {
+
+		final HttpServerExchange	exchange;
+		final AtomicBoolean			claimed	= new AtomicBoolean();
+		volatile XnioExecutor.Key	timeoutKey;
+
+		Waiter( HttpServerExchange exchange ) {
+			this.exchange = exchange;
+		}
+
+		boolean claim() {
+			return claimed.compareAndSet( false, true );
+		}
+	}
+
+}
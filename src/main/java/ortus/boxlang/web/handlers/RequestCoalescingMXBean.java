@@ -0,0 +1,46 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.handlers;
+
+/**
+ * JMX view of the {@link RequestCoalescingHandler} state
+ */
+public interface RequestCoalescingMXBean {
+
+	/**
+	 * @return The number of distinct requests currently executing on behalf of waiting duplicates
+	 */
+	int getInFlightCount();
+
+	/**
+	 * @return The total number of requests that executed the template as the leader of a flight
+	 */
+	long getLeaderCount();
+
+	/**
+	 * @return The total number of requests answered with a copy of the leader's response
+	 */
+	long getCoalescedCount();
+
+	/**
+	 * @return The total number of waiting requests that executed on their own, because the leader timed out or its
+	 *         response could not be shared
+	 */
+	long getFallbackCount();
+
+}
@@ -0,0 +1,59 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.handlers;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Rejects request bodies over a size limit
+ *
+ * A request that announces a larger {@code Content-Length} is answered with a 413 right away, before a worker thread is
+ * used or a byte of the body is read, and the connection is closed instead of draining the body. Chunked requests get
+ * the limit as their maximum entity size, so reading past it fails while the body is being parsed.
+ */
+public class RequestSizeLimitHandler implements HttpHandler {
+
+	private final HttpHandler	next;
+	private final long			maxRequestSize;
+
+	/**
+	 * Create a new request size limit handler
+	 *
+	 * @param next           The next handler
+	 * @param maxRequestSize The maximum size of a request body in bytes
+	 */
+	public RequestSizeLimitHandler( HttpHandler next, long maxRequestSize ) {
+		this.next			= next;
+		this.maxRequestSize	= maxRequestSize;
+	}
+
+	@Override
+	public void handleRequest( HttpServerExchange exchange ) throws Exception {
+		if ( exchange.getRequestContentLength() > maxRequestSize ) {
+			exchange.setPersistent( false );
+			exchange.setStatusCode( StatusCodes.REQUEST_ENTITY_TOO_LARGE );
+			exchange.endExchange();
+			return;
+		}
+		exchange.setMaxEntitySize( maxRequestSize );
+		next.handleRequest( exchange );
+	}
+
+}
@@ -0,0 +1,282 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.handlers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.resource.ResourceManager;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+import ortus.boxlang.web.cache.CachePolicy;
+import ortus.boxlang.web.cache.CachedResponse;
+import ortus.boxlang.web.cache.ResponseCacheKey;
+import ortus.boxlang.web.cache.ResponseCapture;
+
+/**
+ * Full page output cache in front of the {@link BLHandler}
+ *
+ * Cacheable requests are looked up by {@link ResponseCacheKey}. A hit replays the stored status, headers and body from
+ * the IO thread without entering the BoxLang runtime. On a miss the response body is captured while it is written and
+ * stored once the exchange completes, if the {@link CachePolicy} allows it.
+ *
+ * The cache is bounded by size and evicts the least recently used responses. Entries are dropped when their time to
+ * live expires, when a {@code POST}, {@code PUT}, {@code PATCH} or {@code DELETE} to the same path succeeds, when the
+ * web root changes, or on demand through JMX.
+ */
+public class ResponseCacheHandler implements HttpHandler, ResponseCacheMXBean {
+
+	/**
+	 * Responses larger than this are never cached
+	 */
+	public static final int											MAX_ENTRY_SIZE	= 1024 * 1024;
+
+	private final HttpHandler										next;
+	private final long												defaultTTL;
+	private final long												maxSize;
+	private final List<HttpString>									varyHeaders;
+	private final List<String>										varyCookies;
+
+	/**
+	 * Cached responses, in access order so the eldest entry is the least recently used
+	 */
+	private final LinkedHashMap<ResponseCacheKey, CachedResponse>	cache			= new LinkedHashMap<>( 256, 0.75f, true );
+	private long													size			= 0;
+
+	private final LongAdder											hitCount		= new LongAdder();
+	private final LongAdder											missCount		= new LongAdder();
+	private final LongAdder											storeCount		= new LongAdder();
+	private final LongAdder											evictionCount	= new LongAdder();
+
+	/**
+	 * Create a new response cache handler
+	 *
+	 * @param next        The BoxLang handler
+	 * @param defaultTTL  How long a response is cached in milliseconds when the template does not send a max age
+	 * @param maxSize     The maximum memory used by cached responses in bytes
+	 * @param varyHeaders The request headers that select a different response, like {@code Accept-Language}
+	 * @param varyCookies The request cookies that select a different response
+	 */
+	public ResponseCacheHandler( HttpHandler next, long defaultTTL, long maxSize, List<String> varyHeaders, List<String> varyCookies ) {
+		this.next			= next;
+		this.defaultTTL		= defaultTTL;
+		this.maxSize		= maxSize;
+		this.varyHeaders	= varyHeaders.stream().map( HttpString::new ).toList();
+		this.varyCookies	= List.copyOf( varyCookies );
+	}
+
+	/**
+	 * Drop every cached response when a file in the web root changes, if the resource manager can watch it
+	 *
+	 * @param resourceManager The resource manager for the web root
+	 *
+	 * @return This handler
+	 */
+	public ResponseCacheHandler invalidateOnChange( ResourceManager resourceManager ) {
+		if ( resourceManager.isResourceChangeListenerSupported() ) {
+			resourceManager.registerResourceChangeListener( changes -> invalidateAll() );
+		}
+		return this;
+	}
+
+	@Override
+	public void handleRequest( HttpServerExchange exchange ) throws Exception {
+		if ( !CachePolicy.isCacheableRequest( exchange ) || !CachePolicy.hasOnlyVaryCookies( exchange, varyCookies ) ) {
+			if ( CachePolicy.isUnsafeRequest( exchange ) ) {
+				// A successful change to a resource makes its cached representations stale
+				String path = exchange.getRequestPath();
+				exchange.addExchangeCompleteListener( ( completed, nextListener ) -> {
+					try {
+						if ( completed.getStatusCode() < StatusCodes.BAD_REQUEST ) {
+							remove( key -> key.path().equals( path ) );
+						}
+					} finally {
+						nextListener.proceed();
+					}
+				} );
+			}
+			next.handleRequest( exchange );
+			return;
+		}
+
+		ResponseCacheKey	key			= ResponseCacheKey.of( exchange, varyHeaders, varyCookies );
+		CachedResponse		response	= get( key );
+		if ( response != null ) {
+			hitCount.increment();
+			response.replay( exchange );
+			return;
+		}
+
+		missCount.increment();
+		ResponseCapture capture = ResponseCapture.start( exchange, MAX_ENTRY_SIZE );
+		exchange.addExchangeCompleteListener( ( completed, nextListener ) -> {
+			try {
+				store( key, completed, capture );
+			} finally {
+				nextListener.proceed();
+			}
+		} );
+		next.handleRequest( exchange );
+	}
+
+	/**
+	 * Get a response that has not expired yet
+	 *
+	 * @param key The cache key
+	 *
+	 * @return The response, or null if there is none
+	 */
+	private CachedResponse get( ResponseCacheKey key ) {
+		synchronized ( cache ) {
+			CachedResponse response = cache.get( key );
+			if ( response != null && response.isExpired() ) {
+				cache.remove( key );
+				size		-= response.size();
+				response	= null;
+			}
+			return response;
+		}
+	}
+
+	/**
+	 * Store the response of a completed exchange, if it can be cached
+	 *
+	 * @param key      The cache key
+	 * @param exchange The completed exchange
+	 * @param capture  The captured response body
+	 */
+	private void store( ResponseCacheKey key, HttpServerExchange exchange, ResponseCapture capture ) {
+		// A HEAD response has no body, storing it would answer the next GET with an empty page
+		if ( !exchange.getRequestMethod().equals( Methods.GET ) ) {
+			return;
+		}
+		long ttl = CachePolicy.getTTL( exchange, defaultTTL, varyHeaders );
+		if ( ttl <= 0 ) {
+			return;
+		}
+		byte[] body = capture.getBody();
+		if ( body == null ) {
+			return;
+		}
+		put( key, new CachedResponse( exchange.getStatusCode(), exchange.getResponseHeaders(), body, ttl ) );
+	}
+
+	/**
+	 * Add a response to the cache, evicting the least recently used ones to stay under the size limit
+	 *
+	 * @param key      The cache key
+	 * @param response The response
+	 */
+	private void put( ResponseCacheKey key, CachedResponse response ) {
+		if ( response.size() > maxSize ) {
+			return;
+		}
+		storeCount.increment();
+		synchronized ( cache ) {
+			CachedResponse previous = cache.put( key, response );
+			if ( previous != null ) {
+				size -= previous.size();
+			}
+			size += response.size();
+			Iterator<Map.Entry<ResponseCacheKey, CachedResponse>> entries = cache.entrySet().iterator();
+			while ( size > maxSize && entries.hasNext() ) {
+				size -= entries.next().getValue().size();
+				entries.remove();
+				evictionCount.increment();
+			}
+		}
+	}
+
+	/**
+	 * Drop the cached responses whose key matches a predicate
+	 *
+	 * @param predicate The keys to drop
+	 *
+	 * @return The number of responses dropped
+	 */
+	private int remove( Predicate<ResponseCacheKey> predicate ) {
+		int removed = 0;
+		synchronized ( cache ) {
+			Iterator<Map.Entry<ResponseCacheKey, CachedResponse>> entries = cache.entrySet().iterator();
+			while ( entries.hasNext() ) {
+				Map.Entry<ResponseCacheKey, CachedResponse> entry = entries.next();
+				if ( predicate.test( entry.getKey() ) ) {
+					size -= entry.getValue().size();
+					entries.remove();
+					removed++;
+				}
+			}
+		}
+		return removed;
+	}
+
+	@Override
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	@Override
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	@Override
+	public long getStoreCount() {
+		return storeCount.sum();
+	}
+
+	@Override
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	@Override
+	public int getEntryCount() {
+		synchronized ( cache ) {
+			return cache.size();
+		}
+	}
+
+	@Override
+	public long getCacheSize() {
+		synchronized ( cache ) {
+			return size;
+		}
+	}
+
+	@Override
+	public void invalidateAll() {
+		synchronized ( cache ) {
+			cache.clear();
+			size = 0;
+		}
+	}
+
+	@Override
+	public int invalidate( String pathPrefix ) {
+		return remove( key -> key.path().startsWith( pathPrefix ) );
+	}
+
+}
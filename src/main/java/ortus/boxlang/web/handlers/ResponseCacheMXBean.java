@@ -0,0 +1,69 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.handlers;
+
+/**
+ * JMX view of the {@link ResponseCacheHandler} output cache, including the invalidation hooks
+ */
+public interface ResponseCacheMXBean {
+
+	/**
+	 * @return The number of requests answered from the cache
+	 */
+	long getHitCount();
+
+	/**
+	 * @return The number of cacheable requests that had to run the template
+	 */
+	long getMissCount();
+
+	/**
+	 * @return The number of responses stored in the cache
+	 */
+	long getStoreCount();
+
+	/**
+	 * @return The number of responses evicted to keep the cache under its size limit
+	 */
+	long getEvictionCount();
+
+	/**
+	 * @return The number of cached responses
+	 */
+	int getEntryCount();
+
+	/**
+	 * @return The approximate memory used by the cached responses in bytes
+	 */
+	long getCacheSize();
+
+	/**
+	 * Drop every cached response
+	 */
+	void invalidateAll();
+
+	/**
+	 * Drop the cached responses of every request path that starts with a prefix
+	 *
+	 * @param pathPrefix The request path prefix, like {@code /blog/}
+	 *
+	 * @return The number of responses dropped
+	 */
+	int invalidate( String pathPrefix );
+
+}
@@ -0,0 +1,59 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.handlers;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import ortus.boxlang.web.routing.Route;
+import ortus.boxlang.web.routing.RouteResolver;
+
+/**
+ * Resolves the route of a request once and sends it to the BoxLang or static handler.
+ * The route is attached to the exchange so the rest of the chain does not need to match the path again.
+ */
+public class RoutingHandler implements HttpHandler {
+
+	private final RouteResolver	resolver;
+	private final HttpHandler	boxLangHandler;
+	private final HttpHandler	staticHandler;
+
+	/**
+	 * Create a new routing handler
+	 *
+	 * @param resolver       The route resolver
+	 * @param boxLangHandler The handler for BoxLang requests
+	 * @param staticHandler  The handler for static files
+	 */
+	public RoutingHandler( RouteResolver resolver, HttpHandler boxLangHandler, HttpHandler staticHandler ) {
+		this.resolver		= resolver;
+		this.boxLangHandler	= boxLangHandler;
+		this.staticHandler	= staticHandler;
+	}
+
+	@Override
+	public void handleRequest( HttpServerExchange exchange ) throws Exception {
+		Route route = resolver.resolve( exchange.getRelativePath() );
+		exchange.putAttachment( Route.ATTACHMENT_KEY, route );
+		if ( route.isBoxLang() ) {
+			boxLangHandler.handleRequest( exchange );
+		} else {
+			staticHandler.handleRequest( exchange );
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.handlers;
+
+/**
+ * JMX view of the {@link WelcomeFileHandler} resolution cache
+ */
+public interface WelcomeFileCacheMXBean {
+
+	/**
+	 * @return The number of requests resolved from the cache
+	 */
+	long getHitCount();
+
+	/**
+	 * @return The number of requests that had to look up the file system
+	 */
+	long getMissCount();
+
+	/**
+	 * @return The number of times the cache was cleared because the web root changed
+	 */
+	long getInvalidationCount();
+
+	/**
+	 * @return True if the cache is invalidated by watching the web root, false if entries expire after a TTL
+	 */
+	boolean isWatching();
+
+	/**
+	 * Clear the cache
+	 */
+	void clearCache();
+
+}
@@ -2,45 +2,127 @@ package ortus.boxlang.web.handlers;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.cache.LRUCache;
 import io.undertow.server.handlers.resource.Resource;
 import io.undertow.server.handlers.resource.ResourceManager;
 import io.undertow.util.CanonicalPathUtils;
 
-public class WelcomeFileHandler implements HttpHandler {
+/**
+ * Rewrites directory requests to the first welcome file found in the directory.
+ *
+ * Resolutions are cached per request path, including the paths that are not directories or have no welcome file, so a
+ * request only touches the file system on a cache miss. When the resource manager can watch the web root the whole cache
+ * is cleared on any change, otherwise entries expire after a TTL. Every clear starts a new generation, and a resolution
+ * that started in an older generation is not kept, so a lookup racing with a change can't cache a stale result.
+ */
+public class WelcomeFileHandler implements HttpHandler, WelcomeFileCacheMXBean {
 
-	private final HttpHandler		next;
-	private final ResourceManager	resourceManager;
-	private List<String>			welcomeFiles;
+	/**
+	 * The maximum number of request paths to cache
+	 */
+	private static final int				CACHE_SIZE			= 10000;
+
+	/**
+	 * Cached value for paths that are not rewritten
+	 */
+	private static final String				NO_WELCOME_FILE		= "";
+
+	private final HttpHandler				next;
+	private final ResourceManager			resourceManager;
+	private List<String>					welcomeFiles;
+
+	private final LRUCache<String, String>	cache;
+	private final boolean					watching;
+	private final LongAdder					hitCount			= new LongAdder();
+	private final LongAdder					missCount			= new LongAdder();
+	private final LongAdder					invalidationCount	= new LongAdder();
+
+	/**
+	 * Bumped every time the cache is cleared
+	 */
+	private final AtomicLong				generation			= new AtomicLong();
 
 	public WelcomeFileHandler( final HttpHandler next, ResourceManager resourceManager, List<String> welcomeFiles ) {
+		this( next, resourceManager, welcomeFiles, 5000 );
+	}
+
+	/**
+	 * Create a new welcome file handler
+	 *
+	 * @param next            The next handler
+	 * @param resourceManager The resource manager for the web root
+	 * @param welcomeFiles    The welcome files to look for, in order
+	 * @param cacheTTL        How long a resolution is cached in milliseconds when the web root cannot be watched
+	 */
+	public WelcomeFileHandler( final HttpHandler next, ResourceManager resourceManager, List<String> welcomeFiles, int cacheTTL ) {
 		this.next				= next;
 		this.resourceManager	= resourceManager;
 		this.welcomeFiles		= welcomeFiles;
+		this.watching			= resourceManager.isResourceChangeListenerSupported();
+		this.cache				= new LRUCache<>( CACHE_SIZE, this.watching ? -1 : cacheTTL );
+		if ( this.watching ) {
+			// Any change can add or remove a directory or a welcome file, so start over
+			resourceManager.registerResourceChangeListener( changes -> {
+				invalidationCount.increment();
+				clearCache();
+			} );
+		}
 	}
 
 	@Override
 	public void handleRequest( final HttpServerExchange exchange ) throws Exception {
-		Resource resource = resourceManager.getResource( canonicalize( exchange.getRelativePath() ) );
+		String	relativePath	= exchange.getRelativePath();
+		String	newPath			= cache.get( relativePath );
+		if ( newPath == null ) {
+			missCount.increment();
+			long generationBefore = generation.get();
+			newPath = resolve( relativePath );
+			cache.add( relativePath, newPath );
+			// The web root changed while resolving, the cache may have been cleared before the add
+			if ( generation.get() != generationBefore ) {
+				cache.remove( relativePath );
+			}
+		} else {
+			hitCount.increment();
+		}
+
+		if ( !newPath.isEmpty() ) {
+			exchange.setRelativePath( newPath );
+		}
+
+		next.handleRequest( exchange );
+
+	}
+
+	/**
+	 * Resolve the welcome file for a request path against the file system
+	 *
+	 * @param relativePath The relative request path
+	 *
+	 * @return The path of the welcome file, or {@link #NO_WELCOME_FILE} if the request should not be rewritten
+	 */
+	private String resolve( String relativePath ) throws IOException {
+		Resource resource = resourceManager.getResource( canonicalize( relativePath ) );
 		if ( resource != null && resource.isDirectory() ) {
-			Resource indexResource = getIndexFiles( exchange, resourceManager, resource.getPath(), welcomeFiles );
+			Resource indexResource = getIndexFiles( resourceManager, resource.getPath(), welcomeFiles );
 			if ( indexResource != null ) {
 				String newPath = indexResource.getPath();
 				// ensure leading slash
 				if ( !newPath.startsWith( "/" ) ) {
 					newPath = "/" + newPath;
 				}
-				exchange.setRelativePath( newPath );
+				return newPath;
 			}
 		}
-
-		next.handleRequest( exchange );
-
+		return NO_WELCOME_FILE;
 	}
 
-	private Resource getIndexFiles( HttpServerExchange exchange, ResourceManager resourceManager, final String base,
+	private Resource getIndexFiles( ResourceManager resourceManager, final String base,
 	    List<String> possible ) throws IOException {
 		if ( possible == null ) {
 			return null;
@@ -63,4 +145,30 @@ public class WelcomeFileHandler implements HttpHandler {
 	private String canonicalize( String s ) {
 		return CanonicalPathUtils.canonicalize( s );
 	}
-}
+
+	@Override
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	@Override
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	@Override
+	public long getInvalidationCount() {
+		return invalidationCount.sum();
+	}
+
+	@Override
+	public boolean isWatching() {
+		return watching;
+	}
+
+	@Override
+	public void clearCache() {
+		generation.incrementAndGet();
+		cache.clear();
+	}
+}
\ No newline at end of file
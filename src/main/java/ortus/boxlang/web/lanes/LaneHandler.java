@@ -0,0 +1,75 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.lanes;
+
+import java.util.List;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+
+/**
+ * Assigns a request to its {@link RequestLane}: the first path prefix lane that matches, otherwise the default lane of
+ * the handler.
+ *
+ * The lane becomes the dispatch executor of the exchange, so handlers that dispatch without an executor, like
+ * Undertow's {@code ResourceHandler}, run on it. It is also attached to the exchange for handlers that dispatch later,
+ * after waiting in another queue.
+ */
+public class LaneHandler implements HttpHandler {
+
+	private final List<RequestLane>	prefixLanes;
+	private final RequestLane		defaultLane;
+	private final HttpHandler		next;
+
+	/**
+	 * Create a lane handler
+	 *
+	 * @param prefixLanes The path prefix lanes, checked in order
+	 * @param defaultLane The lane for every other request, or null to leave them on the XNIO worker pool
+	 * @param next        The next handler
+	 */
+	public LaneHandler( List<RequestLane> prefixLanes, RequestLane defaultLane, HttpHandler next ) {
+		this.prefixLanes	= prefixLanes;
+		this.defaultLane	= defaultLane;
+		this.next			= next;
+	}
+
+	@Override
+	public void handleRequest( HttpServerExchange exchange ) throws Exception {
+		RequestLane lane = select( exchange.getRelativePath() );
+		if ( lane != null ) {
+			exchange.putAttachment( RequestLane.ATTACHMENT_KEY, lane );
+			exchange.setDispatchExecutor( lane );
+		}
+		this.next.handleRequest( exchange );
+	}
+
+	/**
+	 * The lane of a request path
+	 */
+	private RequestLane select( String path ) {
+		for ( int i = 0; i < this.prefixLanes.size(); i++ ) {
+			RequestLane lane = this.prefixLanes.get( i );
+			if ( lane.matches( path ) ) {
+				return lane;
+			}
+		}
+		return this.defaultLane;
+	}
+
+}
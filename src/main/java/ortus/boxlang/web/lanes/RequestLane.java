@@ -0,0 +1,179 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.lanes;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.undertow.util.AttachmentKey;
+
+/**
+ * A bulkhead for one class of requests: its own bounded thread pool and queue, so a burst of slow requests in one lane
+ * can't take the threads of another.
+ *
+ * A lane is an {@link Executor}, requests are dispatched to it by the {@link LaneHandler}. When all its threads are busy
+ * and its queue is full the dispatch is rejected, and Undertow answers the request with a 503.
+ */
+public class RequestLane implements Executor, RequestLaneMXBean {
+
+	/**
+	 * The lane a request was assigned to, so handlers that dispatch themselves use it too
+	 */
+	public static final AttachmentKey<RequestLane>	ATTACHMENT_KEY	= AttachmentKey.create( RequestLane.class );
+
+	/**
+	 * How long an idle thread is kept, in seconds
+	 */
+	private static final long						KEEP_ALIVE		= 60;
+
+	private final String							name;
+	private final String							prefix;
+	private final int								threads;
+	private final int								queueCapacity;
+	private final ThreadPoolExecutor				pool;
+	private final LongAdder							rejected		= new LongAdder();
+
+	/**
+	 * Create a lane
+	 *
+	 * @param name          The lane name, used for the thread names and the metrics
+	 * @param prefix        The path prefix the lane serves, or null for the static and BoxLang lanes
+	 * @param threads       The maximum number of threads
+	 * @param queueCapacity The maximum number of requests waiting for a thread, 0 to reject as soon as all threads are
+	 *                      busy
+	 * @param virtual       True to run the requests on virtual threads, still at most {@code threads} at a time
+	 */
+	public RequestLane( String name, String prefix, int threads, int queueCapacity, boolean virtual ) {
+		if ( threads < 1 ) {
+			throw new IllegalArgumentException( "The " + name + " lane needs at least one thread" );
+		}
+		this.name			= name;
+		this.prefix			= prefix;
+		this.threads		= threads;
+		this.queueCapacity	= Math.max( queueCapacity, 0 );
+
+		ThreadFactory			factory	= virtual
+		    ? Thread.ofVirtual().name( "bx-" + name + "-", 0 ).factory()
+		    : Thread.ofPlatform().name( "bx-" + name + "-", 0 ).daemon( true ).factory();
+		BlockingQueue<Runnable>	queue	= this.queueCapacity > 0 ? new ArrayBlockingQueue<>( this.queueCapacity ) : new SynchronousQueue<>();
+		this.pool = new ThreadPoolExecutor( threads, threads, KEEP_ALIVE, TimeUnit.SECONDS, queue, factory, ( task, executor ) -> {
+			rejected.increment();
+			throw new RejectedExecutionException( "The " + this.name + " lane is full" );
+		} );
+		// Lanes that sit idle don't hold on to their threads
+		this.pool.allowCoreThreadTimeOut( true );
+	}
+
+	/**
+	 * Parse a path prefix lane, written as {@code name:prefix:threads:queue}, like {@code api:/api/:16:200}
+	 *
+	 * @param definition The lane definition
+	 * @param virtual    True to run the requests on virtual threads
+	 *
+	 * @return The lane
+	 *
+	 * @throws IllegalArgumentException If the definition is not valid
+	 */
+	public static RequestLane parse( String definition, boolean virtual ) {
+		String[] parts = definition.trim().split( ":" );
+		if ( parts.length != 4 || parts[ 0 ].isBlank() || !parts[ 1 ].startsWith( "/" ) ) {
+			throw new IllegalArgumentException( "Invalid lane [" + definition + "], expected name:/prefix/:threads:queue" );
+		}
+		try {
+			return new RequestLane( parts[ 0 ], parts[ 1 ], Integer.parseInt( parts[ 2 ] ), Integer.parseInt( parts[ 3 ] ), virtual );
+		} catch ( NumberFormatException e ) {
+			throw new IllegalArgumentException( "Invalid lane [" + definition + "], expected name:/prefix/:threads:queue" );
+		}
+	}
+
+	@Override
+	public void execute( Runnable task ) {
+		this.pool.execute( task );
+	}
+
+	/**
+	 * Whether a request path belongs to this lane
+	 *
+	 * @param path The request path
+	 *
+	 * @return True if the lane has a prefix and the path starts with it
+	 */
+	public boolean matches( String path ) {
+		return this.prefix != null && path.startsWith( this.prefix );
+	}
+
+	/**
+	 * Stop taking requests, the ones already running or queued still finish
+	 */
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public String getPrefix() {
+		return this.prefix;
+	}
+
+	@Override
+	public int getThreads() {
+		return this.threads;
+	}
+
+	@Override
+	public int getActiveThreads() {
+		return this.pool.getActiveCount();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return this.pool.getQueue().size();
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return this.queueCapacity;
+	}
+
+	@Override
+	public long getCompletedCount() {
+		return this.pool.getCompletedTaskCount();
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return this.rejected.sum();
+	}
+
+	@Override
+	public String toString() {
+		return this.name + ( this.prefix != null ? " " + this.prefix : "" ) + " (" + this.threads + " threads, " + this.queueCapacity + " queued)";
+	}
+
+}
@@ -0,0 +1,65 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.lanes;
+
+/**
+ * JMX view of a {@link RequestLane} thread pool
+ */
+public interface RequestLaneMXBean {
+
+	/**
+	 * @return The lane name, like {@code static}, {@code boxlang} or the name of a path prefix lane
+	 */
+	String getName();
+
+	/**
+	 * @return The path prefix the lane serves, or null for the static and BoxLang lanes
+	 */
+	String getPrefix();
+
+	/**
+	 * @return The maximum number of threads
+	 */
+	int getThreads();
+
+	/**
+	 * @return The number of threads running a request
+	 */
+	int getActiveThreads();
+
+	/**
+	 * @return The number of requests waiting for a thread
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return The maximum number of requests that can wait for a thread
+	 */
+	int getQueueCapacity();
+
+	/**
+	 * @return The total number of requests that ran on the lane
+	 */
+	long getCompletedCount();
+
+	/**
+	 * @return The total number of requests rejected with a 503 because the queue was full
+	 */
+	long getRejectedCount();
+
+}
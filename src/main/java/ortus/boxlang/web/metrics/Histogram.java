@@ -0,0 +1,104 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed buckets, in the shape Prometheus expects.
+ *
+ * Every bucket is a striped {@link LongAdder}, so recording a sample is a short scan of the bounds and an uncontended
+ * increment, without locks or allocation.
+ */
+public class Histogram {
+
+	/**
+	 * The default bucket upper bounds, in seconds
+	 */
+	public static final double[]	DEFAULT_BOUNDS	= { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+	private final double[]			bounds;
+	private final long[]			boundsNanos;
+
+	/**
+	 * The samples per bucket, the last one is for samples over the largest bound
+	 */
+	private final LongAdder[]		counts;
+	private final LongAdder			sumNanos		= new LongAdder();
+
+	/**
+	 * Create a histogram with the default buckets
+	 */
+	public Histogram() {
+		this( DEFAULT_BOUNDS );
+	}
+
+	/**
+	 * Create a histogram
+	 *
+	 * @param bounds The bucket upper bounds in seconds, in increasing order
+	 */
+	public Histogram( double[] bounds ) {
+		this.bounds			= bounds;
+		this.boundsNanos	= new long[ bounds.length ];
+		this.counts			= new LongAdder[ bounds.length + 1 ];
+		for ( int i = 0; i < bounds.length; i++ ) {
+			boundsNanos[ i ] = ( long ) ( bounds[ i ] * TimeUnit.SECONDS.toNanos( 1 ) );
+		}
+		for ( int i = 0; i < counts.length; i++ ) {
+			counts[ i ] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Record a sample
+	 *
+	 * @param nanos The duration in nanoseconds
+	 */
+	public void record( long nanos ) {
+		int bucket = 0;
+		while ( bucket < boundsNanos.length && nanos > boundsNanos[ bucket ] ) {
+			bucket++;
+		}
+		counts[ bucket ].increment();
+		sumNanos.add( nanos );
+	}
+
+	/**
+	 * Write the histogram in the Prometheus text format
+	 *
+	 * @param out    The output
+	 * @param name   The metric name
+	 * @param labels The labels shared by all the series, like {@code route="/index.bxm"}, or an empty string
+	 */
+	public void write( StringBuilder out, String name, String labels ) {
+		String	prefix		= labels.isEmpty() ? "" : labels + ",";
+		long	cumulative	= 0;
+		for ( int i = 0; i < bounds.length; i++ ) {
+			cumulative += counts[ i ].sum();
+			out.append( name ).append( "_bucket{" ).append( prefix ).append( "le=\"" ).append( bounds[ i ] ).append( "\"} " ).append( cumulative ).append( '\n' );
+		}
+		cumulative += counts[ bounds.length ].sum();
+		out.append( name ).append( "_bucket{" ).append( prefix ).append( "le=\"+Inf\"} " ).append( cumulative ).append( '\n' );
+		String suffix = labels.isEmpty() ? " " : "{" + labels + "} ";
+		out.append( name ).append( "_sum" ).append( suffix ).append( sumNanos.sum() / 1e9 ).append( '\n' );
+		out.append( name ).append( "_count" ).append( suffix ).append( cumulative ).append( '\n' );
+	}
+
+}
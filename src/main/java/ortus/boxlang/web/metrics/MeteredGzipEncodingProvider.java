@@ -0,0 +1,77 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.metrics;
+
+import java.util.zip.Deflater;
+
+import org.xnio.conduits.StreamSinkConduit;
+
+import io.undertow.conduits.DeflatingStreamSinkConduit;
+import io.undertow.conduits.GzipStreamSinkConduit;
+import io.undertow.server.ConduitWrapper;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.encoding.ContentEncodingProvider;
+import io.undertow.util.ConduitFactory;
+import io.undertow.util.ObjectPool;
+
+/**
+ * The gzip content encoding, recording the size of every response before and after compression.
+ *
+ * The sizes are read from the deflater as the gzip trailer is written, once the whole body is compressed and before
+ * Undertow returns the deflater to its pool, so metering adds no work to the writes themselves.
+ */
+public class MeteredGzipEncodingProvider implements ContentEncodingProvider {
+
+	private final ServerMetrics				metrics;
+	private final ObjectPool<Deflater>		deflaterPool;
+
+	/**
+	 * Create the provider
+	 *
+	 * @param metrics The metrics to record the compression into
+	 */
+	public MeteredGzipEncodingProvider( ServerMetrics metrics ) {
+		this.metrics		= metrics;
+		this.deflaterPool	= DeflatingStreamSinkConduit.newInstanceDeflaterPool( Deflater.DEFAULT_COMPRESSION );
+	}
+
+	@Override
+	public ConduitWrapper<StreamSinkConduit> getResponseWrapper() {
+		return ( factory, exchange ) -> new MeteredGzipConduit( factory, exchange );
+	}
+
+	/**
+	 * A gzip conduit that reports its deflater counts when the body is complete
+	 */
+	private final class MeteredGzipConduit extends GzipStreamSinkConduit {
+
+		MeteredGzipConduit( ConduitFactory<StreamSinkConduit> factory, HttpServerExchange exchange ) {
+			super( factory, exchange, deflaterPool );
+		}
+
+		@Override
+		protected byte[] getTrailer() {
+			Deflater current = deflater;
+			if ( current != null ) {
+				metrics.recordGzip( current.getBytesRead(), current.getBytesWritten() );
+			}
+			return super.getTrailer();
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.metrics;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+
+/**
+ * Records the metrics of every request and serves them in the Prometheus text format at the metrics path.
+ *
+ * It goes first in the handler chain. The metrics page is rendered on the IO thread. For other requests the handler
+ * registers itself as the completion listener, so tracking a request allocates nothing. The request start time comes
+ * from Undertow, which needs {@code UndertowOptions.RECORD_REQUEST_START_TIME}.
+ */
+public class MetricsHandler implements HttpHandler, ExchangeCompletionListener {
+
+	private final ServerMetrics	metrics;
+	private final String		path;
+	private final HttpHandler	next;
+
+	/**
+	 * Create a new metrics handler
+	 *
+	 * @param metrics The metrics to record into
+	 * @param path    The path the metrics are served at, like {@code /__metrics}
+	 * @param next    The rest of the handler chain
+	 */
+	public MetricsHandler( ServerMetrics metrics, String path, HttpHandler next ) {
+		this.metrics	= metrics;
+		this.path		= path;
+		this.next		= next;
+	}
+
+	@Override
+	public void handleRequest( HttpServerExchange exchange ) throws Exception {
+		if ( exchange.getRequestPath().equals( path ) ) {
+			if ( !exchange.getRequestMethod().equals( Methods.GET ) ) {
+				exchange.setStatusCode( StatusCodes.METHOD_NOT_ALLOWED );
+				exchange.endExchange();
+				return;
+			}
+			exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, "text/plain; version=0.0.4; charset=utf-8" );
+			exchange.getResponseHeaders().put( Headers.CACHE_CONTROL, "no-store" );
+			exchange.getResponseSender().send( metrics.scrape() );
+			return;
+		}
+		metrics.requestStarted();
+		exchange.addExchangeCompleteListener( this );
+		next.handleRequest( exchange );
+	}
+
+	@Override
+	public void exchangeEvent( HttpServerExchange exchange, NextListener nextListener ) {
+		try {
+			long start = exchange.getRequestStartTime();
+			metrics.requestCompleted( exchange, start > 0 ? System.nanoTime() - start : -1 );
+		} finally {
+			nextListener.proceed();
+		}
+	}
+
+}
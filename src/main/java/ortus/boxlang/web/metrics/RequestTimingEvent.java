@@ -0,0 +1,173 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.metrics;
+
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event with the time a BoxLang request spent in each phase of the {@code BLHandler}.
+ *
+ * The event starts when the request reaches the handler on the IO thread and is committed when the exchange completes,
+ * so the response phase includes sending the rest of the body. The phases are laps of a single clock, they add up to
+ * the event duration. When no recording has the event enabled the commit is skipped and only the timestamps are taken.
+ */
+@Name( "ortus.boxlang.web.Request" )
+@Label( "BoxLang Request" )
+@Category( { "BoxLang", "MiniServer" } )
+@Description( "The time a BoxLang request spent in each phase of the MiniServer" )
+@StackTrace( false )
+public class RequestTimingEvent extends Event implements ExchangeCompletionListener {
+
+	/**
+	 * The timing of the current exchange
+	 */
+	public static final AttachmentKey<RequestTimingEvent>	ATTACHMENT_KEY	= AttachmentKey.create( RequestTimingEvent.class );
+
+	@Label( "Method" )
+	String													method;
+
+	@Label( "Path" )
+	String													path;
+
+	@Label( "Status" )
+	int														status;
+
+	@Label( "Dispatch Wait" )
+	@Description( "Waiting for a request thread after leaving the IO thread" )
+	@Timespan( Timespan.NANOSECONDS )
+	long													dispatchWait;
+
+	@Label( "Routing" )
+	@Description( "Resolving the template and the path info" )
+	@Timespan( Timespan.NANOSECONDS )
+	long													routing;
+
+	@Label( "Form Parsing" )
+	@Description( "Parsing the form or multipart body" )
+	@Timespan( Timespan.NANOSECONDS )
+	long													formParsing;
+
+	@Label( "Execution" )
+	@Description( "Running the template, without the form parsing" )
+	@Timespan( Timespan.NANOSECONDS )
+	long													execution;
+
+	@Label( "Response" )
+	@Description( "Finalizing the response and sending what was still held" )
+	@Timespan( Timespan.NANOSECONDS )
+	long													response;
+
+	/**
+	 * The end of the last phase
+	 */
+	private transient long									mark;
+
+	/**
+	 * Start timing an exchange and attach the timing to it
+	 *
+	 * @param exchange The exchange, still on the IO thread
+	 *
+	 * @return The timing
+	 */
+	public static RequestTimingEvent start( HttpServerExchange exchange ) {
+		RequestTimingEvent event = new RequestTimingEvent();
+		event.begin();
+		event.mark = System.nanoTime();
+		exchange.putAttachment( ATTACHMENT_KEY, event );
+		exchange.addExchangeCompleteListener( event );
+		return event;
+	}
+
+	/**
+	 * The request is running on a request thread
+	 */
+	public void dispatched() {
+		dispatchWait = lap();
+	}
+
+	/**
+	 * The route and path info are resolved
+	 */
+	public void routed() {
+		routing = lap();
+	}
+
+	/**
+	 * The template is done
+	 *
+	 * @param formParseTime The part of the execution spent parsing the form, in nanoseconds
+	 */
+	public void executed( long formParseTime ) {
+		formParsing	= formParseTime;
+		execution	= lap() - formParseTime;
+	}
+
+	/**
+	 * Render the phases so far as a {@code Server-Timing} header value
+	 *
+	 * @return The header value, with durations in milliseconds
+	 */
+	public String toServerTiming() {
+		return "dispatch;dur=" + millis( dispatchWait )
+		    + ", route;dur=" + millis( routing )
+		    + ", form;dur=" + millis( formParsing )
+		    + ", exec;dur=" + millis( execution );
+	}
+
+	@Override
+	public void exchangeEvent( HttpServerExchange exchange, NextListener nextListener ) {
+		try {
+			response = lap();
+			end();
+			if ( shouldCommit() ) {
+				method	= exchange.getRequestMethod().toString();
+				path	= exchange.getRequestPath();
+				status	= exchange.getStatusCode();
+				commit();
+			}
+		} finally {
+			nextListener.proceed();
+		}
+	}
+
+	/**
+	 * Time since the end of the last phase
+	 *
+	 * @return The phase duration in nanoseconds
+	 */
+	private long lap() {
+		long	now		= System.nanoTime();
+		long	elapsed	= now - mark;
+		mark = now;
+		return elapsed;
+	}
+
+	private static String millis( long nanos ) {
+		return String.valueOf( nanos / 1000 / 1000.0 );
+	}
+
+}
@@ -0,0 +1,317 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import org.xnio.management.XnioWorkerMXBean;
+
+import io.undertow.Undertow;
+import io.undertow.server.ConnectorStatistics;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.StatusCodes;
+import ortus.boxlang.web.handlers.AdmissionControlMXBean;
+import ortus.boxlang.web.lanes.RequestLaneMXBean;
+import ortus.boxlang.web.routing.Route;
+
+/**
+ * The runtime metrics of the MiniServer, rendered in the Prometheus text format by the {@link MetricsHandler}.
+ *
+ * Everything recorded on the request path goes into striped counters and fixed bucket histograms, so it takes no locks
+ * and allocates nothing once a route has been seen. Route histograms are keyed by the template path of BoxLang routes,
+ * up to {@link #MAX_ROUTES} templates, later templates and unrouted requests are counted together under {@code other}.
+ * A template only gets its own histogram once it answered with something other than a 404, so requests for templates
+ * that don't exist can't use up the slots. Static files share a single {@code static} histogram. The worker pool,
+ * connection byte counts, admission control and request lane state are read when scraped.
+ */
+public class ServerMetrics {
+
+	/**
+	 * The maximum number of routes with their own latency histogram
+	 */
+	public static final int							MAX_ROUTES			= 500;
+
+	private static final String						OTHER_ROUTE			= "other";
+	private static final String						STATIC_ROUTE		= "static";
+
+	/**
+	 * Completed requests by status class, 1xx to 5xx
+	 */
+	private final LongAdder[]						statusClasses		= new LongAdder[ 5 ];
+	private final AtomicLong						inFlight			= new AtomicLong();
+	private final Map<String, Histogram>			routes				= new ConcurrentHashMap<>();
+	private final Histogram							otherRoutes			= new Histogram();
+	private final Histogram							staticRoutes		= new Histogram();
+	private final Histogram							queueWait			= new Histogram();
+	private final LongAdder							gzipBytesIn			= new LongAdder();
+	private final LongAdder							gzipBytesOut		= new LongAdder();
+	private final LongAdder							timeouts			= new LongAdder();
+
+	/**
+	 * Read when scraped, set once the server is built
+	 */
+	private volatile XnioWorkerMXBean				worker;
+	private volatile List<Undertow.ListenerInfo>	listeners			= List.of();
+	private volatile AdmissionControlMXBean			admissionControl;
+	private volatile List<RequestLaneMXBean>		lanes				= List.of();
+
+	public ServerMetrics() {
+		for ( int i = 0; i < statusClasses.length; i++ ) {
+			statusClasses[ i ] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Read the XNIO worker pool utilization from this worker
+	 *
+	 * @param worker The worker MXBean
+	 *
+	 * @return These metrics
+	 */
+	public ServerMetrics setWorker( XnioWorkerMXBean worker ) {
+		this.worker = worker;
+		return this;
+	}
+
+	/**
+	 * Read the bytes received and sent from the statistics of these listeners. The server must be built with
+	 * {@code UndertowOptions.ENABLE_STATISTICS}.
+	 *
+	 * @param listeners The server listeners
+	 *
+	 * @return These metrics
+	 */
+	public ServerMetrics setListeners( List<Undertow.ListenerInfo> listeners ) {
+		this.listeners = listeners;
+		return this;
+	}
+
+	/**
+	 * Read the concurrency limit and queue depth from the admission control
+	 *
+	 * @param admissionControl The admission control
+	 *
+	 * @return These metrics
+	 */
+	public ServerMetrics setAdmissionControl( AdmissionControlMXBean admissionControl ) {
+		this.admissionControl = admissionControl;
+		return this;
+	}
+
+	/**
+	 * Read the thread and queue usage of the request lanes
+	 *
+	 * @param lanes The request lanes
+	 *
+	 * @return These metrics
+	 */
+	public ServerMetrics setLanes( List<? extends RequestLaneMXBean> lanes ) {
+		this.lanes = List.copyOf( lanes );
+		return this;
+	}
+
+	/**
+	 * A request entered the server
+	 */
+	public void requestStarted() {
+		inFlight.incrementAndGet();
+	}
+
+	/**
+	 * A request completed
+	 *
+	 * @param exchange The completed exchange
+	 * @param nanos    How long it took in nanoseconds, or a negative value if unknown
+	 */
+	public void requestCompleted( HttpServerExchange exchange, long nanos ) {
+		inFlight.decrementAndGet();
+		int statusClass = exchange.getStatusCode() / 100;
+		if ( statusClass >= 1 && statusClass <= 5 ) {
+			statusClasses[ statusClass - 1 ].increment();
+		}
+		if ( nanos >= 0 ) {
+			getRouteHistogram( exchange.getAttachment( Route.ATTACHMENT_KEY ), exchange.getStatusCode() ).record( nanos );
+		}
+	}
+
+	/**
+	 * A BoxLang request ran over its timeout
+	 */
+	public void requestTimedOut() {
+		timeouts.increment();
+	}
+
+	/**
+	 * A request waited for an admission control permit
+	 *
+	 * @param nanos How long it waited in nanoseconds
+	 */
+	public void recordQueueWait( long nanos ) {
+		queueWait.record( nanos );
+	}
+
+	/**
+	 * A response was gzipped
+	 *
+	 * @param bytesIn  The uncompressed size
+	 * @param bytesOut The compressed size
+	 */
+	public void recordGzip( long bytesIn, long bytesOut ) {
+		gzipBytesIn.add( bytesIn );
+		gzipBytesOut.add( bytesOut );
+	}
+
+	/**
+	 * The histogram of a route, created the first time a template is found
+	 */
+	private Histogram getRouteHistogram( Route route, int status ) {
+		if ( route == null ) {
+			return otherRoutes;
+		}
+		if ( !route.isBoxLang() ) {
+			return staticRoutes;
+		}
+		Histogram histogram = routes.get( route.path() );
+		if ( histogram != null ) {
+			return histogram;
+		}
+		// A 404 means the route didn't resolve to a template, don't give every probed path a histogram
+		if ( status == StatusCodes.NOT_FOUND || routes.size() >= MAX_ROUTES ) {
+			return otherRoutes;
+		}
+		return routes.computeIfAbsent( route.path(), path -> new Histogram() );
+	}
+
+	/**
+	 * Render all the metrics in the Prometheus text format
+	 *
+	 * @return The metrics
+	 */
+	public String scrape() {
+		StringBuilder out = new StringBuilder( 4096 );
+
+		out.append( "# HELP boxlang_requests_total Completed requests by status class\n" );
+		out.append( "# TYPE boxlang_requests_total counter\n" );
+		for ( int i = 0; i < statusClasses.length; i++ ) {
+			out.append( "boxlang_requests_total{status=\"" ).append( i + 1 ).append( "xx\"} " ).append( statusClasses[ i ].sum() ).append( '\n' );
+		}
+
+		out.append( "# HELP boxlang_requests_in_flight Requests being processed\n" );
+		out.append( "# TYPE boxlang_requests_in_flight gauge\n" );
+		out.append( "boxlang_requests_in_flight " ).append( inFlight.get() ).append( '\n' );
+
+		out.append( "# HELP boxlang_request_duration_seconds Request latency by template\n" );
+		out.append( "# TYPE boxlang_request_duration_seconds histogram\n" );
+		for ( Map.Entry<String, Histogram> route : new TreeMap<>( routes ).entrySet() ) {
+			route.getValue().write( out, "boxlang_request_duration_seconds", "route=\"" + escape( route.getKey() ) + "\"" );
+		}
+		staticRoutes.write( out, "boxlang_request_duration_seconds", "route=\"" + STATIC_ROUTE + "\"" );
+		otherRoutes.write( out, "boxlang_request_duration_seconds", "route=\"" + OTHER_ROUTE + "\"" );
+
+		out.append( "# HELP boxlang_queue_wait_seconds Time requests waited for an admission control permit\n" );
+		out.append( "# TYPE boxlang_queue_wait_seconds histogram\n" );
+		queueWait.write( out, "boxlang_queue_wait_seconds", "" );
+
+		AdmissionControlMXBean admission = admissionControl;
+		if ( admission != null ) {
+			gauge( out, "boxlang_admission_limit", "The current admission control concurrency limit", admission.getLimit() );
+			gauge( out, "boxlang_admission_queue_depth", "Requests waiting for an admission control permit", admission.getQueueDepth() );
+			counter( out, "boxlang_admission_shed_total", "Requests rejected by admission control", admission.getShedCount() + admission.getQueueTimeoutCount() );
+		}
+
+		counter( out, "boxlang_request_timeouts_total", "BoxLang requests that ran over their timeout", timeouts.sum() );
+
+		List<RequestLaneMXBean> requestLanes = lanes;
+		if ( !requestLanes.isEmpty() ) {
+			laneMetric( out, requestLanes, "boxlang_lane_threads_active", "gauge", "Request lane threads running a request", RequestLaneMXBean::getActiveThreads );
+			laneMetric( out, requestLanes, "boxlang_lane_threads_max", "gauge", "Maximum request lane threads", RequestLaneMXBean::getThreads );
+			laneMetric( out, requestLanes, "boxlang_lane_queue_depth", "gauge", "Requests waiting for a request lane thread", RequestLaneMXBean::getQueueDepth );
+			laneMetric( out, requestLanes, "boxlang_lane_completed_total", "counter", "Requests that ran on a request lane", RequestLaneMXBean::getCompletedCount );
+			laneMetric( out, requestLanes, "boxlang_lane_rejected_total", "counter", "Requests rejected because a request lane was full", RequestLaneMXBean::getRejectedCount );
+		}
+
+		XnioWorkerMXBean pool = worker;
+		if ( pool != null ) {
+			// Not every worker pool implementation tracks its busy threads
+			int busy = pool.getBusyWorkerThreadCount();
+			if ( busy >= 0 ) {
+				gauge( out, "boxlang_worker_threads_busy", "Busy XNIO worker threads", busy );
+			}
+			gauge( out, "boxlang_worker_threads", "Current XNIO worker pool size", pool.getWorkerPoolSize() );
+			gauge( out, "boxlang_worker_threads_max", "Maximum XNIO worker pool size", pool.getMaxWorkerPoolSize() );
+			gauge( out, "boxlang_worker_queue_size", "Tasks waiting for an XNIO worker thread", pool.getWorkerQueueSize() );
+		}
+
+		long	received	= 0;
+		long	sent		= 0;
+		for ( Undertow.ListenerInfo listener : listeners ) {
+			ConnectorStatistics statistics = listener.getConnectorStatistics();
+			if ( statistics != null ) {
+				received	+= statistics.getBytesReceived();
+				sent		+= statistics.getBytesSent();
+			}
+		}
+		counter( out, "boxlang_bytes_received_total", "Bytes received from clients", received );
+		counter( out, "boxlang_bytes_sent_total", "Bytes sent to clients", sent );
+
+		long	in	= gzipBytesIn.sum();
+		long	gz	= gzipBytesOut.sum();
+		counter( out, "boxlang_gzip_bytes_in_total", "Response bytes before gzip compression", in );
+		counter( out, "boxlang_gzip_bytes_out_total", "Response bytes after gzip compression", gz );
+		out.append( "# HELP boxlang_gzip_compression_ratio Uncompressed over compressed size of gzipped responses\n" );
+		out.append( "# TYPE boxlang_gzip_compression_ratio gauge\n" );
+		out.append( "boxlang_gzip_compression_ratio " ).append( gz > 0 ? ( double ) in / gz : 0 ).append( '\n' );
+
+		return out.toString();
+	}
+
+	private static void laneMetric( StringBuilder out, List<RequestLaneMXBean> lanes, String name, String type, String help,
+	    ToLongFunction<RequestLaneMXBean> value ) {
+		out.append( "# HELP " ).append( name ).append( ' ' ).append( help ).append( '\n' );
+		out.append( "# TYPE " ).append( name ).append( ' ' ).append( type ).append( '\n' );
+		for ( RequestLaneMXBean lane : lanes ) {
+			out.append( name ).append( "{lane=\"" ).append( escape( lane.getName() ) ).append( "\"} " ).append( value.applyAsLong( lane ) ).append( '\n' );
+		}
+	}
+
+	private static void gauge( StringBuilder out, String name, String help, long value ) {
+		out.append( "# HELP " ).append( name ).append( ' ' ).append( help ).append( '\n' );
+		out.append( "# TYPE " ).append( name ).append( " gauge\n" );
+		out.append( name ).append( ' ' ).append( value ).append( '\n' );
+	}
+
+	private static void counter( StringBuilder out, String name, String help, long value ) {
+		out.append( "# HELP " ).append( name ).append( ' ' ).append( help ).append( '\n' );
+		out.append( "# TYPE " ).append( name ).append( " counter\n" );
+		out.append( name ).append( ' ' ).append( value ).append( '\n' );
+	}
+
+	/**
+	 * Escape a label value
+	 */
+	private static String escape( String value ) {
+		return value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" );
+	}
+
+}
@@ -0,0 +1,55 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.resources;
+
+/**
+ * JMX view of the {@link CompressedResourceSupplier} compressed variant cache
+ */
+public interface CompressedResourceCacheMXBean {
+
+	/**
+	 * @return The number of responses served from a precompressed file next to the original
+	 */
+	long getPrecompressedCount();
+
+	/**
+	 * @return The number of responses served from the compressed variant cache
+	 */
+	long getHitCount();
+
+	/**
+	 * @return The number of times a file was compressed on the fly
+	 */
+	long getCompressCount();
+
+	/**
+	 * @return The number of compressed variants in the cache
+	 */
+	int getEntryCount();
+
+	/**
+	 * @return The total size of the cached compressed variants in bytes
+	 */
+	long getCacheSize();
+
+	/**
+	 * Clear the cache
+	 */
+	void clearCache();
+
+}
@@ -0,0 +1,455 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.resources;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.resource.Resource;
+import io.undertow.server.handlers.resource.ResourceManager;
+import io.undertow.server.handlers.resource.ResourceSupplier;
+import io.undertow.util.ETag;
+import io.undertow.util.Headers;
+import io.undertow.util.MimeMappings;
+import io.undertow.util.QValueParser;
+
+/**
+ * Serves compressed variants of static files so they are not compressed again on every request.
+ *
+ * For a compressible file that the client accepts compressed, a precompressed sibling ({@code app.js.br} or
+ * {@code app.js.gz}) is served when it exists and is not older than the file itself. Otherwise the file is gzipped once
+ * and the result is kept off heap in a cache keyed by path, last modified date and encoding, bounded by size with LRU
+ * eviction. A change to the file gives it a new key, so a stale variant is never served.
+ *
+ * Responses for compressible files always carry {@code Vary: Accept-Encoding}. Range requests are served from the
+ * original file.
+ */
+public class CompressedResourceSupplier implements ResourceSupplier, CompressedResourceCacheMXBean {
+
+	/**
+	 * Files smaller than this are not worth compressing
+	 */
+	public static final int								MIN_SIZE			= 1500;
+
+	private static final String							BROTLI				= "br";
+	private static final String							GZIP				= "gzip";
+
+	private final ResourceManager						resourceManager;
+	private final long									maxCacheSize;
+	private final long									maxFileSize;
+
+	/**
+	 * Compressed variants, in access order so the eldest entry is the least recently used
+	 */
+	private final LinkedHashMap<CacheKey, ByteBuffer>	cache				= new LinkedHashMap<>( 256, 0.75f, true );
+	private long										cacheSize			= 0;
+	private final Set<CacheKey>							compressing			= ConcurrentHashMap.newKeySet();
+
+	private final LongAdder								precompressedCount	= new LongAdder();
+	private final LongAdder								hitCount			= new LongAdder();
+	private final LongAdder								compressCount		= new LongAdder();
+
+	/**
+	 * Create a new compressed resource supplier
+	 *
+	 * @param resourceManager The resource manager for the web root
+	 * @param maxCacheSize    The maximum total size of the compressed variants in bytes, 0 to only serve precompressed
+	 *                        files
+	 * @param maxFileSize     Files larger than this in bytes are not compressed on the fly
+	 */
+	public CompressedResourceSupplier( ResourceManager resourceManager, long maxCacheSize, long maxFileSize ) {
+		this.resourceManager	= resourceManager;
+		this.maxCacheSize		= Math.max( maxCacheSize, 0 );
+		this.maxFileSize		= maxFileSize;
+	}
+
+	/**
+	 * Whether a file is worth compressing, based on the content type of its extension
+	 *
+	 * @param name The file name
+	 *
+	 * @return True for text based content types
+	 */
+	public static boolean isCompressible( String name ) {
+		int index = name.lastIndexOf( '.' );
+		if ( index == -1 || index == name.length() - 1 ) {
+			return false;
+		}
+		String contentType = MimeMappings.DEFAULT.getMimeType( name.substring( index + 1 ).toLowerCase() );
+		if ( contentType == null ) {
+			return false;
+		}
+		return contentType.startsWith( "text/" )
+		    || contentType.contains( "javascript" )
+		    || contentType.contains( "json" )
+		    || contentType.contains( "xml" );
+	}
+
+	/**
+	 * Gzip a byte array
+	 *
+	 * @param content The content to compress
+	 *
+	 * @return The compressed content
+	 */
+	public static byte[] gzip( byte[] content ) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream( content.length / 3 );
+		// Variants are compressed once and served many times, so spend the time on the best ratio
+		try ( GZIPOutputStream gzip = new GZIPOutputStream( out ) {
+
+			{
+				def.setLevel( Deflater.BEST_COMPRESSION );
+			}
+		} ) {
+			gzip.write( content );
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public Resource getResource( HttpServerExchange exchange, String path ) throws IOException {
+		Resource resource = resourceManager.getResource( path );
+		if ( resource == null || resource.isDirectory() || !isCompressible( resource.getName() ) ) {
+			return resource;
+		}
+
+		exchange.getResponseHeaders().put( Headers.VARY, Headers.ACCEPT_ENCODING_STRING );
+		if ( exchange.getRequestHeaders().contains( Headers.RANGE ) ) {
+			return resource;
+		}
+
+		List<String> acceptEncoding = exchange.getRequestHeaders().get( Headers.ACCEPT_ENCODING );
+		if ( acceptEncoding == null || acceptEncoding.isEmpty() ) {
+			return resource;
+		}
+		List<List<QValueParser.QValueResult>> accepted = QValueParser.parse( acceptEncoding );
+
+		// A precompressed sibling, brotli first since it is smaller
+		if ( accepts( accepted, BROTLI ) ) {
+			Resource variant = getPrecompressed( resource, path + ".br" );
+			if ( variant != null ) {
+				return new EncodedResource( resource, BROTLI, variant, null );
+			}
+		}
+		if ( !accepts( accepted, GZIP ) ) {
+			return resource;
+		}
+		Resource variant = getPrecompressed( resource, path + ".gz" );
+		if ( variant != null ) {
+			return new EncodedResource( resource, GZIP, variant, null );
+		}
+
+		// Compress it ourselves
+		ByteBuffer content = getCompressed( resource );
+		if ( content != null ) {
+			return new EncodedResource( resource, GZIP, null, content );
+		}
+		return resource;
+	}
+
+	/**
+	 * Whether the client accepts an encoding
+	 *
+	 * @param accepted The parsed {@code Accept-Encoding} header
+	 * @param encoding The encoding
+	 *
+	 * @return True if the encoding, or {@code *}, is listed with a non zero quality
+	 */
+	private static boolean accepts( List<List<QValueParser.QValueResult>> accepted, String encoding ) {
+		for ( List<QValueParser.QValueResult> group : accepted ) {
+			for ( QValueParser.QValueResult result : group ) {
+				String value = result.getValue();
+				if ( ( value.equals( encoding ) || value.equals( "*" ) ) && !isRefused( result.getQvalue() ) ) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param qvalue A q value
+	 *
+	 * @return True if the q value is zero, meaning the encoding is not acceptable
+	 */
+	private static boolean isRefused( String qvalue ) {
+		for ( int i = 0; i < qvalue.length(); i++ ) {
+			char c = qvalue.charAt( i );
+			if ( c != '0' && c != '.' ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Look up a precompressed sibling of a resource
+	 *
+	 * @param resource The original resource
+	 * @param path     The path of the sibling
+	 *
+	 * @return The sibling, or null if it does not exist or is older than the original
+	 */
+	private Resource getPrecompressed( Resource resource, String path ) throws IOException {
+		Resource variant = resourceManager.getResource( path );
+		if ( variant == null || variant.isDirectory() ) {
+			return null;
+		}
+		Date	modified		= resource.getLastModified();
+		Date	variantModified	= variant.getLastModified();
+		if ( modified != null && variantModified != null && variantModified.before( modified ) ) {
+			return null;
+		}
+		precompressedCount.increment();
+		return variant;
+	}
+
+	/**
+	 * Get the gzipped content of a resource from the cache, compressing it on a miss
+	 *
+	 * @param resource The resource
+	 *
+	 * @return The compressed content, or null if the resource should be served as is
+	 */
+	private ByteBuffer getCompressed( Resource resource ) throws IOException {
+		Path	file	= resource.getFilePath();
+		Long	length	= resource.getContentLength();
+		if ( maxCacheSize == 0 || file == null || length == null || length < MIN_SIZE || length > maxFileSize ) {
+			return null;
+		}
+		Date		modified	= resource.getLastModified();
+		CacheKey	key			= new CacheKey( resource.getPath(), modified == null ? 0 : modified.getTime(), GZIP );
+		ByteBuffer	content;
+		synchronized ( cache ) {
+			content = cache.get( key );
+		}
+		if ( content != null ) {
+			hitCount.increment();
+			return content.duplicate();
+		}
+
+		// Someone else is compressing this file, serve it uncompressed this time instead of waiting
+		if ( !compressing.add( key ) ) {
+			return null;
+		}
+		try {
+			byte[] compressed = gzip( Files.readAllBytes( file ) );
+			if ( compressed.length >= length ) {
+				return null;
+			}
+			content = ByteBuffer.allocateDirect( compressed.length ).put( compressed ).flip();
+			compressCount.increment();
+			put( key, content );
+			return content.duplicate();
+		} finally {
+			compressing.remove( key );
+		}
+	}
+
+	/**
+	 * Add a compressed variant to the cache, evicting the least recently used ones to stay under the size limit
+	 *
+	 * @param key     The cache key
+	 * @param content The compressed content
+	 */
+	private void put( CacheKey key, ByteBuffer content ) {
+		if ( content.remaining() > maxCacheSize ) {
+			return;
+		}
+		synchronized ( cache ) {
+			ByteBuffer previous = cache.put( key, content );
+			if ( previous != null ) {
+				cacheSize -= previous.remaining();
+			}
+			cacheSize += content.remaining();
+			Iterator<Map.Entry<CacheKey, ByteBuffer>> entries = cache.entrySet().iterator();
+			while ( cacheSize > maxCacheSize && entries.hasNext() ) {
+				cacheSize -= entries.next().getValue().remaining();
+				entries.remove();
+			}
+		}
+	}
+
+	@Override
+	public long getPrecompressedCount() {
+		return precompressedCount.sum();
+	}
+
+	@Override
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	@Override
+	public long getCompressCount() {
+		return compressCount.sum();
+	}
+
+	@Override
+	public int getEntryCount() {
+		synchronized ( cache ) {
+			return cache.size();
+		}
+	}
+
+	@Override
+	public long getCacheSize() {
+		synchronized ( cache ) {
+			return cacheSize;
+		}
+	}
+
+	@Override
+	public void clearCache() {
+		synchronized ( cache ) {
+			cache.clear();
+			cacheSize = 0;
+		}
+	}
+
+	/**
+	 * A compressed variant is identified by the file, its version and the encoding
+	 */
+	private record CacheKey( String path, long lastModified, String encoding ) {
+	}
+
+	/**
+	 * A compressed view of a resource. The metadata comes from the original resource so the content type and
+	 * conditional requests work as usual, the body comes from either a precompressed sibling or the cached content.
+	 */
+	private static final class EncodedResource implements Resource {
+
+		private final Resource		resource;
+		private final String		encoding;
+		private final Resource		variant;
+		private final ByteBuffer	content;
+
+		EncodedResource( Resource resource, String encoding, Resource variant, ByteBuffer content ) {
+			this.resource	= resource;
+			this.encoding	= encoding;
+			this.variant	= variant;
+			this.content	= content;
+		}
+
+		@Override
+		public String getPath() {
+			return resource.getPath();
+		}
+
+		@Override
+		public Date getLastModified() {
+			return resource.getLastModified();
+		}
+
+		@Override
+		public String getLastModifiedString() {
+			return resource.getLastModifiedString();
+		}
+
+		@Override
+		public ETag getETag() {
+			// The compressed body is a different representation, so it needs its own tag
+			ETag etag = resource.getETag();
+			return etag == null ? null : new ETag( etag.isWeak(), etag.getTag() + "-" + encoding );
+		}
+
+		@Override
+		public String getName() {
+			return resource.getName();
+		}
+
+		@Override
+		public boolean isDirectory() {
+			return false;
+		}
+
+		@Override
+		public List<Resource> list() {
+			return List.of();
+		}
+
+		@Override
+		public String getContentType( MimeMappings mimeMappings ) {
+			return resource.getContentType( mimeMappings );
+		}
+
+		@Override
+		public void serve( Sender sender, HttpServerExchange exchange, IoCallback completionCallback ) {
+			exchange.getResponseHeaders().put( Headers.CONTENT_ENCODING, encoding );
+			if ( variant != null ) {
+				variant.serve( sender, exchange, completionCallback );
+			} else {
+				sender.send( content.duplicate(), completionCallback );
+			}
+		}
+
+		@Override
+		public Long getContentLength() {
+			return variant != null ? variant.getContentLength() : Long.valueOf( content.remaining() );
+		}
+
+		@Override
+		public String getCacheKey() {
+			return resource.getCacheKey() + "-" + encoding;
+		}
+
+		@Override
+		public File getFile() {
+			return variant != null ? variant.getFile() : null;
+		}
+
+		@Override
+		public Path getFilePath() {
+			return variant != null ? variant.getFilePath() : null;
+		}
+
+		@Override
+		public File getResourceManagerRoot() {
+			return resource.getResourceManagerRoot();
+		}
+
+		@Override
+		public Path getResourceManagerRootPath() {
+			return resource.getResourceManagerRootPath();
+		}
+
+		@Override
+		public URL getUrl() {
+			return variant != null ? variant.getUrl() : resource.getUrl();
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.resources;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Writes a gzipped sibling ({@code app.js.gz}) for every compressible file in the web root, so the
+ * {@link CompressedResourceSupplier} can serve them straight from disk from the first request on.
+ *
+ * Files are compressed in parallel on the common fork join pool. Siblings that are already up to date are left alone,
+ * as are files that are too small or do not get any smaller.
+ */
+public class Precompressor {
+
+	private Precompressor() {
+	}
+
+	/**
+	 * Precompress the web root
+	 *
+	 * @param webRoot The web root
+	 *
+	 * @return The number of files that were compressed
+	 */
+	public static int precompress( Path webRoot ) throws IOException {
+		AtomicInteger count = new AtomicInteger();
+		try ( Stream<Path> files = Files.walk( webRoot ) ) {
+			files
+			    .parallel()
+			    .filter( Files::isRegularFile )
+			    .filter( file -> CompressedResourceSupplier.isCompressible( file.getFileName().toString() ) )
+			    .forEach( file -> {
+				    try {
+					    if ( compress( file ) ) {
+						    count.incrementAndGet();
+					    }
+				    } catch ( IOException e ) {
+					    throw new UncheckedIOException( e );
+				    }
+			    } );
+		} catch ( UncheckedIOException e ) {
+			throw e.getCause();
+		}
+		return count.get();
+	}
+
+	/**
+	 * Write the gzipped sibling of a file if it is missing or out of date
+	 *
+	 * @param file The file
+	 *
+	 * @return True if the sibling was written
+	 */
+	private static boolean compress( Path file ) throws IOException {
+		long size = Files.size( file );
+		if ( size < CompressedResourceSupplier.MIN_SIZE ) {
+			return false;
+		}
+		Path target = file.resolveSibling( file.getFileName() + ".gz" );
+		if ( Files.exists( target ) && Files.getLastModifiedTime( target ).compareTo( Files.getLastModifiedTime( file ) ) >= 0 ) {
+			return false;
+		}
+		byte[] compressed = CompressedResourceSupplier.gzip( Files.readAllBytes( file ) );
+		if ( compressed.length >= size ) {
+			return false;
+		}
+		// Write to a temporary file first so a request never sees a partial sibling
+		Path temp = Files.createTempFile( file.getParent(), file.getFileName().toString(), ".tmp" );
+		try {
+			Files.write( temp, compressed );
+			Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+		} finally {
+			Files.deleteIfExists( temp );
+		}
+		return true;
+	}
+
+}
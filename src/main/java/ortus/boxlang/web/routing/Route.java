@@ -0,0 +1,51 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.routing;
+
+import io.undertow.util.AttachmentKey;
+
+/**
+ * The routing decision for a request path
+ *
+ * @param type     Whether the path is served by BoxLang or as a static file
+ * @param path     The path of the BoxLang template or static file
+ * @param pathInfo Everything after the template in the request path, empty if there is none
+ */
+public record Route( Type type, String path, String pathInfo ) {
+
+	/**
+	 * The route resolved for the current exchange
+	 */
+	public static final AttachmentKey<Route> ATTACHMENT_KEY = AttachmentKey.create( Route.class );
+
+	/**
+	 * The kinds of routes the MiniServer knows about
+	 */
+	public enum Type {
+		BOXLANG,
+		STATIC
+	}
+
+	/**
+	 * @return True if the route is served by BoxLang
+	 */
+	public boolean isBoxLang() {
+		return type == Type.BOXLANG;
+	}
+
+}
@@ -0,0 +1,122 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.routing;
+
+import java.util.Locale;
+import java.util.Set;
+
+import io.undertow.server.handlers.cache.LRUCache;
+
+/**
+ * Resolves request paths to a {@link Route} in a single pass.
+ *
+ * The path is scanned segment by segment and the first segment whose extension is a BoxLang extension makes the request
+ * a BoxLang request. Anything after that segment is the path info, so {@code /api/index.bxm/users/1} routes to
+ * {@code /api/index.bxm} with a path info of {@code /users/1}. Every other path is a static file.
+ *
+ * Decisions are kept in a bounded LRU cache keyed by path, so the hot path is a single cache lookup.
+ */
+public class RouteResolver {
+
+	/**
+	 * The extensions that are handled by BoxLang
+	 */
+	public static final Set<String>			DEFAULT_EXTENSIONS	= Set.of( "bx", "bxm", "bxs", "cfc", "cfm", "cfml", "cfs" );
+
+	/**
+	 * The default number of resolved paths to cache
+	 */
+	public static final int					DEFAULT_CACHE_SIZE	= 10000;
+
+	private final Set<String>				extensions;
+	private final LRUCache<String, Route>	cache;
+
+	/**
+	 * Create a resolver for the default BoxLang extensions
+	 */
+	public RouteResolver() {
+		this( DEFAULT_EXTENSIONS, DEFAULT_CACHE_SIZE );
+	}
+
+	/**
+	 * Create a resolver
+	 *
+	 * @param extensions The lower case extensions handled by BoxLang
+	 * @param cacheSize  The maximum number of resolved paths to cache
+	 */
+	public RouteResolver( Set<String> extensions, int cacheSize ) {
+		this.extensions	= extensions;
+		this.cache		= new LRUCache<>( cacheSize, -1 );
+	}
+
+	/**
+	 * Resolve the route for a request path
+	 *
+	 * @param path The relative request path
+	 *
+	 * @return The route for the path
+	 */
+	public Route resolve( String path ) {
+		Route route = cache.get( path );
+		if ( route == null ) {
+			route = match( path );
+			cache.add( path, route );
+		}
+		return route;
+	}
+
+	/**
+	 * Resolve the route for a request path without going through the cache
+	 *
+	 * @param path The relative request path
+	 *
+	 * @return The route for the path
+	 */
+	public Route match( String path ) {
+		int	length	= path.length();
+		int	lastDot	= -1;
+		// Walk the segments, checking the extension of each one when we reach its end
+		for ( int i = 0; i <= length; i++ ) {
+			char c = i < length ? path.charAt( i ) : '/';
+			if ( c == '.' ) {
+				lastDot = i;
+			} else if ( c == '/' ) {
+				if ( lastDot != -1 && isBoxLangExtension( path, lastDot + 1, i ) ) {
+					return new Route( Route.Type.BOXLANG, path.substring( 0, i ), i < length ? path.substring( i ) : "" );
+				}
+				lastDot = -1;
+			}
+		}
+		return new Route( Route.Type.STATIC, path, "" );
+	}
+
+	/**
+	 * Check the extension between the two indexes against the BoxLang extensions. Extensions are matched case-insensitively
+	 * so {@code /INDEX.CFM} is never served as a static file on a case-insensitive file system.
+	 *
+	 * @param path  The request path
+	 * @param start The index of the first character of the extension
+	 * @param end   The index after the last character of the extension
+	 *
+	 * @return True if the extension is a BoxLang extension
+	 */
+	private boolean isBoxLangExtension( String path, int start, int end ) {
+		return start < end && extensions.contains( path.substring( start, end ).toLowerCase( Locale.ROOT ) );
+	}
+
+}
@@ -0,0 +1,157 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.timeout;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.xnio.IoUtils;
+import org.xnio.XnioExecutor;
+import org.xnio.channels.StreamSinkChannel;
+
+import io.undertow.UndertowLogger;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Protocols;
+import io.undertow.util.StatusCodes;
+import ortus.boxlang.web.exchange.BoxHTTPUndertowExchange;
+import ortus.boxlang.web.metrics.ServerMetrics;
+
+/**
+ * The deadline of a BoxLang request, enforced from the IO thread of its connection.
+ *
+ * When the deadline passes before the template is done, the request thread is interrupted so blocking calls like
+ * sleeps, JDBC queries and HTTP calls give up, and the response is taken away from the template so its next write
+ * fails with a {@link RequestTimeoutException}. If nothing was sent yet, the client gets a 504 right away and the
+ * connection is closed, without waiting for the template to notice. Otherwise the response is cut off once the
+ * template stops.
+ */
+public class RequestDeadline implements Runnable {
+
+	private final BoxHTTPUndertowExchange	httpExchange;
+	private final Thread					thread;
+	private final long						timeout;
+	private final ServerMetrics				metrics;
+	private volatile XnioExecutor.Key		timeoutKey;
+
+	/**
+	 * Guarded by this deadline, so the request thread is never interrupted once it is done
+	 */
+	private boolean							running				= true;
+
+	/**
+	 * Whether the client got the 504 instead of the template response. Guarded by this deadline.
+	 */
+	private boolean							responseReplaced	= false;
+
+	private RequestDeadline( BoxHTTPUndertowExchange httpExchange, long timeout, ServerMetrics metrics ) {
+		this.httpExchange	= httpExchange;
+		this.thread			= Thread.currentThread();
+		this.timeout		= timeout;
+		this.metrics		= metrics;
+	}
+
+	/**
+	 * Start the deadline of the request running on the current thread
+	 *
+	 * @param httpExchange The exchange of the request
+	 * @param timeout      How long the request may run in milliseconds
+	 * @param metrics      The metrics that count timeouts, or null
+	 *
+	 * @return The deadline, call {@link #finish()} once the template is done
+	 */
+	public static RequestDeadline start( BoxHTTPUndertowExchange httpExchange, long timeout, ServerMetrics metrics ) {
+		RequestDeadline deadline = new RequestDeadline( httpExchange, timeout, metrics );
+		deadline.timeoutKey = httpExchange.getExchange().getIoThread().executeAfter( deadline, timeout, TimeUnit.MILLISECONDS );
+		return deadline;
+	}
+
+	/**
+	 * The template is done, called from the request thread
+	 *
+	 * @return True if it finished in time, false if the request timed out and its response must not be finished
+	 */
+	public boolean finish() {
+		synchronized ( this ) {
+			if ( this.running ) {
+				this.running = false;
+				XnioExecutor.Key key = this.timeoutKey;
+				if ( key != null ) {
+					key.remove();
+				}
+				return true;
+			}
+		}
+		// Don't leave the interrupt behind for the next request on this thread
+		Thread.interrupted();
+		return false;
+	}
+
+	/**
+	 * The deadline passed, called from the IO thread
+	 */
+	@Override
+	public synchronized void run() {
+		if ( !this.running ) {
+			return;
+		}
+		this.running = false;
+		this.thread.interrupt();
+
+		HttpServerExchange exchange = this.httpExchange.getExchange();
+		UndertowLogger.REQUEST_LOGGER.debugf( "Request to %s ran over its %sms timeout", exchange.getRequestPath(), this.timeout );
+		if ( this.metrics != null ) {
+			this.metrics.requestTimedOut();
+		}
+		// The response is sent without blocking, so the request thread never waits long for this deadline
+		if ( this.httpExchange.cancelResponse() ) {
+			sendGatewayTimeout( exchange );
+			this.responseReplaced = true;
+		}
+	}
+
+	/**
+	 * @return True if the request timed out before anything was sent and the client got a 504 instead
+	 */
+	public synchronized boolean isResponseReplaced() {
+		return this.responseReplaced;
+	}
+
+	/**
+	 * Answer with an empty 504 and close the connection, or the stream with HTTP/2. The exchange itself ends once the
+	 * template stops.
+	 */
+	private static void sendGatewayTimeout( HttpServerExchange exchange ) {
+		exchange.setStatusCode( StatusCodes.GATEWAY_TIME_OUT );
+		exchange.setPersistent( false );
+		exchange.setResponseContentLength( 0 );
+		StreamSinkChannel	channel	= exchange.getResponseChannel();
+		boolean				sent	= false;
+		try {
+			channel.shutdownWrites();
+			sent = channel.flush();
+		} catch ( IOException e ) {
+			UndertowLogger.REQUEST_IO_LOGGER.ioException( e );
+		}
+		if ( !exchange.getProtocol().equals( Protocols.HTTP_2_0 ) ) {
+			IoUtils.safeClose( exchange.getConnection() );
+		} else if ( !sent ) {
+			IoUtils.safeClose( channel );
+		}
+	}
+
+}
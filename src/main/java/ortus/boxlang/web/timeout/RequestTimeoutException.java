@@ -0,0 +1,32 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.timeout;
+
+/**
+ * Thrown to a template that touches the response after its request timed out, so it stops instead of producing output
+ * nobody will receive
+ */
+public class RequestTimeoutException extends IllegalStateException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RequestTimeoutException() {
+		super( "The request timed out, its response can no longer be written" );
+	}
+
+}
@@ -0,0 +1,104 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.timeout;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * How long BoxLang requests may run: a default, with overrides for path prefixes. The longest matching prefix wins, so
+ * {@code /api/reports/} can allow more time than the rest of {@code /api/}.
+ */
+public class RequestTimeouts {
+
+	private final long		defaultTimeout;
+	private final String[]	prefixes;
+	private final long[]	timeouts;
+
+	/**
+	 * Create the request timeouts
+	 *
+	 * @param defaultTimeout The timeout of requests without an override in milliseconds, 0 for no limit
+	 * @param overrides      The overrides, written as {@code /prefix/=ms}, like {@code /reports/=120000}. A timeout of 0
+	 *                       removes the limit under the prefix.
+	 *
+	 * @throws IllegalArgumentException If an override is not valid
+	 */
+	public RequestTimeouts( long defaultTimeout, List<String> overrides ) {
+		// Longest prefix first
+		Map<String, Long> parsed = new TreeMap<>( Comparator.comparingInt( String::length ).reversed().thenComparing( Comparator.naturalOrder() ) );
+		for ( String override : overrides ) {
+			int separator = override.lastIndexOf( '=' );
+			if ( separator < 1 || !override.startsWith( "/" ) ) {
+				throw new IllegalArgumentException( "Invalid request timeout [" + override + "], expected /prefix/=ms" );
+			}
+			try {
+				parsed.put( override.substring( 0, separator ).trim(), Math.max( Long.parseLong( override.substring( separator + 1 ).trim() ), 0 ) );
+			} catch ( NumberFormatException e ) {
+				throw new IllegalArgumentException( "Invalid request timeout [" + override + "], expected /prefix/=ms" );
+			}
+		}
+
+		this.defaultTimeout	= Math.max( defaultTimeout, 0 );
+		this.prefixes		= parsed.keySet().toArray( String[]::new );
+		this.timeouts		= parsed.values().stream().mapToLong( Long::longValue ).toArray();
+	}
+
+	/**
+	 * The timeout of a request
+	 *
+	 * @param path The request path
+	 *
+	 * @return The timeout in milliseconds, 0 for no limit
+	 */
+	public long getTimeout( String path ) {
+		for ( int i = 0; i < this.prefixes.length; i++ ) {
+			if ( path.startsWith( this.prefixes[ i ] ) ) {
+				return this.timeouts[ i ];
+			}
+		}
+		return this.defaultTimeout;
+	}
+
+	/**
+	 * @return True if any request can time out
+	 */
+	public boolean isEnabled() {
+		if ( this.defaultTimeout > 0 ) {
+			return true;
+		}
+		for ( long timeout : this.timeouts ) {
+			if ( timeout > 0 ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder out = new StringBuilder( this.defaultTimeout > 0 ? this.defaultTimeout + "ms" : "none" );
+		for ( int i = 0; i < this.prefixes.length; i++ ) {
+			out.append( ", " ).append( this.prefixes[ i ] ).append( ' ' ).append( this.timeouts[ i ] > 0 ? this.timeouts[ i ] + "ms" : "none" );
+		}
+		return out.toString();
+	}
+
+}
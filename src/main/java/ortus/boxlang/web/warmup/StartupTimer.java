@@ -0,0 +1,101 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Records how long each startup phase took, so the startup log shows where the time goes.
+ *
+ * Every call to {@link #phase(String)} closes the phase that started with the previous call, phases that are closed
+ * more than once add up.
+ */
+public class StartupTimer {
+
+	/**
+	 * When the timer started, in milliseconds
+	 */
+	private final long				start;
+
+	/**
+	 * When the current phase started, in milliseconds
+	 */
+	private long					last;
+
+	/**
+	 * The time of every phase, in milliseconds, in the order they ran
+	 */
+	private final Map<String, Long>	phases	= new LinkedHashMap<>();
+
+	/**
+	 * Start timing
+	 *
+	 * @param start When the first phase started, in milliseconds
+	 */
+	public StartupTimer( long start ) {
+		this.start	= start;
+		this.last	= start;
+	}
+
+	/**
+	 * Record a phase that happened before the timer started, like the JVM startup
+	 *
+	 * @param name     The phase name
+	 * @param duration How long it took, in milliseconds
+	 *
+	 * @return This timer
+	 */
+	public StartupTimer record( String name, long duration ) {
+		this.phases.merge( name, Math.max( duration, 0 ), Long::sum );
+		return this;
+	}
+
+	/**
+	 * Close the current phase
+	 *
+	 * @param name The name of the phase that just finished
+	 *
+	 * @return This timer
+	 */
+	public StartupTimer phase( String name ) {
+		long now = System.currentTimeMillis();
+		record( name, now - this.last );
+		this.last = now;
+		return this;
+	}
+
+	/**
+	 * @return The milliseconds since the timer started
+	 */
+	public long elapsed() {
+		return System.currentTimeMillis() - this.start;
+	}
+
+	/**
+	 * @return The phases and their times, like {@code runtime 812ms, handlers 4ms}
+	 */
+	@Override
+	public String toString() {
+		StringJoiner joiner = new StringJoiner( ", " );
+		this.phases.forEach( ( name, duration ) -> joiner.add( name + " " + duration + "ms" ) );
+		return joiner.toString();
+	}
+
+}
@@ -0,0 +1,136 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.runnables.RunnableLoader;
+import ortus.boxlang.runtime.util.ResolvedFilePath;
+import ortus.boxlang.web.routing.RouteResolver;
+
+/**
+ * Compiles every BoxLang template, script and class in the web root before the server takes traffic, so the first
+ * request to each file doesn't pay for parsing and bytecode generation.
+ *
+ * Files are resolved against the web root the same way web requests resolve them, so the compiled classes land in the
+ * runtime's class pools under the names requests look up. Files are compiled in parallel on a fork join pool with one
+ * thread per core. A file that does not compile is reported and skipped, the request for it will show the error.
+ */
+public class TemplatePrecompiler {
+
+	/**
+	 * Extensions of BoxLang and CFML classes, everything else is compiled as a template or script
+	 */
+	private static final Set<String> CLASS_EXTENSIONS = Set.of( "bx", "cfc" );
+
+	private TemplatePrecompiler() {
+	}
+
+	/**
+	 * Compile the web root
+	 *
+	 * @param runtime The started runtime
+	 * @param webRoot The web root
+	 *
+	 * @return The number of files that were compiled
+	 */
+	public static int precompile( BoxRuntime runtime, Path webRoot ) throws IOException {
+		List<Path> sources;
+		try ( Stream<Path> files = Files.walk( webRoot ) ) {
+			sources = files
+			    .filter( Files::isRegularFile )
+			    .filter( file -> !isHidden( webRoot.relativize( file ) ) )
+			    .filter( file -> RouteResolver.DEFAULT_EXTENSIONS.contains( extension( file ) ) )
+			    .toList();
+		}
+
+		AtomicInteger	count	= new AtomicInteger();
+		ForkJoinPool	pool	= new ForkJoinPool( Runtime.getRuntime().availableProcessors() );
+		try {
+			pool.submit( () -> sources.parallelStream().forEach( file -> {
+				if ( compile( runtime, webRoot, file ) ) {
+					count.incrementAndGet();
+				}
+			} ) ).get();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		} catch ( ExecutionException e ) {
+			throw new IOException( "Could not precompile the web root", e.getCause() );
+		} finally {
+			pool.shutdown();
+		}
+		return count.get();
+	}
+
+	/**
+	 * Compile a single file
+	 *
+	 * @param runtime The runtime
+	 * @param webRoot The web root
+	 * @param file    The file
+	 *
+	 * @return True if it compiled
+	 */
+	private static boolean compile( BoxRuntime runtime, Path webRoot, Path file ) {
+		String				relativePath	= "/" + webRoot.relativize( file ).toString().replace( '\\', '/' );
+		ResolvedFilePath	resolvedPath	= ResolvedFilePath.of( "/", webRoot.toString(), relativePath, file );
+		IBoxContext			context			= new ScriptingRequestBoxContext( runtime.getRuntimeContext() );
+		try {
+			if ( CLASS_EXTENSIONS.contains( extension( file ) ) ) {
+				RunnableLoader.getInstance().loadClass( resolvedPath, context );
+			} else {
+				RunnableLoader.getInstance().loadTemplateAbsolute( context, resolvedPath );
+			}
+			return true;
+		} catch ( RuntimeException e ) {
+			System.out.println( "Could not compile " + relativePath + ": " + e.getMessage() );
+			return false;
+		}
+	}
+
+	/**
+	 * Whether any segment of a path starts with a dot, like {@code .git} or {@code .boxlang}
+	 */
+	private static boolean isHidden( Path relativePath ) {
+		for ( Path segment : relativePath ) {
+			if ( segment.toString().startsWith( "." ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String extension( Path file ) {
+		String	name	= file.getFileName().toString();
+		int		dot		= name.lastIndexOf( '.' );
+		return dot < 0 ? "" : name.substring( dot + 1 ).toLowerCase( Locale.ROOT );
+	}
+
+}
@@ -0,0 +1,126 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+
+/**
+ * Replays a list of request paths through the handler chain before the server takes traffic, so the JIT compiles the
+ * hot paths and the route, welcome file, static file and template caches are warm.
+ *
+ * The requests go to a temporary listener on a random loopback port in front of the same handlers the server uses.
+ * The public listener is only opened once the warmup is over.
+ */
+public class Warmup {
+
+	private Warmup() {
+	}
+
+	/**
+	 * Read a warmup file: one request path per line, blank lines and lines starting with {@code #} are skipped
+	 *
+	 * @param file The warmup file
+	 *
+	 * @return The request paths
+	 */
+	public static List<String> readPaths( Path file ) throws IOException {
+		List<String> paths = new ArrayList<>();
+		for ( String line : Files.readAllLines( file ) ) {
+			String path = line.trim();
+			if ( path.isEmpty() || path.startsWith( "#" ) ) {
+				continue;
+			}
+			paths.add( path.startsWith( "/" ) ? path : "/" + path );
+		}
+		return paths;
+	}
+
+	/**
+	 * Send every path through the handler a number of times. The requests for a path are sent concurrently, and the
+	 * next path starts once they are all done.
+	 *
+	 * @param handler  The handler chain
+	 * @param paths    The request paths
+	 * @param requests How many times each path is requested
+	 *
+	 * @return The number of requests that failed or got a 5xx
+	 */
+	public static int run( HttpHandler handler, List<String> paths, int requests ) throws InterruptedException {
+		Undertow server = Undertow.builder()
+		    .addHttpListener( 0, "127.0.0.1" )
+		    .setHandler( handler )
+		    .build();
+		server.start();
+
+		int				threads	= Runtime.getRuntime().availableProcessors();
+		ExecutorService	pool	= Executors.newFixedThreadPool( threads );
+		AtomicInteger	errors	= new AtomicInteger();
+		try {
+			int			port	= ( ( InetSocketAddress ) server.getListenerInfo().get( 0 ).getAddress() ).getPort();
+			HttpClient	client	= HttpClient.newBuilder()
+			    .version( HttpClient.Version.HTTP_1_1 )
+			    .executor( pool )
+			    .connectTimeout( Duration.ofSeconds( 5 ) )
+			    .build();
+			for ( String path : paths ) {
+				HttpRequest			request	= HttpRequest.newBuilder( URI.create( "http://127.0.0.1:" + port + path ) )
+				    .timeout( Duration.ofSeconds( 30 ) )
+				    .build();
+				List<Future<?>>		sent	= new ArrayList<>( requests );
+				for ( int i = 0; i < requests; i++ ) {
+					sent.add( client.sendAsync( request, HttpResponse.BodyHandlers.discarding() )
+					    .whenComplete( ( response, error ) -> {
+						    if ( error != null || response.statusCode() >= 500 ) {
+							    errors.incrementAndGet();
+						    }
+					    } ) );
+				}
+				for ( Future<?> response : sent ) {
+					try {
+						response.get();
+					} catch ( ExecutionException e ) {
+						// Already counted
+					}
+				}
+			}
+		} finally {
+			server.stop();
+			pool.shutdown();
+		}
+		return errors.get();
+	}
+
+}
@@ -65,8 +65,16 @@ set CMD_LINE_ARGS=%*
 
 set CLASSPATH=%APP_HOME%\lib\boxlang-miniserver-1.0.0-all.jar
 
+@rem Start from the AppCDS archive created by gradle appCDS when it sits next to the jar. Set BOXLANG_MINISERVER_CDS=auto
+@rem to have the JVM create and refresh the archive when it exits, or BOXLANG_MINISERVER_CDS=off to never use it.
+set CDS_ARCHIVE=%BOXLANG_MINISERVER_CDS_ARCHIVE%
+if "%CDS_ARCHIVE%" == "" set CDS_ARCHIVE=%APP_HOME%\lib\boxlang-miniserver.jsa
+set CDS_OPTS=
+if "%BOXLANG_MINISERVER_CDS%" == "auto" set CDS_OPTS=-XX:+AutoCreateSharedArchive "-XX:SharedArchiveFile=%CDS_ARCHIVE%"
+if not "%BOXLANG_MINISERVER_CDS%" == "auto" if not "%BOXLANG_MINISERVER_CDS%" == "off" if exist "%CDS_ARCHIVE%" set CDS_OPTS="-XX:SharedArchiveFile=%CDS_ARCHIVE%" -Xshare:auto
+
 @rem Execute boxlang-miniserver
-"%JAVA_EXE%" %DEFAULT_JVM_OPTS% %JAVA_OPTS% %BOXLANG_MINISERVER_OPTS%  -jar "%CLASSPATH%" %CMD_LINE_ARGS%
+"%JAVA_EXE%" %DEFAULT_JVM_OPTS% %CDS_OPTS% %JAVA_OPTS% %BOXLANG_MINISERVER_OPTS%  -jar "%CLASSPATH%" %CMD_LINE_ARGS%
 
 :end
 @rem End local scope for the variables with windows NT shell
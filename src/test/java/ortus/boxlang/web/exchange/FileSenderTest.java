@@ -0,0 +1,94 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.exchange;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class FileSenderTest {
+
+	/**
+	 * The resolved ranges of a header for a 100 byte file, as {@code start-end} pairs
+	 */
+	private static List<String> ranges( String header ) {
+		List<long[]> ranges = FileSender.resolveRanges( header, 100 );
+		return ranges == null ? null : ranges.stream().map( range -> range[ 0 ] + "-" + range[ 1 ] ).toList();
+	}
+
+	@ParameterizedTest
+	@CsvSource( delimiter = '|', value = {
+	    // Single ranges
+	    "bytes=0-9         | 0-9",
+	    "bytes=10-         | 10-99",
+	    "bytes=99-99       | 99-99",
+	    // Suffix ranges: the last n bytes, the whole file if n is larger
+	    "bytes=-20         | 80-99",
+	    "bytes=-100        | 0-99",
+	    "bytes=-500        | 0-99",
+	    // Ranges that run past the end are cut short
+	    "bytes=90-500      | 90-99",
+	    // Several ranges keep their order, overlapping ones are sent as asked
+	    "bytes=0-9,20-29   | 0-9,20-29",
+	    "bytes=20-29,0-9   | 20-29,0-9",
+	    "bytes=0-49,25-74  | 0-49,25-74",
+	    // Unsatisfiable ranges are dropped
+	    "bytes=0-9,200-300 | 0-9",
+	} )
+	public void testSatisfiableRanges( String header, String expected ) {
+		assertThat( ranges( header ) ).containsExactlyElementsIn( expected.split( "," ) ).inOrder();
+	}
+
+	@ParameterizedTest
+	@CsvSource( delimiter = '|', value = {
+	    "bytes=100-",
+	    "bytes=100-200",
+	    "bytes=500-600,200-",
+	    "bytes=-0"
+	} )
+	public void testUnsatisfiableRanges( String header ) {
+		assertThat( ranges( header ) ).isEmpty();
+	}
+
+	@Test
+	public void testInvalidHeaderSendsTheWholeFile() {
+		assertThat( ranges( "items=0-9" ) ).isNull();
+		assertThat( ranges( "bytes=abc" ) ).isNull();
+	}
+
+	@Test
+	public void testTooManyRangesSendTheWholeFile() {
+		String	atLimit		= IntStream.range( 0, FileSender.MAX_RANGES ).mapToObj( i -> i + "-" + i ).collect( Collectors.joining( ",", "bytes=", "" ) );
+		String	overLimit	= atLimit + ",50-50";
+		assertThat( ranges( atLimit ) ).hasSize( FileSender.MAX_RANGES );
+		assertThat( ranges( overLimit ) ).isNull();
+	}
+
+	@Test
+	public void testEmptyFileHasNoSatisfiableRange() {
+		assertThat( FileSender.resolveRanges( "bytes=0-", 0 ) ).isEmpty();
+		assertThat( FileSender.resolveRanges( "bytes=-10", 0 ) ).isEmpty();
+	}
+
+}
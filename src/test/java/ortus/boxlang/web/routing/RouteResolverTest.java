@@ -0,0 +1,109 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.web.routing;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class RouteResolverTest {
+
+	/**
+	 * The path info pattern the BLHandler used before the resolver replaced it
+	 */
+	static final Pattern	LEGACY_PATTERN	= Pattern.compile( "^(/.+?\\.cfml|/.+?\\.cf[cms]|.+?\\.bx[ms]{0,1})(/.*)?$" );
+
+	private RouteResolver	resolver		= new RouteResolver();
+
+	/**
+	 * The route the legacy pattern gave a path
+	 */
+	static Route legacyRoute( String path ) {
+		Matcher matcher = LEGACY_PATTERN.matcher( path );
+		if ( !matcher.find() ) {
+			return new Route( Route.Type.STATIC, path, "" );
+		}
+		String pathInfo = matcher.group( 2 );
+		return new Route( Route.Type.BOXLANG, matcher.group( 1 ), pathInfo != null ? pathInfo : "" );
+	}
+
+	@ParameterizedTest
+	@ValueSource( strings = {
+	    "/",
+	    "/x.bxm",
+	    "/x.bxs",
+	    "/x.bx",
+	    "/x.bx/path/info",
+	    "/index.cfm",
+	    "/index.cfml",
+	    "/index.cfml/",
+	    "/script.cfs",
+	    "/a.cfc/x",
+	    "/dir.cfm/",
+	    "/dir.cfm/index.html",
+	    "/x.bxm/",
+	    "/x.bxm//",
+	    "/api/index.bxm/users/1",
+	    "/api/index.cfm/users/1.json",
+	    "/a.cfm.html",
+	    "/a.bxmx",
+	    "/a.bxm.bak/x",
+	    "/.bxm",
+	    "/assets/site.css",
+	    "/assets/",
+	    "/assets/app.min.js",
+	    "/no-extension",
+	    "/dots.in.dir/page.html"
+	} )
+	public void testMatchesLegacyPattern( String path ) {
+		assertThat( resolver.match( path ) ).isEqualTo( legacyRoute( path ) );
+	}
+
+	@ParameterizedTest
+	@CsvSource( {
+	    "/INDEX.CFM, /INDEX.CFM, ''",
+	    "/Index.Bxm/users, /Index.Bxm, /users",
+	    "/API.CFC/method, /API.CFC, /method",
+	    "/x.BX, /x.BX, ''"
+	} )
+	public void testUpperCaseExtensionsAreBoxLang( String path, String template, String pathInfo ) {
+		// The legacy pattern was case sensitive and served these as static files, which leaks the source on a
+		// case-insensitive file system
+		assertThat( legacyRoute( path ).isBoxLang() ).isFalse();
+		assertThat( resolver.match( path ) ).isEqualTo( new Route( Route.Type.BOXLANG, template, pathInfo ) );
+	}
+
+	@Test
+	public void testFirstBoxLangSegmentWins() {
+		assertThat( resolver.match( "/a.cfm/b.bxm/c" ) ).isEqualTo( new Route( Route.Type.BOXLANG, "/a.cfm", "/b.bxm/c" ) );
+	}
+
+	@Test
+	public void testResolveCachesTheMatch() {
+		Route route = resolver.resolve( "/api/index.bxm/users/1" );
+		assertThat( route ).isEqualTo( new Route( Route.Type.BOXLANG, "/api/index.bxm", "/users/1" ) );
+		assertThat( resolver.resolve( "/api/index.bxm/users/1" ) ).isSameInstanceAs( route );
+	}
+
+}